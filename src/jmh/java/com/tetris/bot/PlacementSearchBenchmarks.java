@@ -0,0 +1,63 @@
+package com.tetris.bot;
+
+import com.tetris.model.Board;
+import com.tetris.model.PieceGenerator;
+import com.tetris.sim.Simulation;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pieces per second a {@link BotPlayer} places in headless games, each piece
+ * chosen by a {@link PlacementSearch} with lookahead on the next piece.
+ * Games that top out are replaced by new ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PlacementSearchBenchmarks {
+
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    
+    private PlacementSearch search;
+    private Simulation simulation;
+    private BotPlayer bot;
+    private long games;
+    
+    @Setup
+    public void setUp() {
+        search = new PlacementSearch(Heuristic.DEFAULT);
+        newGame();
+    }
+    
+    @Benchmark
+    public long placePiece() {
+        Board board = simulation.getBoard();
+        long placed = board.getPiecesPlaced();
+        while (board.getPiecesPlaced() == placed) {
+            if (!simulation.step(bot.nextInput(board))) {
+                newGame();
+                break;
+            }
+        }
+        return placed;
+    }
+    
+    private void newGame() {
+        simulation = new Simulation(WIDTH, HEIGHT, games++, PieceGenerator.Distribution.SEVEN_BAG,
+                Simulation.DEFAULT_GRAVITY_FRAMES);
+        bot = new BotPlayer(search);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tetris.controller;
+
+import com.google.gson.Gson;
+import com.tetris.model.BenchmarkBoards;
+import com.tetris.model.Game;
+import com.tetris.util.TickScheduler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The JSON state path of a getState request: {@link GameStateEncoder} builds
+ * the map and Gson writes it, for a full frame and for the usual small delta.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameStateBenchmarks {
+
+    @Param({"EMPTY", "NEARLY_FULL"})
+    public BenchmarkBoards.Fill fill;
+    
+    private final Gson gson = new Gson();
+    private TickScheduler scheduler;
+    private Game game;
+    // A version from just before the last move, so a delta holds a few rows
+    private long lastVersion;
+    
+    @Setup
+    public void setUp() {
+        // The game is never started; the scheduler only has to exist
+        scheduler = new TickScheduler(10, 8, 1);
+        game = BenchmarkBoards.game(fill, scheduler);
+        lastVersion = game.getBoard().getVersion();
+        game.moveLeft();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        game.shutdown();
+        scheduler.shutdown();
+    }
+    
+    @Benchmark
+    public String fullState() {
+        return gson.toJson(GameStateEncoder.getGameState(game, GameStateEncoder.NO_VERSION));
+    }
+    
+    @Benchmark
+    public String deltaState() {
+        return gson.toJson(GameStateEncoder.getGameState(game, lastVersion));
+    }
+}
@@ -0,0 +1,135 @@
+package com.tetris.leaderboard;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A durable {@link Leaderboard} taking final scores from four threads while
+ * two others ask for the top ten and for the rank of random players, and the
+ * time to replay its log on the next open.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardBenchmarks {
+
+    private static final int TOP = 10;
+    private static final int PLAYERS = 1_000_000;
+    // Final scores spread like real games: most small, a few very large
+    private static final int MAX_SCORE = 1 << 20;
+    
+    /**
+     * The leaderboard every thread of the group shares, logging to a
+     * temporary directory
+     */
+    @State(Scope.Group)
+    public static class Shared {
+        Path directory;
+        Leaderboard leaderboard;
+        
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("leaderboard-benchmark");
+            leaderboard = Leaderboard.open(directory);
+        }
+        
+        @TearDown
+        public void tearDown() throws IOException {
+            leaderboard.close();
+            deleteDirectory(directory);
+        }
+    }
+    
+    /**
+     * A log of a million submissions, replayed by every invocation
+     */
+    @State(Scope.Benchmark)
+    public static class Written {
+        Path directory;
+        
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("leaderboard-benchmark");
+            try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+                for (int i = 0; i < PLAYERS; i++) {
+                    leaderboard.submit(randomPlayer(), randomScore());
+                }
+            }
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteDirectory(directory);
+        }
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public boolean submit(Shared shared) {
+        return shared.leaderboard.submit(randomPlayer(), randomScore());
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public List<Leaderboard.Entry> top(Shared shared) {
+        return shared.leaderboard.top(TOP);
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int rankOf(Shared shared) {
+        return shared.leaderboard.rankOf(randomPlayer());
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int replay(Written written) throws IOException {
+        try (Leaderboard leaderboard = Leaderboard.open(written.directory)) {
+            return leaderboard.size();
+        }
+    }
+    
+    private static String randomPlayer() {
+        return "player" + ThreadLocalRandom.current().nextInt(PLAYERS);
+    }
+    
+    private static int randomScore() {
+        return (int) (MAX_SCORE * Math.pow(ThreadLocalRandom.current().nextDouble(), 3));
+    }
+    
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,95 @@
+package com.tetris.model;
+
+import com.tetris.util.SplitMix64;
+import com.tetris.util.TickScheduler;
+
+/**
+ * Board positions shared by the JMH benchmarks.
+ *
+ * Every position keeps column 0 open from the top down to the bottom four
+ * rows, so a vertical I piece dropped into it lands on the floor. Of those
+ * four rows, the lowest {@code clearedRows} are full apart from column 0 and
+ * the rest have a second hole, so the drop clears exactly that many lines.
+ * A nearly full board adds garbage rows with a random hole up to four rows
+ * below the top; a mostly empty board has nothing above the bottom four.
+ */
+public final class BenchmarkBoards {
+
+    public static final int WIDTH = 10;
+    public static final int HEIGHT = 20;
+    // Rows at the top left free so pieces can still spawn and turn
+    public static final int FREE_ROWS = 4;
+    private static final int WELL_ROWS = 4;
+    private static final long SEED = 42;
+    
+    public enum Fill {
+        EMPTY, NEARLY_FULL
+    }
+    
+    private BenchmarkBoards() {
+    }
+    
+    /**
+     * Locked cells row-major as type + 1, 0 for empty, as taken by
+     * {@link Board#restore}
+     */
+    public static byte[] cells(Fill fill, int clearedRows) {
+        if (clearedRows < 0 || clearedRows > WELL_ROWS) {
+            throw new IllegalArgumentException("Cleared rows must be 0-4: " + clearedRows);
+        }
+        SplitMix64 random = new SplitMix64(SEED);
+        byte[] cells = new byte[WIDTH * HEIGHT];
+        int firstFilled = fill == Fill.NEARLY_FULL ? FREE_ROWS : HEIGHT - WELL_ROWS;
+        for (int row = firstFilled; row < HEIGHT; row++) {
+            boolean completes = row >= HEIGHT - clearedRows;
+            int hole = completes ? 0 : 1 + random.nextInt(WIDTH - 1);
+            for (int col = 1; col < WIDTH; col++) {
+                if (col != hole) {
+                    cells[row * WIDTH + col] = (byte) (1 + random.nextInt(Tetromino.TYPES));
+                }
+            }
+        }
+        return cells;
+    }
+    
+    /**
+     * A board holding {@link #cells} and no falling piece
+     */
+    public static Board board(Fill fill, int clearedRows) {
+        Board board = new Board(WIDTH, HEIGHT, PieceGenerator.sevenBag(SEED));
+        reset(board, cells(fill, clearedRows));
+        return board;
+    }
+    
+    /**
+     * Put the board back to the given cells with no falling piece
+     */
+    public static void reset(Board board, byte[] cells) {
+        board.restore(cells, Board.NO_PIECE, 0, 0, 0, Shape.I_SHAPE, 0, 0, 0, false);
+    }
+    
+    /**
+     * An unstarted game on a {@link #board} with a T piece at the top
+     */
+    public static Game game(Fill fill, TickScheduler scheduler) {
+        Board board = board(fill, 0);
+        board.setCurrentShape(piece(Shape.T_SHAPE, WIDTH / 2 - 1, 0));
+        return new Game(board, PieceGenerator.sevenBag(SEED), scheduler, 1, 0, false);
+    }
+    
+    /**
+     * A vertical I piece at the top of column 0
+     */
+    public static Shape wellPiece() {
+        Shape shape = new Shape(Shape.I_SHAPE);
+        shape.rotate();
+        shape.setPosition(0, 0);
+        return shape;
+    }
+    
+    public static Shape piece(int type, int x, int y) {
+        Shape shape = new Shape(type);
+        shape.setPosition(x, y);
+        return shape;
+    }
+}
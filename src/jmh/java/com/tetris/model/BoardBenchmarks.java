@@ -0,0 +1,121 @@
+package com.tetris.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the {@link Board} operations a game performs on every input
+ * and tick, on a mostly empty and a nearly full board.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmarks {
+
+    /**
+     * A vertical I piece falling down the open column. It is put back at the
+     * top before it would lock, so every step is a plain move.
+     */
+    @State(Scope.Thread)
+    public static class FallingPiece {
+        @Param({"EMPTY", "NEARLY_FULL"})
+        public BenchmarkBoards.Fill fill;
+        
+        Board board;
+        Shape start;
+        int freeSteps;
+        int steps;
+        
+        @Setup
+        public void setUp() {
+            board = BenchmarkBoards.board(fill, 0);
+            start = BenchmarkBoards.wellPiece();
+            freeSteps = BenchmarkBoards.HEIGHT - start.getHeight();
+            board.setCurrentShape(start);
+        }
+    }
+    
+    /**
+     * A T piece turning in the free rows at the top
+     */
+    @State(Scope.Thread)
+    public static class TurningPiece {
+        @Param({"EMPTY", "NEARLY_FULL"})
+        public BenchmarkBoards.Fill fill;
+        
+        Board board;
+        
+        @Setup
+        public void setUp() {
+            board = BenchmarkBoards.board(fill, 0);
+            board.setCurrentShape(BenchmarkBoards.piece(Shape.T_SHAPE, BenchmarkBoards.WIDTH / 2 - 1, 1));
+        }
+    }
+    
+    /**
+     * An I piece dropped into the open column to complete 0-4 lines. The
+     * board is restored before every drop; the 0-line case is the baseline
+     * for the cost of restoring and dropping.
+     */
+    @State(Scope.Thread)
+    public static class LockingPiece {
+        @Param({"EMPTY", "NEARLY_FULL"})
+        public BenchmarkBoards.Fill fill;
+        
+        @Param({"0", "1", "2", "3", "4"})
+        public int clearedRows;
+        
+        Board board;
+        byte[] cells;
+        Shape piece;
+        
+        @Setup
+        public void setUp() {
+            cells = BenchmarkBoards.cells(fill, clearedRows);
+            board = BenchmarkBoards.board(fill, clearedRows);
+            piece = BenchmarkBoards.wellPiece();
+        }
+    }
+    
+    @Benchmark
+    public boolean moveShapeDown(FallingPiece state) {
+        if (state.steps == state.freeSteps) {
+            state.board.setCurrentShape(state.start);
+            state.steps = 0;
+        }
+        state.steps++;
+        return state.board.moveShapeDown();
+    }
+    
+    @Benchmark
+    public boolean rotateShape(TurningPiece state) {
+        return state.board.rotateShape();
+    }
+    
+    @Benchmark
+    public int clearLines(LockingPiece state) {
+        BenchmarkBoards.reset(state.board, state.cells);
+        state.board.setCurrentShape(state.piece);
+        while (state.board.moveShapeDown()) {
+            // Hard drop until the piece locks
+        }
+        return state.board.getLinesCleared();
+    }
+    
+    @Benchmark
+    public int[][] getGrid(TurningPiece state) {
+        return state.board.getGrid();
+    }
+}
@@ -0,0 +1,138 @@
+package com.tetris.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the GRID and BITBOARD storage modes of {@link Board}: collision
+ * checks of every piece orientation at every position of a half-filled well,
+ * and random drops through complete games, which exercise locking and line
+ * clearing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StorageModeBenchmarks {
+
+    private static final int PLACEMENTS = Tetromino.TYPES * Tetromino.ROTATIONS
+            * BenchmarkBoards.HEIGHT * BenchmarkBoards.WIDTH;
+    
+    @Param({"GRID", "BITBOARD"})
+    public Board.Mode mode;
+    
+    private Board halfFilled;
+    private Shape[] placements;
+    private Board playing;
+    private Random random;
+    
+    @Setup
+    public void setUp() {
+        halfFilled = halfFilledBoard(mode);
+        placements = allPlacements();
+        random = new Random(7);
+        playing = newGame();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PLACEMENTS)
+    public int collisionChecks() {
+        int valid = 0;
+        for (Shape shape : placements) {
+            if (halfFilled.isValidPosition(shape)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+    
+    @Benchmark
+    public long randomDrop() {
+        if (playing.isGameOver()) {
+            playing = newGame();
+        }
+        for (int turns = random.nextInt(4); turns > 0; turns--) {
+            playing.rotateShape();
+        }
+        int shift = random.nextInt(BenchmarkBoards.WIDTH) - BenchmarkBoards.WIDTH / 2;
+        for (int i = 0; i < Math.abs(shift); i++) {
+            if (shift < 0) {
+                playing.moveShapeLeft();
+            } else {
+                playing.moveShapeRight();
+            }
+        }
+        playing.hardDrop();
+        return playing.getPiecesPlaced();
+    }
+    
+    private Board newGame() {
+        Board board = new Board(BenchmarkBoards.WIDTH, BenchmarkBoards.HEIGHT, mode,
+                PieceGenerator.uniform(random.nextLong()));
+        board.createNewShape();
+        return board;
+    }
+    
+    private static Board halfFilledBoard(Board.Mode mode) {
+        Random random = new Random(11);
+        Board board = new Board(BenchmarkBoards.WIDTH, BenchmarkBoards.HEIGHT, mode, PieceGenerator.uniform(11));
+        while (true) {
+            Shape shape = new Shape(random.nextInt(Tetromino.TYPES));
+            shape.setPosition(random.nextInt(BenchmarkBoards.WIDTH - shape.getWidth() + 1), 0);
+            if (!board.isValidPosition(shape)) {
+                return board;
+            }
+            board.setCurrentShape(shape);
+            board.hardDrop();
+            if (board.getColumnHeight(maxColumn(board)) > BenchmarkBoards.HEIGHT / 2) {
+                board.setCurrentShape(null);
+                return board;
+            }
+        }
+    }
+    
+    private static int maxColumn(Board board) {
+        int highest = 0;
+        for (int x = 1; x < BenchmarkBoards.WIDTH; x++) {
+            if (board.getColumnHeight(x) > board.getColumnHeight(highest)) {
+                highest = x;
+            }
+        }
+        return highest;
+    }
+    
+    // Every orientation of every piece at every top-left position of the well
+    private static Shape[] allPlacements() {
+        Shape[] shapes = new Shape[PLACEMENTS];
+        int index = 0;
+        for (int type = 0; type < Tetromino.TYPES; type++) {
+            for (int rotation = 0; rotation < Tetromino.ROTATIONS; rotation++) {
+                for (int y = 0; y < BenchmarkBoards.HEIGHT; y++) {
+                    for (int x = 0; x < BenchmarkBoards.WIDTH; x++) {
+                        Shape shape = new Shape(type);
+                        for (int i = 0; i < rotation; i++) {
+                            shape.rotate();
+                        }
+                        shape.setPosition(x, y);
+                        shapes[index++] = shape;
+                    }
+                }
+            }
+        }
+        return shapes;
+    }
+}
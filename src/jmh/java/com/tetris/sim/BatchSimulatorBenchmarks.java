@@ -0,0 +1,52 @@
+package com.tetris.sim;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Games per second of {@link BatchSimulator}, every game played to the end by
+ * {@link RandomInputs} and spread over all cores of the common fork/join pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSimulatorBenchmarks {
+
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    private static final long MAX_FRAMES = 1_000_000;
+    private static final int GAMES = 1_000;
+    
+    private BatchSimulator simulator;
+    private long batch;
+    
+    @Setup
+    public void setUp() {
+        simulator = new BatchSimulator(WIDTH, HEIGHT, MAX_FRAMES, new LongFunction<InputSource>() {
+            @Override
+            public InputSource apply(long seed) {
+                return new RandomInputs(seed);
+            }
+        });
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public long playGames() {
+        return simulator.run(batch++, GAMES).getPieces();
+    }
+}
@@ -0,0 +1,55 @@
+package com.tetris.bot;
+
+import com.tetris.model.Board;
+import com.tetris.sim.Input;
+import com.tetris.sim.InputSource;
+
+/**
+ * Plays a {@link com.tetris.sim.Simulation} with {@link PlacementSearch}: it
+ * searches whenever a new piece appears and then feeds the drops,
+ * rotations, shifts and hard drop of the chosen placement one frame at a time.
+ */
+public class BotPlayer implements InputSource {
+
+    private final PlacementSearch search;
+    private long piece = -1;
+    private int drops;
+    private int rotations;
+    private int shift;
+    
+    public BotPlayer(PlacementSearch search) {
+        this.search = search;
+    }
+    
+    @Override
+    public int nextInput(Board board) {
+        if (board.getPiecesPlaced() != piece) {
+            piece = board.getPiecesPlaced();
+            Placement placement = search.findBest(board);
+            if (placement == null) {
+                return END;
+            }
+            drops = placement.getDrops();
+            rotations = placement.getRotations();
+            shift = placement.getShift();
+        }
+        
+        if (drops > 0) {
+            drops--;
+            return Input.SOFT_DROP;
+        }
+        if (rotations > 0) {
+            rotations--;
+            return Input.ROTATE;
+        }
+        if (shift < 0) {
+            shift++;
+            return Input.LEFT;
+        }
+        if (shift > 0) {
+            shift--;
+            return Input.RIGHT;
+        }
+        return Input.HARD_DROP;
+    }
+}
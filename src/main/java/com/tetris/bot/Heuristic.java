@@ -0,0 +1,78 @@
+package com.tetris.bot;
+
+import com.tetris.model.Board;
+
+/**
+ * Scores a board after a placement as a weighted sum of four features:
+ * lines cleared, aggregate column height, holes (empty cells below the top
+ * of their column) and bumpiness (height differences between neighbouring
+ * columns). Higher is better.
+ */
+public final class Heuristic {
+
+    /**
+     * Weights found by Yiyuan Lee's genetic search for a 10x20 well
+     */
+    public static final Heuristic DEFAULT = new Heuristic(0.760666, -0.510066, -0.35663, -0.184483);
+    
+    private final double linesWeight;
+    private final double heightWeight;
+    private final double holesWeight;
+    private final double bumpinessWeight;
+    
+    public Heuristic(double linesWeight, double heightWeight, double holesWeight, double bumpinessWeight) {
+        this.linesWeight = linesWeight;
+        this.heightWeight = heightWeight;
+        this.holesWeight = holesWeight;
+        this.bumpinessWeight = bumpinessWeight;
+    }
+    
+    /**
+     * Score of a board, given the lines cleared to reach it. A board whose
+     * game is over scores negative infinity.
+     */
+    public double evaluate(Board board, int lines) {
+        if (board.isGameOver()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        
+        int width = board.getWidth();
+        int height = board.getHeight();
+        int aggregateHeight = 0;
+        int holes = 0;
+        int bumpiness = 0;
+        int previous = -1;
+        for (int x = 0; x < width; x++) {
+            int columnHeight = board.getColumnHeight(x);
+            aggregateHeight += columnHeight;
+            for (int y = height - columnHeight + 1; y < height; y++) {
+                if (!board.isOccupied(x, y)) {
+                    holes++;
+                }
+            }
+            if (previous >= 0) {
+                bumpiness += Math.abs(columnHeight - previous);
+            }
+            previous = columnHeight;
+        }
+        
+        return linesWeight * lines + heightWeight * aggregateHeight
+                + holesWeight * holes + bumpinessWeight * bumpiness;
+    }
+    
+    public double getLinesWeight() {
+        return linesWeight;
+    }
+    
+    public double getHeightWeight() {
+        return heightWeight;
+    }
+    
+    public double getHolesWeight() {
+        return holesWeight;
+    }
+    
+    public double getBumpinessWeight() {
+        return bumpinessWeight;
+    }
+}
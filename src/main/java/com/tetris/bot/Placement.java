@@ -0,0 +1,49 @@
+package com.tetris.bot;
+
+/**
+ * Where to put the falling piece: how many rows to let it fall first, how
+ * many times to rotate it and how many columns to shift it afterwards
+ * before hard-dropping it, with the score the search gave that choice.
+ */
+public final class Placement {
+
+    private final int drops;
+    private final int rotations;
+    private final int shift;
+    private final double score;
+    
+    Placement(int drops, int rotations, int shift, double score) {
+        this.drops = drops;
+        this.rotations = rotations;
+        this.shift = shift;
+        this.score = score;
+    }
+    
+    /**
+     * Rows to move down before rotating, for pieces with no room to turn
+     * where they appear
+     */
+    public int getDrops() {
+        return drops;
+    }
+    
+    public int getRotations() {
+        return rotations;
+    }
+    
+    /**
+     * Columns to move, negative to the left
+     */
+    public int getShift() {
+        return shift;
+    }
+    
+    public double getScore() {
+        return score;
+    }
+    
+    @Override
+    public String toString() {
+        return "Placement[drops=" + drops + ", rotations=" + rotations + ", shift=" + shift + ", score=" + score + "]";
+    }
+}
@@ -0,0 +1,250 @@
+package com.tetris.bot;
+
+import com.tetris.model.Board;
+import com.tetris.model.PieceGenerator;
+import com.tetris.model.Shape;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chooses where to put the falling piece by trying every placement.
+ *
+ * A placement is a rotation and a column the piece can reach by turning
+ * where it appears, or a row or two lower where it has no room to turn, and
+ * then sliding sideways, followed by a hard drop, all played on a copy of
+ * the board with the normal rules. When the next piece
+ * is known, every placement of it on each resulting board is tried as well
+ * and a first placement is worth its best follow-up. The follow-ups of each
+ * first placement are searched as separate fork/join tasks, and their best
+ * score is cached by the resulting board's hash and the next piece, so a
+ * board reached again, in this search or a later one, is not searched twice.
+ *
+ * A search may be shared by threads; each call works on its own copies.
+ */
+public class PlacementSearch {
+
+    // Rows a piece may fall before turning, enough for an I piece to stand up
+    private static final int MAX_DROPS_TO_TURN = 2;
+    private static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+
+    private final Heuristic heuristic;
+    private final ForkJoinPool pool;
+    // Best follow-up score by board hash and next piece, without the lines
+    // cleared by the first placement
+    private final TranspositionCache<Double> followUps;
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    
+    public PlacementSearch(Heuristic heuristic) {
+        this(heuristic, ForkJoinPool.commonPool());
+    }
+    
+    public PlacementSearch(Heuristic heuristic, ForkJoinPool pool) {
+        this(heuristic, pool, new TranspositionCache<Double>(DEFAULT_CACHE_CAPACITY));
+    }
+    
+    public PlacementSearch(Heuristic heuristic, ForkJoinPool pool, TranspositionCache<Double> followUps) {
+        this.heuristic = heuristic;
+        this.pool = pool;
+        this.followUps = followUps;
+    }
+    
+    public TranspositionCache<Double> getCache() {
+        return followUps;
+    }
+    
+    /**
+     * The best placement for the board's falling piece, or null when there
+     * is no piece or the game is over
+     */
+    public Placement findBest(Board board) {
+        if (board.getPieceType() == Board.NO_PIECE || board.isGameOver()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            return pool.invoke(new RootSearch(board));
+        } finally {
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Boards scored by the heuristic since the search was created
+     */
+    public long getPlacementsEvaluated() {
+        return evaluated.sum();
+    }
+    
+    /**
+     * Placements evaluated per second of time spent in {@link #findBest}
+     */
+    public double getPlacementsPerSecond() {
+        long nanos = searchNanos.sum();
+        return nanos == 0 ? 0 : evaluated.sum() / (nanos / 1e9);
+    }
+    
+    // A placement played out on its own copy of the board
+    private static final class Candidate {
+        final int drops;
+        final int rotations;
+        final int shift;
+        final Board board;
+        
+        Candidate(int drops, int rotations, int shift, Board board) {
+            this.drops = drops;
+            this.rotations = rotations;
+            this.shift = shift;
+            this.board = board;
+        }
+    }
+    
+    private final class RootSearch extends RecursiveTask<Placement> {
+        private static final long serialVersionUID = 1L;
+        
+        private final Board board;
+        
+        RootSearch(Board board) {
+            this.board = board;
+        }
+        
+        @Override
+        protected Placement compute() {
+            PieceGenerator unknown = unknownPieces();
+            List<Candidate> candidates = placements(board, unknown);
+            boolean lookahead = board.getNextType() != Board.NO_PIECE;
+            
+            List<FollowUpSearch> searches = new ArrayList<>();
+            if (lookahead) {
+                for (Candidate candidate : candidates) {
+                    if (!candidate.board.isGameOver()) {
+                        searches.add(new FollowUpSearch(candidate.board));
+                    }
+                }
+                invokeAll(searches);
+            }
+            
+            Placement best = null;
+            int followUp = 0;
+            for (Candidate candidate : candidates) {
+                double score;
+                if (!lookahead) {
+                    score = evaluate(candidate.board, board.getLinesCleared());
+                } else if (candidate.board.isGameOver()) {
+                    score = Double.NEGATIVE_INFINITY;
+                } else {
+                    int lines = candidate.board.getLinesCleared() - board.getLinesCleared();
+                    score = searches.get(followUp++).join() + heuristic.getLinesWeight() * lines;
+                }
+                if (best == null || score > best.getScore()) {
+                    best = new Placement(candidate.drops, candidate.rotations, candidate.shift, score);
+                }
+            }
+            return best;
+        }
+    }
+    
+    // Best score of the next piece's placements on one board, counting only
+    // the lines that piece clears
+    private final class FollowUpSearch extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+        
+        private final Board board;
+        
+        FollowUpSearch(Board board) {
+            this.board = board;
+        }
+        
+        @Override
+        protected Double compute() {
+            Double cached = followUps.get(board.getHash(), board.getPieceType());
+            if (cached != null) {
+                return cached;
+            }
+            double best = Double.NEGATIVE_INFINITY;
+            for (Candidate candidate : placements(board, unknownPieces())) {
+                best = Math.max(best, evaluate(candidate.board, board.getLinesCleared()));
+            }
+            followUps.put(board.getHash(), board.getPieceType(), best);
+            return best;
+        }
+    }
+    
+    private double evaluate(Board board, int linesBefore) {
+        evaluated.increment();
+        return heuristic.evaluate(board, board.getLinesCleared() - linesBefore);
+    }
+    
+    /**
+     * Every placement of the board's falling piece, each played out on a copy
+     * dealing further pieces from {@code pieces}
+     */
+    private static List<Candidate> placements(Board board, PieceGenerator pieces) {
+        List<Candidate> candidates = new ArrayList<>();
+        int distinctRotations = board.getPieceType() == Shape.O_SHAPE ? 1 : 4;
+        for (int rotations = 0; rotations < distinctRotations; rotations++) {
+            // Find how far the piece must fall to turn and how far it then
+            // slides each way
+            Board probe = null;
+            int drops = 0;
+            for (; drops <= MAX_DROPS_TO_TURN; drops++) {
+                probe = board.copy(pieces);
+                if (turn(probe, drops, rotations)) {
+                    break;
+                }
+            }
+            if (drops > MAX_DROPS_TO_TURN) {
+                continue;
+            }
+            int left = 0;
+            while (probe.moveShapeLeft()) {
+                left++;
+            }
+            for (int i = 0; i < left; i++) {
+                probe.moveShapeRight();
+            }
+            int right = 0;
+            while (probe.moveShapeRight()) {
+                right++;
+            }
+            
+            for (int shift = -left; shift <= right; shift++) {
+                Board result = board.copy(pieces);
+                turn(result, drops, rotations);
+                for (int i = 0; i < Math.abs(shift); i++) {
+                    if (shift < 0) {
+                        result.moveShapeLeft();
+                    } else {
+                        result.moveShapeRight();
+                    }
+                }
+                result.hardDrop();
+                candidates.add(new Candidate(drops, rotations, shift, result));
+            }
+        }
+        return candidates;
+    }
+    
+    private static boolean turn(Board board, int drops, int rotations) {
+        for (int i = 0; i < drops; i++) {
+            if (!board.moveShapeDown()) {
+                return false;
+            }
+        }
+        for (int i = 0; i < rotations; i++) {
+            if (!board.rotateShape()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Deals the pieces after the known next one, which the search never
+    // places; a fixed seed keeps searches repeatable
+    private static PieceGenerator unknownPieces() {
+        return PieceGenerator.uniform(0);
+    }
+}
@@ -0,0 +1,147 @@
+package com.tetris.bot;
+
+import com.tetris.util.SplitMix64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of search results keyed by a board's Zobrist hash (see
+ * {@link com.tetris.model.Board#getHash()}) and a piece type.
+ *
+ * Entries live in two-slot buckets chosen by the key, so the cache never
+ * holds more than its capacity and needs no locks: writers swap whole
+ * entries into an {@link AtomicReferenceArray} and readers only flag them
+ * as used. A new key takes an
+ * empty slot, else the slot not read since it was stored, and when both
+ * have been read it evicts one and gives the other a second chance. Racing
+ * writers may overwrite each other, which only costs a later miss.
+ */
+public final class TranspositionCache<V> {
+    
+    private static final int WAYS = 2;
+    
+    private final AtomicReferenceArray<Entry<V>> slots;
+    private final int bucketMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    private static final class Entry<V> {
+        final long hash;
+        final int piece;
+        final V value;
+        // Read since it was stored; cleared when it survives an eviction
+        volatile boolean referenced;
+        
+        Entry(long hash, int piece, V value) {
+            this.hash = hash;
+            this.piece = piece;
+            this.value = value;
+        }
+        
+        boolean matches(long hash, int piece) {
+            return this.hash == hash && this.piece == piece;
+        }
+    }
+    
+    /**
+     * @param capacity most entries held, rounded up to a power of two
+     */
+    public TranspositionCache(int capacity) {
+        if (capacity < WAYS) {
+            throw new IllegalArgumentException("Capacity must be at least " + WAYS + ": " + capacity);
+        }
+        int buckets = Integer.highestOneBit(capacity - 1) << 1;
+        buckets /= WAYS;
+        this.slots = new AtomicReferenceArray<>(buckets * WAYS);
+        this.bucketMask = buckets - 1;
+    }
+    
+    /**
+     * The value stored for the key, or null
+     */
+    public V get(long hash, int piece) {
+        int first = firstSlot(hash, piece);
+        for (int way = 0; way < WAYS; way++) {
+            Entry<V> entry = slots.get(first + way);
+            if (entry != null && entry.matches(hash, piece)) {
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+    
+    public void put(long hash, int piece, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int first = firstSlot(hash, piece);
+        Entry<V> entry = new Entry<>(hash, piece, value);
+        
+        int victim = -1;
+        for (int way = 0; way < WAYS; way++) {
+            Entry<V> current = slots.get(first + way);
+            if (current == null || current.matches(hash, piece)) {
+                slots.set(first + way, entry);
+                return;
+            }
+            if (victim < 0 && !current.referenced) {
+                victim = way;
+            }
+        }
+        if (victim < 0) {
+            // Both were read: evict one by the key's low bit and let the
+            // other prove itself again
+            victim = (int) (hash & (WAYS - 1));
+            for (int way = 0; way < WAYS; way++) {
+                Entry<V> current = slots.get(first + way);
+                if (current != null) {
+                    current.referenced = false;
+                }
+            }
+        }
+        slots.set(first + victim, entry);
+        evictions.increment();
+    }
+    
+    public void clear() {
+        for (int slot = 0; slot < slots.length(); slot++) {
+            slots.set(slot, null);
+        }
+    }
+    
+    public int getCapacity() {
+        return slots.length();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    
+    /**
+     * Fraction of lookups that found a value, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+    
+    private int firstSlot(long hash, int piece) {
+        long mixed = SplitMix64.mix(hash + piece * 0x9E3779B97F4A7C15L);
+        return ((int) mixed & bucketMask) * WAYS;
+    }
+}
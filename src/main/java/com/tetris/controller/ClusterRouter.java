@@ -0,0 +1,318 @@
+package com.tetris.controller;
+
+import com.tetris.util.HashRing;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Spreads games over the nodes of a cluster by consistent hashing of their
+ * ids, so every node can tell which one owns a game without asking.
+ *
+ * A request for a game this node does not have is forwarded to the game's
+ * owner and the owner's response relayed, so clients only ever talk to the
+ * node they reached. When the nodes change, {@link #setNodes} hands every
+ * local game that now belongs elsewhere to its new owner as a snapshot;
+ * with a {@link HashRing} that is only the games whose part of the ring
+ * changed hands.
+ *
+ * A forwarded long poll waits for the owner's answer on a forwarding thread
+ * of the router rather than on a container thread.
+ *
+ * Nodes are named by their base URL, such as {@code http://10.0.0.2:8080/tetris}.
+ */
+final class ClusterRouter {
+    
+    // Marks a forwarded request, so it is never forwarded again
+    static final String FORWARDED_HEADER = "X-Tetris-Forwarded";
+    static final String SECRET_HEADER = "X-Tetris-Cluster-Secret";
+    static final String CLUSTER_PATH = "/tetris/cluster";
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    // Longer than a long poll
+    private static final int READ_TIMEOUT_MILLIS = (int) LongPollHub.TIMEOUT_MILLIS + 5000;
+    private static final String[] FORWARDED_REQUEST_HEADERS = {"Cookie", "Accept", "Content-Type"};
+    private static final String[] RELAYED_RESPONSE_HEADERS = {"Content-Type", "Set-Cookie"};
+    // Long polls waiting on other nodes at once; more are forwarded on the container thread
+    private static final int MAX_FORWARDING_THREADS = 256;
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    
+    /**
+     * Delivers a game to another node, which {@link GamePassivator#adopt adopts} it
+     */
+    interface Transport {
+        /**
+         * @return false when the game could not be delivered
+         */
+        boolean handOff(String node, String token, String playerName, byte[] snapshot);
+    }
+    
+    private final String self;
+    private final GamePassivator passivator;
+    private final Transport transport;
+    private volatile HashRing ring;
+    // Threads are only started for forwarded long polls and end when idle
+    private final ExecutorService forwarding = new ThreadPoolExecutor(0, MAX_FORWARDING_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "tetris-forward-" + THREAD_IDS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    
+    ClusterRouter(String self, List<String> nodes, GamePassivator passivator, Transport transport) {
+        this.self = self;
+        this.passivator = passivator;
+        this.transport = transport;
+        this.ring = new HashRing(nodes);
+    }
+    
+    String getSelf() {
+        return self;
+    }
+    
+    HashRing getRing() {
+        return ring;
+    }
+    
+    String ownerOf(String id) {
+        return ring.owner(id);
+    }
+    
+    /**
+     * Whether this node is one of the nodes, which it stops being once it
+     * has been told to leave
+     */
+    boolean isMember() {
+        return ring.getNodes().contains(self);
+    }
+    
+    boolean isLocal(String id) {
+        return ring.owner(id).equals(self);
+    }
+    
+    /**
+     * Switch to a new set of nodes and hand every game this node no longer
+     * owns to its new owner. A node leaving the cluster is given a list
+     * without itself and hands over all its games. A game held by a
+     * connection stays here and moves on a later call once it is let go.
+     *
+     * @return the number of games handed over
+     */
+    synchronized int setNodes(List<String> nodes) {
+        HashRing next = new HashRing(nodes);
+        ring = next;
+        int handedOff = 0;
+        for (GameHolder holder : new ArrayList<>(passivator.getHolders())) {
+            String owner = next.owner(holder.getId());
+            // A game at a versus table stays with the table's node
+            if (owner.equals(self) || passivator.getRooms().tableOf(holder) != null) {
+                continue;
+            }
+            String token = holder.getToken();
+            String playerName = holder.getPlayerName();
+            byte[] snapshot = passivator.handOff(holder);
+            if (snapshot == null) {
+                continue;
+            }
+            if (transport.handOff(owner, token, playerName, snapshot)) {
+                handedOff++;
+            } else {
+                // Keep it here; the player is still served from this node
+                passivator.adopt(token, playerName, snapshot);
+            }
+        }
+        return handedOff;
+    }
+    
+    /**
+     * Whether a request for the game with {@code token}, which this node
+     * does not have, should go to another node
+     */
+    boolean shouldForward(String token, HttpServletRequest request) {
+        return token != null && request.getHeader(FORWARDED_HEADER) == null
+                && !isLocal(GameHolder.idOf(token));
+    }
+    
+    /**
+     * Send the request to {@code node} and copy its response back
+     */
+    static void forward(String node, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getQueryString();
+        String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+        HttpURLConnection connection = open(node + path + (query == null ? "" : "?" + query));
+        connection.setRequestMethod(request.getMethod());
+        connection.setRequestProperty(FORWARDED_HEADER, "1");
+        for (String header : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                connection.setRequestProperty(header, value);
+            }
+        }
+        
+        try {
+            if ("POST".equals(request.getMethod())) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    copy(request.getInputStream(), out);
+                }
+            }
+            int status = connection.getResponseCode();
+            response.setStatus(status);
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                for (String relayed : RELAYED_RESPONSE_HEADERS) {
+                    if (relayed.equalsIgnoreCase(header.getKey())) {
+                        for (String value : header.getValue()) {
+                            response.addHeader(relayed, value);
+                        }
+                    }
+                }
+            }
+            InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    copy(in, response.getOutputStream());
+                }
+            }
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_BAD_GATEWAY, "Game node unavailable");
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+    
+    /**
+     * Forward the request like {@link #forward}, but from a forwarding thread
+     * while the request is suspended, for requests such as long polls that
+     * keep the owner busy
+     *
+     * @return false when the request cannot be suspended and was not forwarded
+     */
+    boolean forwardLater(final String node, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!request.isAsyncSupported()) {
+            return false;
+        }
+        final AsyncContext context = request.startAsync(request, response);
+        // The owner's answer or the read timeout comes first
+        context.setTimeout(READ_TIMEOUT_MILLIS + CONNECT_TIMEOUT_MILLIS);
+        Runnable relay = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    forward(node, (HttpServletRequest) context.getRequest(),
+                            (HttpServletResponse) context.getResponse());
+                } catch (IOException | IllegalStateException e) {
+                    // The client is gone or the request timed out
+                } finally {
+                    try {
+                        context.complete();
+                    } catch (IllegalStateException e) {
+                        // Already completed by a timeout
+                    }
+                }
+            }
+        };
+        try {
+            forwarding.execute(relay);
+        } catch (RejectedExecutionException e) {
+            relay.run();
+        }
+        return true;
+    }
+    
+    /**
+     * Stop the forwarding threads once their requests are answered
+     */
+    void shutdown() {
+        forwarding.shutdown();
+    }
+    
+    /**
+     * Delivers games over HTTP to the {@link ClusterServlet} of the new owner
+     */
+    static final class HttpTransport implements Transport {
+        private final String secret;
+        
+        HttpTransport(String secret) {
+            this.secret = secret;
+        }
+        
+        @Override
+        public boolean handOff(String node, String token, String playerName, byte[] snapshot) {
+            try {
+                HttpURLConnection connection = open(node + CLUSTER_PATH + "?action=adopt");
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty(SECRET_HEADER, secret);
+                connection.setRequestProperty("Content-Type", GameStateEncoder.BINARY_TYPE);
+                connection.setDoOutput(true);
+                try (DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
+                    writeHandOff(out, token, playerName, snapshot);
+                }
+                return connection.getResponseCode() == HttpServletResponse.SC_OK;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+    
+    static void writeHandOff(DataOutputStream out, String token, String playerName, byte[] snapshot)
+            throws IOException {
+        out.writeUTF(token);
+        out.writeUTF(playerName);
+        out.writeInt(snapshot.length);
+        out.write(snapshot);
+    }
+    
+    /**
+     * Read a game written by {@link #writeHandOff} and adopt it
+     */
+    static GameHolder readHandOff(DataInputStream in, GamePassivator passivator) throws IOException {
+        String token = in.readUTF();
+        String playerName = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 20) {
+            throw new IOException("Snapshot size out of range: " + length);
+        }
+        byte[] snapshot = new byte[length];
+        in.readFully(snapshot);
+        return passivator.adopt(token, playerName, snapshot);
+    }
+    
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        return connection;
+    }
+    
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tetris.controller;
+
+import com.google.gson.Gson;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Node-to-node endpoint of a cluster, answering only requests that carry
+ * the cluster secret.
+ *
+ * POST {@code action=adopt} takes over a game handed off by another node;
+ * POST {@code action=nodes&nodes=...} switches this node to a new list of
+ * nodes and hands off the games it no longer owns. Every node must be given
+ * the same list.
+ */
+@WebServlet("/tetris/cluster")
+public class ClusterServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    private final Gson gson = new Gson();
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        GamePassivator passivator = GameLifecycleListener.passivator(getServletContext());
+        ClusterRouter router = passivator.getRouter();
+        if (router == null || !hasSecret(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Not a cluster member");
+            return;
+        }
+        
+        Map<String, Object> responseData = new HashMap<>();
+        String action = request.getParameter("action");
+        if ("adopt".equals(action)) {
+            try (DataInputStream in = new DataInputStream(request.getInputStream())) {
+                ClusterRouter.readHandOff(in, passivator);
+            } catch (IOException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed hand-off");
+                return;
+            }
+            responseData.put("success", true);
+        } else if ("nodes".equals(action)) {
+            List<String> nodes = GameLifecycleListener.parseNodes(request.getParameter("nodes"));
+            if (nodes.isEmpty()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No nodes");
+                return;
+            }
+            responseData.put("handedOff", router.setNodes(nodes));
+        } else {
+            responseData.put("error", "Unknown action");
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        
+        response.setContentType("application/json");
+        response.getWriter().write(gson.toJson(responseData));
+    }
+    
+    private boolean hasSecret(HttpServletRequest request) {
+        String secret = getServletContext().getInitParameter(TetrisServlet.CLUSTER_SECRET_PARAM);
+        String given = request.getHeader(ClusterRouter.SECRET_HEADER);
+        // Without a configured secret nobody may move games
+        return secret != null && !secret.isEmpty() && given != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,406 @@
+package com.tetris.controller;
+
+import com.tetris.leaderboard.Leaderboard;
+import com.tetris.model.Game;
+import com.tetris.model.GameSnapshot;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One player's game, registered with {@link GamePassivator} under its id.
+ *
+ * The player holds a secret token for the game; its id, which may be shown
+ * to others (for example to watch the game), is derived from the token by a
+ * one-way hash, so knowing the id does not give control of the game.
+ *
+ * While the player is active the holder keeps the live {@link Game}. Once the
+ * game has seen no requests for a while, {@link GamePassivator} pauses it,
+ * stops its ticks and replaces it with a {@link GameSnapshot}, either in
+ * memory or in a file. The next {@link #get()} rebuilds the game.
+ */
+final class GameHolder {
+    
+    private static final SecureRandom TOKEN_SOURCE = new SecureRandom();
+    private static final int TOKEN_BYTES = 16;
+    private static final int ID_BYTES = 12;
+    private static final int MAX_NAME_LENGTH = 20;
+    
+    private final GamePassivator passivator;
+    private final String token;
+    private final String id;
+    // Guarded by this
+    private Game game;
+    private byte[] snapshot;
+    private Path snapshotFile;
+    private Game.InputRecorder recorder;
+    private int pins;
+    // Client input stream and the last sequence number applied from it
+    private String inputStream;
+    private long lastSequence;
+    private SpectatorHub spectators;
+    // See LongPollHub.forGame
+    LongPollHub longPoll;
+    // See RoomLobby
+    RoomLobby.Table table;
+    private volatile String playerName;
+    private volatile long lastAccess = System.nanoTime();
+    
+    /**
+     * Submits the score of every game that ends to the leaderboard
+     */
+    private final class FinalScore implements Game.GameListener {
+        private final Game game;
+        
+        FinalScore(Game game) {
+            this.game = game;
+        }
+        
+        @Override
+        public void onGameOver() {
+            Leaderboard leaderboard = passivator.getLeaderboard();
+            if (leaderboard != null) {
+                // Called by the writer, so the board is safe to read
+                leaderboard.submit(playerName, game.getBoard().getScore());
+            }
+        }
+        
+        @Override
+        public void onBoardUpdated() {
+        }
+        
+        @Override
+        public void onScoreUpdated(int score) {
+        }
+        
+        @Override
+        public void onLevelUpdated(int level) {
+        }
+    }
+    
+    GameHolder(GamePassivator passivator, String token, Game game) {
+        this.passivator = passivator;
+        this.token = token;
+        this.id = idOf(token);
+        this.playerName = "Player " + id.substring(0, 6);
+        this.game = game;
+        game.addGameListener(new FinalScore(game));
+    }
+    
+    /**
+     * A game handed over from another node, passivated until first used
+     */
+    GameHolder(GamePassivator passivator, String token, String playerName, byte[] snapshot) {
+        this.passivator = passivator;
+        this.token = token;
+        this.id = idOf(token);
+        this.playerName = playerName;
+        this.snapshot = snapshot;
+    }
+    
+    /**
+     * Public id of the game, for others to find it, for example to watch it
+     */
+    String getId() {
+        return id;
+    }
+    
+    /**
+     * The secret that gives control of the game
+     */
+    String getToken() {
+        return token;
+    }
+    
+    /**
+     * Whether {@code candidate} is this game's token, compared in constant time
+     */
+    boolean hasToken(String candidate) {
+        return candidate != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    String getPlayerName() {
+        return playerName;
+    }
+    
+    /**
+     * Use {@code name} on the leaderboard from now on
+     *
+     * @return false when the name is empty, too long or has characters
+     *         other than letters, digits, spaces, '_' and '-'
+     */
+    boolean setPlayerName(String name) {
+        if (name == null) {
+            return false;
+        }
+        name = name.trim();
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH || !name.matches("[\\p{L}\\p{N} _-]+")) {
+            return false;
+        }
+        playerName = name;
+        return true;
+    }
+    
+    /**
+     * The spectators of this game, created on first use
+     */
+    synchronized SpectatorHub getSpectators() {
+        if (spectators == null) {
+            spectators = new SpectatorHub(this);
+        }
+        return spectators;
+    }
+    
+    /**
+     * Whether the game is in a versus match that is still going on
+     */
+    boolean isInMatch() {
+        RoomLobby.Table seated;
+        synchronized (this) {
+            seated = table;
+        }
+        // Outside this lock: a table locks itself before its players
+        return seated != null && seated.isPlaying();
+    }
+    
+    /**
+     * The live game, restored first if it was passivated. Counts as activity.
+     */
+    synchronized Game get() {
+        lastAccess = System.nanoTime();
+        if (game == null) {
+            game = GameSnapshot.restore(readSnapshot(), passivator.getScheduler());
+            game.setInputRecorder(recorder);
+            game.addGameListener(new FinalScore(game));
+            snapshot = null;
+            snapshotFile = null;
+            recorder = null;
+            game.start();
+        }
+        return game;
+    }
+    
+    /**
+     * The live game, or null while it is passivated. Does not count as
+     * activity and never restores the game.
+     */
+    synchronized Game peek() {
+        return game;
+    }
+    
+    /**
+     * Keep the game live while a connection such as a WebSocket uses it
+     */
+    synchronized void pin() {
+        pins++;
+    }
+    
+    synchronized void unpin() {
+        pins--;
+        lastAccess = System.nanoTime();
+    }
+    
+    /**
+     * Apply the inputs of a batch that have not been applied yet, in order.
+     * A batch from a new stream starts the sequence over. Counts as activity.
+     *
+     * @return the highest sequence number applied so far
+     */
+    synchronized long applyBatch(InputBatch batch) {
+        Game live = get();
+        if (!batch.stream.equals(inputStream)) {
+            inputStream = batch.stream;
+            lastSequence = 0;
+        }
+        long latest = batch.latestTime();
+        for (InputBatch.Input input : batch.inputs) {
+            if (input.seq <= lastSequence) {
+                continue;
+            }
+            InputBatch.apply(live, input.action);
+            lastSequence = input.seq;
+            if (input.time > 0) {
+                RequestMetrics.recordInputDelay(TimeUnit.MILLISECONDS.toNanos(latest - input.time));
+            }
+        }
+        return lastSequence;
+    }
+    
+    /**
+     * Passivate the game if it has been idle for at least {@code idleNanos}
+     *
+     * @return true when the game was passivated by this call
+     */
+    synchronized boolean passivateIfIdle(long now, long idleNanos) {
+        if (game == null || pins > 0 || now - lastAccess < idleNanos) {
+            return false;
+        }
+        
+        final Game idle = game;
+        boolean wasPaused = idle.isPaused();
+        idle.pause();
+        idle.shutdown();
+        byte[] bytes;
+        try {
+            // Capture as the writer, after any command still queued
+            bytes = idle.query(new Supplier<byte[]>() {
+                @Override
+                public byte[] get() {
+                    return GameSnapshot.capture(idle);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            // The game cannot be captured, so keep it live
+            if (!wasPaused) {
+                game.resume();
+            }
+            game.start();
+            lastAccess = now;
+            return false;
+        }
+        Path directory = passivator.getDirectory();
+        if (directory != null) {
+            try {
+                Path file = Files.createTempFile(directory, "game-", ".snap");
+                Files.write(file, bytes);
+                snapshotFile = file;
+            } catch (IOException e) {
+                // Fall back to keeping the snapshot in memory
+                snapshot = bytes;
+            }
+        } else {
+            snapshot = bytes;
+        }
+        recorder = game.getInputRecorder();
+        game = null;
+        return true;
+    }
+    
+    /**
+     * Whether nobody has used the game for {@code expireNanos} and no
+     * connection holds it
+     */
+    synchronized boolean isAbandoned(long now, long expireNanos) {
+        return pins == 0 && now - lastAccess >= expireNanos;
+    }
+    
+    /**
+     * Stop the game and take its snapshot for another node to adopt. The
+     * holder is left empty; the game comes back paused, as after passivation.
+     * A game held by a connection stays, since its socket and spectators
+     * would be left on a stopped game.
+     *
+     * @return the snapshot, or null when there is no game, it is held or it cannot be captured
+     */
+    synchronized byte[] handOff() {
+        byte[] bytes;
+        if (pins > 0) {
+            return null;
+        } else if (game != null) {
+            final Game live = game;
+            live.pause();
+            live.shutdown();
+            try {
+                bytes = live.query(new Supplier<byte[]>() {
+                    @Override
+                    public byte[] get() {
+                        return GameSnapshot.capture(live);
+                    }
+                });
+            } catch (IllegalArgumentException e) {
+                live.start();
+                return null;
+            }
+            game = null;
+        } else if (snapshot != null || snapshotFile != null) {
+            bytes = readSnapshot();
+            snapshot = null;
+            snapshotFile = null;
+        } else {
+            return null;
+        }
+        recorder = null;
+        return bytes;
+    }
+    
+    /**
+     * Stop the game for good and delete any snapshot file
+     */
+    synchronized void discard() {
+        if (game != null) {
+            game.shutdown();
+            game = null;
+        }
+        if (snapshotFile != null) {
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException e) {
+                // Nothing more to do for a game that is gone
+            }
+            snapshotFile = null;
+        }
+        snapshot = null;
+    }
+    
+    synchronized boolean isPassivated() {
+        return game == null && (snapshot != null || snapshotFile != null);
+    }
+    
+    /**
+     * Bytes of heap held for a passivated game's snapshot, 0 when the game is
+     * live or its snapshot is on disk
+     */
+    synchronized int getSnapshotBytes() {
+        return snapshot == null ? 0 : snapshot.length;
+    }
+    
+    private byte[] readSnapshot() {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(snapshotFile);
+            Files.deleteIfExists(snapshotFile);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read game snapshot " + snapshotFile, e);
+        }
+    }
+    
+    /**
+     * A new random token for a game
+     */
+    static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        TOKEN_SOURCE.nextBytes(bytes);
+        return hex(bytes, bytes.length);
+    }
+    
+    /**
+     * The public id of the game with the given token
+     */
+    static String idOf(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return hex(digest, ID_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+    
+    private static String hex(byte[] bytes, int length) {
+        StringBuilder hex = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            hex.append(Character.forDigit((bytes[i] >>> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,309 @@
+package com.tetris.controller;
+
+import com.tetris.leaderboard.Leaderboard;
+import com.tetris.model.Game;
+import com.tetris.util.TickScheduler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Ties the life of all games to the application.
+ *
+ * Games are tracked by the application's {@link GamePassivator} under the
+ * token the player presents in the {@value #TOKEN_COOKIE} cookie; no HTTP
+ * session is involved, so any node that owns a game can serve it. A game
+ * nobody has used for the expiry timeout is discarded by the passivator, and
+ * when the application is undeployed every remaining game is shut down and
+ * the application's tick scheduler is stopped, so no game keeps ticking and
+ * no thread keeps running after nobody can reach them.
+ */
+@WebListener
+public class GameLifecycleListener implements ServletContextListener {
+
+    static final String PASSIVATOR_ATTRIBUTE = "tetrisPassivator";
+    static final String LEADERBOARD_ATTRIBUTE = "tetrisLeaderboard";
+    static final String SCHEDULER_ATTRIBUTE = "tetrisScheduler";
+    // How long undeploy waits for the tick threads to stop
+    private static final long SCHEDULER_STOP_MILLIS = 1000;
+    static final String TOKEN_COOKIE = "tetrisGame";
+    static final String TOKEN_PARAM = "token";
+    // For WebSocket endpoints, which are not handed the servlet context
+    private static volatile ServletContext application;
+    
+    /**
+     * Game counts for monitoring
+     */
+    public static final class Stats {
+        private final int live;
+        private final int paused;
+        private final int gameOver;
+        private final int passivated;
+        private final int leaked;
+        
+        Stats(int live, int paused, int gameOver, int passivated, int leaked) {
+            this.live = live;
+            this.paused = paused;
+            this.gameOver = gameOver;
+            this.passivated = passivated;
+            this.leaked = leaked;
+        }
+        
+        /**
+         * Tracked games that are loaded, not paused and not over
+         */
+        public int getLive() {
+            return live;
+        }
+        
+        /**
+         * Tracked games that are loaded but paused
+         */
+        public int getPaused() {
+            return paused;
+        }
+        
+        /**
+         * Tracked games that are loaded and over
+         */
+        public int getGameOver() {
+            return gameOver;
+        }
+        
+        /**
+         * Tracked games that are parked as snapshots
+         */
+        public int getPassivated() {
+            return passivated;
+        }
+        
+        /**
+         * Games still registered for ticks that the registry does not track
+         */
+        public int getLeaked() {
+            return leaked;
+        }
+    }
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        application = event.getServletContext();
+        passivator(application);
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        if (application == context) {
+            application = null;
+        }
+        GamePassivator passivator;
+        Leaderboard leaderboard;
+        TickScheduler scheduler;
+        synchronized (context) {
+            passivator = (GamePassivator) context.getAttribute(PASSIVATOR_ATTRIBUTE);
+            context.removeAttribute(PASSIVATOR_ATTRIBUTE);
+            leaderboard = (Leaderboard) context.getAttribute(LEADERBOARD_ATTRIBUTE);
+            context.removeAttribute(LEADERBOARD_ATTRIBUTE);
+            scheduler = (TickScheduler) context.getAttribute(SCHEDULER_ATTRIBUTE);
+            context.removeAttribute(SCHEDULER_ATTRIBUTE);
+        }
+        if (passivator != null) {
+            passivator.shutdown();
+        }
+        if (scheduler != null) {
+            // Its threads would otherwise outlive the application and pin its class loader
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(SCHEDULER_STOP_MILLIS)) {
+                    context.log("Tick threads still running after undeploy");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (leaderboard != null) {
+            try {
+                leaderboard.close();
+            } catch (IOException e) {
+                context.log("Failed to close the leaderboard log", e);
+            }
+        }
+    }
+    
+    /**
+     * The token of the player's game sent with the request, or null
+     */
+    static String tokenOf(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (TOKEN_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return request.getParameter(TOKEN_PARAM);
+    }
+    
+    /**
+     * Create, start and track a new game
+     *
+     * @param setup called on a new game before it starts, or null
+     */
+    static GameHolder createHolder(ServletContext context, GameSetup setup) {
+        Game game = new Game(10, 20, scheduler(context));
+        if (setup != null) {
+            setup.prepare(game);
+        }
+        game.start();
+        return passivator(context).hold(game);
+    }
+    
+    /**
+     * Hook for preparing a new game, for example attaching a journal
+     */
+    interface GameSetup {
+        void prepare(Game game);
+    }
+    
+    /**
+     * Current game counts for the application
+     */
+    public static Stats getStats(ServletContext context) {
+        GamePassivator passivator = passivator(context);
+        int live = 0;
+        int paused = 0;
+        int gameOver = 0;
+        int passivated = 0;
+        int trackedTicking = 0;
+        for (GameHolder holder : passivator.getHolders()) {
+            Game game = holder.peek();
+            if (game == null) {
+                passivated++;
+                continue;
+            }
+            if (game.isGameOver()) {
+                gameOver++;
+            } else if (game.isPaused()) {
+                paused++;
+            } else {
+                live++;
+            }
+            if (game.isTicking()) {
+                trackedTicking++;
+            }
+        }
+        int leaked = Math.max(0, Game.getTickingCount() - trackedTicking);
+        return new Stats(live, paused, gameOver, passivated, leaked);
+    }
+    
+    /**
+     * The passivator of the running application, for callers without a
+     * servlet context, or null when the application is not running
+     */
+    static GamePassivator passivator() {
+        ServletContext context = application;
+        return context == null ? null : passivator(context);
+    }
+    
+    /**
+     * The application's passivator, created from the context parameters on
+     * first use
+     */
+    static GamePassivator passivator(ServletContext context) {
+        synchronized (context) {
+            GamePassivator passivator = (GamePassivator) context.getAttribute(PASSIVATOR_ATTRIBUTE);
+            if (passivator == null) {
+                String idleSeconds = context.getInitParameter(TetrisServlet.IDLE_SECONDS_PARAM);
+                String expireMinutes = context.getInitParameter(TetrisServlet.EXPIRE_MINUTES_PARAM);
+                String directory = context.getInitParameter(TetrisServlet.SNAPSHOT_DIRECTORY_PARAM);
+                long idleMillis = idleSeconds == null || idleSeconds.isEmpty()
+                        ? GamePassivator.DEFAULT_IDLE_MILLIS : TimeUnit.SECONDS.toMillis(Long.parseLong(idleSeconds));
+                long expireMillis = expireMinutes == null || expireMinutes.isEmpty()
+                        ? GamePassivator.DEFAULT_EXPIRE_MILLIS : TimeUnit.MINUTES.toMillis(Long.parseLong(expireMinutes));
+                passivator = new GamePassivator(scheduler(context), idleMillis, expireMillis,
+                        directory == null || directory.isEmpty() ? null : Paths.get(directory));
+                passivator.setLeaderboard(leaderboard(context));
+                passivator.setRouter(router(context, passivator));
+                context.setAttribute(PASSIVATOR_ATTRIBUTE, passivator);
+            }
+            return passivator;
+        }
+    }
+    
+    /**
+     * The application's tick scheduler, created on first use and shut down
+     * with the application
+     */
+    static TickScheduler scheduler(ServletContext context) {
+        synchronized (context) {
+            TickScheduler scheduler = (TickScheduler) context.getAttribute(SCHEDULER_ATTRIBUTE);
+            if (scheduler == null) {
+                scheduler = new TickScheduler();
+                context.setAttribute(SCHEDULER_ATTRIBUTE, scheduler);
+            }
+            return scheduler;
+        }
+    }
+    
+    /**
+     * The application's leaderboard, opened from its log directory on first
+     * use or kept in memory when none is configured
+     */
+    static Leaderboard leaderboard(ServletContext context) {
+        synchronized (context) {
+            Leaderboard leaderboard = (Leaderboard) context.getAttribute(LEADERBOARD_ATTRIBUTE);
+            if (leaderboard == null) {
+                String directory = context.getInitParameter(TetrisServlet.LEADERBOARD_DIRECTORY_PARAM);
+                try {
+                    leaderboard = directory == null || directory.isEmpty()
+                            ? new Leaderboard() : Leaderboard.open(Paths.get(directory));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open the leaderboard log in " + directory, e);
+                }
+                context.setAttribute(LEADERBOARD_ATTRIBUTE, leaderboard);
+            }
+            return leaderboard;
+        }
+    }
+    
+    /**
+     * The cluster router configured by the context parameters, or null when
+     * no other nodes are listed
+     */
+    private static ClusterRouter router(ServletContext context, GamePassivator passivator) {
+        String self = context.getInitParameter(TetrisServlet.CLUSTER_SELF_PARAM);
+        List<String> nodes = parseNodes(context.getInitParameter(TetrisServlet.CLUSTER_NODES_PARAM));
+        if (self == null || self.trim().isEmpty() || nodes.isEmpty()) {
+            return null;
+        }
+        String secret = context.getInitParameter(TetrisServlet.CLUSTER_SECRET_PARAM);
+        return new ClusterRouter(self.trim(), nodes, passivator,
+                new ClusterRouter.HttpTransport(secret == null ? "" : secret));
+    }
+    
+    /**
+     * Node base URLs from a comma-separated list
+     */
+    static List<String> parseNodes(String list) {
+        List<String> nodes = new ArrayList<>();
+        if (list != null) {
+            for (String node : list.split(",")) {
+                if (!node.trim().isEmpty()) {
+                    nodes.add(node.trim());
+                }
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,236 @@
+package com.tetris.controller;
+
+import com.tetris.leaderboard.Leaderboard;
+import com.tetris.model.Game;
+import com.tetris.util.TickScheduler;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The registry of every game on this node, keyed by game id, which also
+ * parks games whose players have gone quiet.
+ *
+ * Every game handed out through {@link #hold} is checked periodically; one
+ * that has had no requests for the idle timeout is captured into a compact
+ * snapshot and its ticks are stopped, so an idle player costs a few hundred
+ * bytes instead of a live game. A game nobody has used for the expiry
+ * timeout is discarded.
+ *
+ * In a cluster, new games get tokens whose id this node owns, and
+ * {@link ClusterRouter} moves games in and out with {@link #handOff} and
+ * {@link #adopt} when the owners change.
+ */
+final class GamePassivator {
+
+    static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    
+    private final TickScheduler scheduler;
+    private final long idleNanos;
+    private final long expireNanos;
+    private final Path directory;
+    private final Map<String, GameHolder> holders = new ConcurrentHashMap<>();
+    private final RoomLobby rooms = new RoomLobby();
+    private final TickScheduler.Timeout sweepTimeout;
+    private volatile Leaderboard leaderboard;
+    private volatile ClusterRouter router;
+    
+    GamePassivator(TickScheduler scheduler, long idleMillis, Path directory) {
+        this(scheduler, idleMillis, DEFAULT_EXPIRE_MILLIS, directory);
+    }
+    
+    /**
+     * @param scheduler runs the sweeps and the ticks of restored games
+     * @param idleMillis how long a game may go without requests before it is passivated
+     * @param expireMillis how long a game may go without requests before it is discarded
+     * @param directory where to write snapshots, or null to keep them in memory
+     */
+    GamePassivator(TickScheduler scheduler, long idleMillis, long expireMillis, Path directory) {
+        if (idleMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleMillis);
+        }
+        if (expireMillis <= 0) {
+            throw new IllegalArgumentException("Expiry timeout must be positive: " + expireMillis);
+        }
+        this.scheduler = scheduler;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.expireNanos = TimeUnit.MILLISECONDS.toNanos(expireMillis);
+        this.directory = directory;
+        
+        // Check a few times per timeout so games are parked soon after going idle
+        long sweepMillis = Math.max(1, idleMillis / 4);
+        this.sweepTimeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, sweepMillis, sweepMillis);
+    }
+    
+    /**
+     * Track a new game under a new token and return its holder
+     */
+    GameHolder hold(Game game) {
+        ClusterRouter current = router;
+        String token = GameHolder.newToken();
+        while (current != null && current.isMember() && !current.isLocal(GameHolder.idOf(token))) {
+            // Draw again until the game belongs here, about one try per node
+            token = GameHolder.newToken();
+        }
+        GameHolder holder = new GameHolder(this, token, game);
+        holders.put(holder.getId(), holder);
+        return holder;
+    }
+    
+    /**
+     * Track a game handed over by another node; it is restored on first use
+     */
+    GameHolder adopt(String token, String playerName, byte[] snapshot) {
+        GameHolder holder = new GameHolder(this, token, playerName, snapshot);
+        GameHolder replaced = holders.put(holder.getId(), holder);
+        if (replaced != null) {
+            replaced.discard();
+        }
+        return holder;
+    }
+    
+    /**
+     * Stop tracking a game and return its snapshot for another node to
+     * {@link #adopt}, or null when it is not tracked or cannot be captured
+     */
+    byte[] handOff(GameHolder holder) {
+        if (!holders.remove(holder.getId(), holder)) {
+            return null;
+        }
+        byte[] snapshot = holder.handOff();
+        if (snapshot == null) {
+            // Keep a game that is held or cannot travel rather than lose it
+            holders.put(holder.getId(), holder);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Stop tracking a game and discard it
+     */
+    void release(GameHolder holder) {
+        if (holders.remove(holder.getId(), holder)) {
+            holder.discard();
+        }
+    }
+    
+    /**
+     * Close finished versus tables, discard every game that has been
+     * abandoned for the expiry timeout and passivate every other game that
+     * has been idle for the idle timeout
+     *
+     * @return the number of games passivated
+     */
+    int sweep() {
+        rooms.sweep();
+        long now = System.nanoTime();
+        int passivated = 0;
+        for (GameHolder holder : holders.values()) {
+            if (holder.isAbandoned(now, expireNanos)) {
+                release(holder);
+            } else if (holder.passivateIfIdle(now, idleNanos)) {
+                passivated++;
+            }
+        }
+        return passivated;
+    }
+    
+    /**
+     * The tracked games, as a live view
+     */
+    Collection<GameHolder> getHolders() {
+        return Collections.unmodifiableCollection(holders.values());
+    }
+    
+    /**
+     * The tracked game with the given {@link GameHolder#getId id}, or null
+     */
+    GameHolder find(String id) {
+        return id == null ? null : holders.get(id);
+    }
+    
+    /**
+     * The tracked game controlled by {@code token}, or null
+     */
+    GameHolder findByToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        GameHolder holder = holders.get(GameHolder.idOf(token));
+        return holder != null && holder.hasToken(token) ? holder : null;
+    }
+    
+    int getHeldCount() {
+        return holders.size();
+    }
+    
+    int getPassivatedCount() {
+        int count = 0;
+        for (GameHolder holder : holders.values()) {
+            if (holder.isPassivated()) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * The versus tables between tracked games
+     */
+    RoomLobby getRooms() {
+        return rooms;
+    }
+    
+    /**
+     * Where the final scores of tracked games go, or null to keep none
+     */
+    void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+    
+    Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+    
+    /**
+     * The cluster this node belongs to, or null when it runs alone
+     */
+    void setRouter(ClusterRouter router) {
+        this.router = router;
+    }
+    
+    ClusterRouter getRouter() {
+        return router;
+    }
+    
+    TickScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Stop sweeping and discard every tracked game
+     */
+    void shutdown() {
+        sweepTimeout.cancel();
+        for (GameHolder holder : holders.values()) {
+            release(holder);
+        }
+        ClusterRouter current = router;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.tetris.controller;
+
+import com.tetris.model.Game;
+import java.io.IOException;
+import java.util.List;
+import javax.websocket.CloseReason;
+import javax.websocket.EndpointConfig;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+/**
+ * Push transport for the game started by {@link TetrisServlet}. A frame is
+ * sent only when the game reports a change, and the client sends its input
+ * on the same connection as plain action names ("moveLeft", "rotate", ...).
+ * Clients that cannot open a WebSocket keep polling the servlet.
+ */
+@ServerEndpoint(value = "/tetris/socket", configurator = GameSocket.TokenConfigurator.class)
+public class GameSocket {
+    
+    static final String TOKEN = "tetrisToken";
+    
+    private GameHolder holder;
+    private Game game;
+    private StatePusher pusher;
+    
+    /**
+     * Makes the player's game token, from the handshake's cookie or query,
+     * available to the socket
+     */
+    public static class TokenConfigurator extends ServerEndpointConfig.Configurator {
+        @Override
+        public void modifyHandshake(ServerEndpointConfig config, HandshakeRequest request,
+                HandshakeResponse response) {
+            String token = null;
+            List<String> cookies = request.getHeaders().get("Cookie");
+            if (cookies != null) {
+                for (String header : cookies) {
+                    for (String cookie : header.split(";")) {
+                        String[] pair = cookie.trim().split("=", 2);
+                        if (pair.length == 2 && pair[0].equals(GameLifecycleListener.TOKEN_COOKIE)) {
+                            token = pair[1];
+                        }
+                    }
+                }
+            }
+            List<String> params = request.getParameterMap().get(GameLifecycleListener.TOKEN_PARAM);
+            if (token == null && params != null && !params.isEmpty()) {
+                token = params.get(0);
+            }
+            if (token != null) {
+                config.getUserProperties().put(TOKEN, token);
+            }
+        }
+    }
+    
+    @OnOpen
+    public void onOpen(Session session, EndpointConfig config) throws IOException {
+        String token = (String) config.getUserProperties().get(TOKEN);
+        GamePassivator passivator = GameLifecycleListener.passivator();
+        holder = passivator == null ? null : passivator.findByToken(token);
+        if (holder == null) {
+            // A game on another node is played by polling, which is forwarded there
+            ClusterRouter router = passivator == null ? null : passivator.getRouter();
+            boolean elsewhere = token != null && router != null && !router.isLocal(GameHolder.idOf(token));
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                    elsewhere ? "Game is on another node" : "No game in progress"));
+            return;
+        }
+        
+        // An open socket keeps the game from being passivated
+        holder.pin();
+        game = holder.get();
+        
+        pusher = new StatePusher(game, session.getAsyncRemote());
+        game.addGameListener(pusher);
+        
+        // Start the client off with a full keyframe
+        pusher.push();
+    }
+    
+    @OnMessage
+    public void onMessage(String action) {
+        if (game == null) {
+            return;
+        }
+        
+        switch (action) {
+            case "moveLeft":
+                game.moveLeft();
+                break;
+            case "moveRight":
+                game.moveRight();
+                break;
+            case "rotate":
+                game.rotate();
+                break;
+            case "dropDown":
+                game.dropDown();
+                break;
+            case "pause":
+                if (holder.isInMatch()) {
+                    break;
+                }
+                game.pause();
+                break;
+            case "resume":
+                game.resume();
+                break;
+            case "newGame":
+                if (holder.isInMatch()) {
+                    break;
+                }
+                game.restart();
+                break;
+            default:
+                // Ignore unknown input
+        }
+    }
+    
+    @OnClose
+    public void onClose() {
+        detach();
+    }
+    
+    @OnError
+    public void onError(Throwable error) {
+        detach();
+    }
+    
+    private void detach() {
+        if (game != null && pusher != null) {
+            game.removeGameListener(pusher);
+            pusher = null;
+            holder.unpin();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,262 @@
+package com.tetris.controller;
+
+import com.google.gson.Gson;
+import com.tetris.model.Board;
+import com.tetris.model.Game;
+import com.tetris.model.Shape;
+import com.tetris.model.Block;
+import com.tetris.model.Tetromino;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the game state sent to clients, shared by the polling servlet and
+ * the push endpoint so both transports speak the same format.
+ *
+ * Two encodings are available. JSON carries row deltas against the client's
+ * last version. The binary form ({@value #BINARY_TYPE}) is always a complete
+ * frame, laid out big-endian as:
+ *
+ * <pre>
+ *  0  u8   format (2)
+ *  1  u8   width
+ *  2  u8   height
+ *  3  u8   flags: bit 0 game over, bit 1 paused
+ *  4  i32  score
+ *  8  u16  level
+ * 10  u8   next piece type, 0xFF for none
+ * 11  u8   ghost piece as type * 4 + rotation, 0xFF for none
+ * 12  i64  board version
+ * 20  u8   ghost pivot column
+ * 21  u8   ghost pivot row
+ * 22  ...  cells, 3 bits each in row-major order, packed from the low bit of
+ *          each byte upwards: 0 empty, 1-7 piece type + 1
+ * </pre>
+ *
+ * The ghost is the falling piece moved down to where a hard drop would
+ * land it. JSON sends its cells as {@code ghost}; the binary frame sends
+ * the piece's orientation and pivot, as in {@link Tetromino}.
+ *
+ * A 10x20 board fits in 97 bytes.
+ */
+public final class GameStateEncoder {
+    
+    // Version value meaning "the client has no board yet"
+    public static final long NO_VERSION = -1;
+    
+    public static final String JSON_TYPE = "application/json";
+    public static final String BINARY_TYPE = "application/octet-stream";
+    
+    static final int BINARY_FORMAT = 2;
+    static final int BINARY_HEADER_BYTES = 22;
+    static final int BITS_PER_CELL = 3;
+    private static final int FLAG_GAME_OVER = 1;
+    private static final int FLAG_PAUSED = 2;
+    private static final int NO_NEXT_PIECE = 0xFF;
+    private static final int NO_GHOST = 0xFF;
+    
+    private static final Gson GSON = new Gson();
+    
+    private GameStateEncoder() {
+    }
+    
+    // Method to get game state including next shape
+    public static Map<String, Object> getGameState(final Game game, final long since) {
+        // Read between two commands, never while the board is changing
+        return game.query(new Supplier<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get() {
+                return readGameState(game, since);
+            }
+        });
+    }
+    
+    private static Map<String, Object> readGameState(Game game, long since) {
+        Map<String, Object> gameState = new HashMap<>();
+        Board board = game.getBoard();
+        
+        // Add the rows changed since the client's version, or the full grid
+        // when the client is on another board or too far behind for a delta
+        long version = board.getVersion();
+        int[] changedRows = board.getChangedRows(since);
+        // Sent as a string since versions can exceed JavaScript's integer precision
+        gameState.put("version", Long.toString(version));
+        if (changedRows == null || changedRows.length > board.getHeight() / 2) {
+            gameState.put("keyframe", true);
+            gameState.put("grid", board.getGrid());
+        } else {
+            Map<String, int[]> rows = new LinkedHashMap<>();
+            for (int row : changedRows) {
+                rows.put(Integer.toString(row), board.getRow(row));
+            }
+            gameState.put("rows", rows);
+        }
+        
+        // Add basic game state
+        gameState.put("score", game.getBoard().getScore());
+        gameState.put("level", game.getLevel());
+        gameState.put("gameOver", game.isGameOver());
+        gameState.put("paused", game.isPaused());
+        
+        // Add the next shape if available
+        Shape nextShape = game.getNextShape();
+        if (nextShape != null) {
+            List<Map<String, Object>> nextShapeBlocks = new ArrayList<>();
+            for (Block block : nextShape.getBlocks()) {
+                Map<String, Object> blockData = new HashMap<>();
+                blockData.put("x", block.getX());
+                blockData.put("y", block.getY());
+                blockData.put("color", block.getColor());
+                nextShapeBlocks.add(blockData);
+            }
+            gameState.put("nextShape", nextShapeBlocks);
+        }
+        
+        // Add the cells where the falling piece would land
+        if (hasGhost(game)) {
+            int type = board.getPieceType();
+            int rotation = board.getPieceRotation();
+            int ghostY = board.getGhostY();
+            List<Map<String, Object>> ghostBlocks = new ArrayList<>();
+            for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+                Map<String, Object> blockData = new HashMap<>();
+                blockData.put("x", board.getPieceX() + Tetromino.dx(type, rotation, cell));
+                blockData.put("y", ghostY + Tetromino.dy(type, rotation, cell));
+                ghostBlocks.add(blockData);
+            }
+            gameState.put("ghost", ghostBlocks);
+        }
+        
+        return gameState;
+    }
+    
+    public static long parseVersion(String value) {
+        if (value == null) {
+            return NO_VERSION;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+    
+    /**
+     * Content negotiation: the binary form is used when the client lists it in Accept
+     */
+    public static boolean acceptsBinary(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(BINARY_TYPE);
+    }
+    
+    /**
+     * Write the state in the negotiated encoding straight to the response
+     */
+    public static void writeState(Game game, long since, boolean binary, ServletResponse response)
+            throws IOException {
+        if (binary) {
+            long started = System.nanoTime();
+            byte[] frame = getBinaryState(game);
+            RequestMetrics.recordBinary(System.nanoTime() - started, frame.length);
+            response.setContentType(BINARY_TYPE);
+            response.setContentLength(frame.length);
+            OutputStream out = response.getOutputStream();
+            out.write(frame);
+        } else {
+            response.setContentType(JSON_TYPE);
+            response.getWriter().write(toJson(getGameState(game, since)));
+        }
+    }
+    
+    /**
+     * Serialize a state built by {@link #getGameState}, recording the time
+     * taken and the size for {@link MetricsServlet}
+     */
+    static String toJson(Map<String, Object> state) {
+        long started = System.nanoTime();
+        String json = GSON.toJson(state);
+        RequestMetrics.recordJson(System.nanoTime() - started, json.length());
+        return json;
+    }
+    
+    /**
+     * Size in bytes of the binary frame for a board of the given size
+     */
+    public static int binarySize(int width, int height) {
+        return BINARY_HEADER_BYTES + (width * height * BITS_PER_CELL + 7) / 8;
+    }
+    
+    public static byte[] getBinaryState(final Game game) {
+        return game.query(new Supplier<byte[]>() {
+            @Override
+            public byte[] get() {
+                return readBinaryState(game);
+            }
+        });
+    }
+    
+    /**
+     * Encode the binary frame; the caller must be the game's writer
+     */
+    static byte[] readBinaryState(Game game) {
+        Board board = game.getBoard();
+        int width = board.getWidth();
+        int height = board.getHeight();
+        long version = board.getVersion();
+        
+        byte[] types = new byte[width * height];
+        board.fillCellTypes(types);
+        
+        byte[] frame = new byte[binarySize(width, height)];
+        frame[0] = BINARY_FORMAT;
+        frame[1] = (byte) width;
+        frame[2] = (byte) height;
+        frame[3] = (byte) ((game.isGameOver() ? FLAG_GAME_OVER : 0) | (game.isPaused() ? FLAG_PAUSED : 0));
+        putInt(frame, 4, board.getScore());
+        int level = Math.min(game.getLevel(), 0xFFFF);
+        frame[8] = (byte) (level >>> 8);
+        frame[9] = (byte) level;
+        Shape nextShape = game.getNextShape();
+        frame[10] = (byte) (nextShape == null ? NO_NEXT_PIECE : nextShape.getShapeType());
+        putInt(frame, 12, (int) (version >>> 32));
+        putInt(frame, 16, (int) version);
+        if (hasGhost(game)) {
+            frame[11] = (byte) (board.getPieceType() * Tetromino.ROTATIONS + board.getPieceRotation());
+            frame[20] = (byte) board.getPieceX();
+            frame[21] = (byte) board.getGhostY();
+        } else {
+            frame[11] = (byte) NO_GHOST;
+        }
+        
+        int bit = BINARY_HEADER_BYTES * 8;
+        for (byte type : types) {
+            int value = type & 0x7;
+            frame[bit >>> 3] |= (byte) (value << (bit & 7));
+            if ((bit & 7) > 8 - BITS_PER_CELL) {
+                // The cell straddles two bytes
+                frame[(bit >>> 3) + 1] |= (byte) (value >>> (8 - (bit & 7)));
+            }
+            bit += BITS_PER_CELL;
+        }
+        return frame;
+    }
+    
+    private static boolean hasGhost(Game game) {
+        return !game.isGameOver() && game.getBoard().getPieceType() != Board.NO_PIECE;
+    }
+    
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.tetris.controller;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reports how many games are live, paused, over, passivated and leaked, as
+ * JSON.
+ * It never creates a game.
+ */
+@WebServlet("/tetris/games")
+public class GameStatsServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    private final Gson gson = new Gson();
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        GameLifecycleListener.Stats stats = GameLifecycleListener.getStats(getServletContext());
+        Map<String, Object> responseData = new LinkedHashMap<>();
+        responseData.put("live", stats.getLive());
+        responseData.put("paused", stats.getPaused());
+        responseData.put("gameOver", stats.getGameOver());
+        responseData.put("passivated", stats.getPassivated());
+        responseData.put("leaked", stats.getLeaked());
+        
+        response.setContentType("application/json");
+        response.getWriter().write(gson.toJson(responseData));
+    }
+}
@@ -0,0 +1,100 @@
+package com.tetris.controller;
+
+import com.google.gson.annotations.SerializedName;
+import com.tetris.model.Game;
+import java.util.List;
+
+/**
+ * An ordered run of inputs posted by the client in one request.
+ *
+ * The client numbers its inputs and keeps resending every input the server
+ * has not yet acknowledged, so it can post a key press without waiting for
+ * the previous reply. {@link GameHolder#applyBatch} applies each sequence
+ * number once; inputs that were already applied are skipped. The stream id
+ * identifies one page load, whose sequence numbers start again from 1.
+ *
+ * Inputs also carry the client time of the key press. Only differences
+ * between times of one batch are used, for the delivery delay in
+ * {@link RequestMetrics}, as the client's clock is not the server's. The
+ * journal keeps the server's times, at which the game applied the inputs,
+ * since those are what a replay follows.
+ */
+final class InputBatch {
+
+    // Upper bound on inputs in one request, well above what a client resends
+    static final int MAX_INPUTS = 256;
+    
+    String stream;
+    List<Input> inputs;
+    
+    static final class Input {
+        long seq;
+        String action;
+        // Client time of the key press in milliseconds, 0 when not sent
+        @SerializedName("t")
+        long time;
+    }
+    
+    /**
+     * Whether the batch has a stream and known actions with positive,
+     * strictly increasing sequence numbers
+     */
+    boolean isValid() {
+        if (stream == null || inputs == null || inputs.size() > MAX_INPUTS) {
+            return false;
+        }
+        long previous = 0;
+        for (Input input : inputs) {
+            if (input == null || input.seq <= previous || input.time < 0 || !isKnownAction(input.action)) {
+                return false;
+            }
+            previous = input.seq;
+        }
+        return true;
+    }
+    
+    /**
+     * Client time of the newest key press in the batch, 0 when no input has one
+     */
+    long latestTime() {
+        long latest = 0;
+        for (Input input : inputs) {
+            latest = Math.max(latest, input.time);
+        }
+        return latest;
+    }
+    
+    static boolean isKnownAction(String action) {
+        if (action == null) {
+            return false;
+        }
+        switch (action) {
+            case "moveLeft":
+            case "moveRight":
+            case "rotate":
+            case "dropDown":
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    static void apply(Game game, String action) {
+        switch (action) {
+            case "moveLeft":
+                game.moveLeft();
+                break;
+            case "moveRight":
+                game.moveRight();
+                break;
+            case "rotate":
+                game.rotate();
+                break;
+            case "dropDown":
+                game.dropDown();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.tetris.controller;
+
+import com.google.gson.Gson;
+import com.tetris.leaderboard.Leaderboard;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reports the best final scores as JSON: the top {@code count} players
+ * (default {@value #DEFAULT_COUNT}) and, given {@code player}, that
+ * player's rank and best. It never creates a game.
+ */
+@WebServlet("/tetris/leaderboard")
+public class LeaderboardServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    static final int DEFAULT_COUNT = 10;
+    static final int MAX_COUNT = 100;
+    private final Gson gson = new Gson();
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        Leaderboard leaderboard = GameLifecycleListener.leaderboard(getServletContext());
+        int count = DEFAULT_COUNT;
+        String countParam = request.getParameter("count");
+        if (countParam != null) {
+            try {
+                count = Math.max(0, Math.min(Integer.parseInt(countParam), MAX_COUNT));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid count");
+                return;
+            }
+        }
+        
+        Map<String, Object> responseData = new LinkedHashMap<>();
+        List<Map<String, Object>> top = new ArrayList<>();
+        int rank = 1;
+        for (Leaderboard.Entry entry : leaderboard.top(count)) {
+            top.add(entry(rank++, entry));
+        }
+        responseData.put("top", top);
+        responseData.put("players", leaderboard.size());
+        
+        String player = request.getParameter("player");
+        if (player != null) {
+            Leaderboard.Entry entry = leaderboard.get(player);
+            if (entry != null) {
+                responseData.put("player", entry(leaderboard.rankOf(player), entry));
+            }
+        }
+        
+        response.setContentType("application/json");
+        response.getWriter().write(gson.toJson(responseData));
+    }
+    
+    private static Map<String, Object> entry(int rank, Leaderboard.Entry entry) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("rank", rank);
+        data.put("player", entry.getPlayer());
+        data.put("score", entry.getScore());
+        return data;
+    }
+}
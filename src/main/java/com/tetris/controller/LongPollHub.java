@@ -0,0 +1,199 @@
+package com.tetris.controller;
+
+import com.tetris.model.Game;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Parks long-poll getState requests for one game until its board version
+ * moves past the version the client already has, or until a timeout.
+ *
+ * Parked requests are held as {@link AsyncContext}s, so no container thread
+ * waits for them. The hub is registered as a listener on the game and, from
+ * {@link #onBoardUpdated()}, hands each request that has news to a container
+ * thread to answer: the listener runs on the game's writer, a tick worker
+ * shared with other games, which must never wait on a slow client.
+ */
+class LongPollHub implements Game.GameListener {
+    
+    static final long TIMEOUT_MILLIS = 25_000;
+    
+    private final Game game;
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    
+    private LongPollHub(Game game) {
+        this.game = game;
+    }
+    
+    /**
+     * The hub for the player's game, created and registered on first use
+     */
+    static LongPollHub forGame(GameHolder holder, Game game) {
+        synchronized (holder) {
+            LongPollHub hub = holder.longPoll;
+            if (hub == null || hub.game != game) {
+                hub = new LongPollHub(game);
+                game.addGameListener(hub);
+                holder.longPoll = hub;
+            }
+            return hub;
+        }
+    }
+    
+    /**
+     * Park the request until the board changes after {@code since}.
+     *
+     * @param binary whether to answer in the binary encoding
+     * @return false when the client is already behind and should be answered
+     *         right away, true when the request was parked
+     */
+    boolean park(HttpServletRequest request, long since, boolean binary) {
+        if (hasNews(since, isPaused())) {
+            return false;
+        }
+        
+        AsyncContext context = request.startAsync();
+        context.setTimeout(TIMEOUT_MILLIS);
+        final Waiter waiter = new Waiter(context, since, isPaused(), binary);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                waiter.respond();
+            }
+            
+            @Override
+            public void onError(AsyncEvent event) {
+                waiter.finish();
+            }
+            
+            @Override
+            public void onComplete(AsyncEvent event) {
+                waiters.remove(waiter);
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        waiters.add(waiter);
+        
+        // The board may have changed while the request was being parked
+        if (hasNews(since, waiter.paused)) {
+            waiter.respond();
+        }
+        return true;
+    }
+    
+    private boolean isPaused() {
+        return game.query(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return game.isPaused();
+            }
+        });
+    }
+    
+    private boolean hasNews(final long since, final boolean paused) {
+        return game.query(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return game.isGameOver() || game.getBoard().getVersion() != since || game.isPaused() != paused;
+            }
+        });
+    }
+    
+    // Called by the writer, so only the check happens here
+    private void wake() {
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+            Waiter waiter = it.next();
+            if (hasNews(waiter.since, waiter.paused)) {
+                it.remove();
+                waiter.respondLater();
+            }
+        }
+    }
+    
+    @Override
+    public void onBoardUpdated() {
+        wake();
+    }
+    
+    @Override
+    public void onGameOver() {
+        wake();
+    }
+    
+    @Override
+    public void onScoreUpdated(int score) {
+    }
+    
+    @Override
+    public void onLevelUpdated(int level) {
+    }
+    
+    /**
+     * One parked request, answered exactly once
+     */
+    private class Waiter {
+        private final AsyncContext context;
+        private final long since;
+        // Whether the game was paused when the request was parked
+        private final boolean paused;
+        private final boolean binary;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        
+        Waiter(AsyncContext context, long since, boolean paused, boolean binary) {
+            this.context = context;
+            this.since = since;
+            this.paused = paused;
+            this.binary = binary;
+        }
+        
+        /**
+         * Answer on a container thread instead of the caller's
+         */
+        void respondLater() {
+            if (done.get()) {
+                return;
+            }
+            try {
+                context.start(new Runnable() {
+                    @Override
+                    public void run() {
+                        respond();
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // Already completed or timed out
+                finish();
+            }
+        }
+        
+        void respond() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                GameStateEncoder.writeState(game, since, binary, context.getResponse());
+            } catch (IOException | IllegalStateException e) {
+                // The client has gone away
+            } finally {
+                context.complete();
+            }
+        }
+        
+        void finish() {
+            if (done.compareAndSet(false, true)) {
+                context.complete();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.tetris.controller;
+
+import com.tetris.model.Game;
+import com.tetris.util.Histogram;
+import com.tetris.util.TickScheduler;
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes tick, request and game counts in the Prometheus text format.
+ *
+ * Histograms are reported as summaries with fixed quantiles, quantile 1
+ * being the largest value seen; durations are in seconds. Like
+ * {@link GameStatsServlet} it never creates a session or a game.
+ */
+@WebServlet("/tetris/metrics")
+public class MetricsServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1};
+    private static final double NANOS_PER_SECOND = 1e9;
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        StringBuilder out = new StringBuilder(4096);
+        writeGames(out, GameLifecycleListener.getStats(getServletContext()));
+        writeMetrics(out, GameLifecycleListener.scheduler(getServletContext()));
+        
+        response.setContentType(CONTENT_TYPE);
+        response.getWriter().write(out.toString());
+    }
+    
+    static void writeGames(StringBuilder out, GameLifecycleListener.Stats stats) {
+        header(out, "tetris_games", "gauge", "Games by state");
+        sample(out, "tetris_games", "state=\"live\"", stats.getLive());
+        sample(out, "tetris_games", "state=\"paused\"", stats.getPaused());
+        sample(out, "tetris_games", "state=\"game_over\"", stats.getGameOver());
+        sample(out, "tetris_games", "state=\"passivated\"", stats.getPassivated());
+        sample(out, "tetris_games", "state=\"leaked\"", stats.getLeaked());
+    }
+    
+    /**
+     * Everything except the game counts, which need the servlet context
+     */
+    static void writeMetrics(StringBuilder out, TickScheduler scheduler) {
+        header(out, "tetris_scheduled_tasks", "gauge", "Tasks registered with the tick scheduler");
+        sample(out, "tetris_scheduled_tasks", null, scheduler.getScheduledCount());
+        
+        summary(out, "tetris_tick_duration_seconds", "Time to apply one gravity tick",
+                null, Game.getTickDurations(), NANOS_PER_SECOND);
+        summary(out, "tetris_tick_lateness_seconds", "Delay from a tick's deadline to the start of its run",
+                null, scheduler.getLateness(), NANOS_PER_SECOND);
+        
+        header(out, "tetris_request_duration_seconds", "summary", "Servlet handler time by action");
+        for (Map.Entry<String, Histogram> entry : RequestMetrics.getRequestNanos().entrySet()) {
+            quantiles(out, "tetris_request_duration_seconds", "method=\"GET\",action=\"" + entry.getKey() + "\"",
+                    entry.getValue(), NANOS_PER_SECOND);
+        }
+        for (Map.Entry<String, Histogram> entry : RequestMetrics.postRequestNanos().entrySet()) {
+            quantiles(out, "tetris_request_duration_seconds", "method=\"POST\",action=\"" + entry.getKey() + "\"",
+                    entry.getValue(), NANOS_PER_SECOND);
+        }
+        
+        header(out, "tetris_state_encode_seconds", "summary", "Time to serialize one state frame");
+        quantiles(out, "tetris_state_encode_seconds", "encoding=\"json\"",
+                RequestMetrics.JSON_ENCODE_NANOS, NANOS_PER_SECOND);
+        quantiles(out, "tetris_state_encode_seconds", "encoding=\"binary\"",
+                RequestMetrics.BINARY_ENCODE_NANOS, NANOS_PER_SECOND);
+        
+        header(out, "tetris_state_size_bytes", "summary", "Size of one state frame");
+        quantiles(out, "tetris_state_size_bytes", "encoding=\"json\"", RequestMetrics.JSON_BYTES, 1);
+        quantiles(out, "tetris_state_size_bytes", "encoding=\"binary\"", RequestMetrics.BINARY_BYTES, 1);
+        
+        summary(out, "tetris_input_delay_seconds", "Client time from a key press to the newest one posted with it",
+                null, RequestMetrics.INPUT_DELAY_NANOS, NANOS_PER_SECOND);
+    }
+    
+    private static void summary(StringBuilder out, String name, String help, String labels,
+            Histogram histogram, double scale) {
+        header(out, name, "summary", help);
+        quantiles(out, name, labels, histogram, scale);
+    }
+    
+    // The samples of one summary series: quantiles, sum and count
+    private static void quantiles(StringBuilder out, String name, String labels, Histogram histogram,
+            double scale) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        String prefix = labels == null ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+            sample(out, name, prefix + "quantile=\"" + quantile + "\"",
+                    snapshot.getValueAtQuantile(quantile) / scale);
+        }
+        sample(out, name + "_sum", labels, snapshot.getSum() / scale);
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+    
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,88 @@
+package com.tetris.controller;
+
+import com.tetris.util.Histogram;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide request and encoding histograms, read by {@link MetricsServlet}.
+ *
+ * Every action has its histogram registered up front, and anything else is
+ * counted as {@value #OTHER}, so recording is a map lookup plus
+ * {@link Histogram#record} and never allocates.
+ */
+final class RequestMetrics {
+    
+    static final String OTHER = "other";
+    // GET without an action serves the game page
+    static final String PAGE = "page";
+    
+    private static final Map<String, Histogram> GET_NANOS =
+            histograms(PAGE, "getState", "newGame", "pause", "resume", "watchId", "setName",
+                    "openRoom", "joinRoom", "room", OTHER);
+    private static final Map<String, Histogram> POST_NANOS =
+            histograms("moveLeft", "moveRight", "rotate", "dropDown", "batch", OTHER);
+    
+    // Time to encode a state frame, and its size. JSON sizes are in
+    // characters, which are bytes for the all-ASCII state.
+    static final Histogram JSON_ENCODE_NANOS = new Histogram();
+    static final Histogram JSON_BYTES = new Histogram();
+    static final Histogram BINARY_ENCODE_NANOS = new Histogram();
+    static final Histogram BINARY_BYTES = new Histogram();
+    // Client time from a key press to the newest key press posted with it,
+    // above zero when the input was resent or waited behind others
+    static final Histogram INPUT_DELAY_NANOS = new Histogram();
+    
+    private RequestMetrics() {
+    }
+    
+    static void recordGet(String action, long nanos) {
+        lookup(GET_NANOS, action == null ? PAGE : action).record(nanos);
+    }
+    
+    static void recordPost(String action, long nanos) {
+        lookup(POST_NANOS, action).record(nanos);
+    }
+    
+    static void recordJson(long nanos, int length) {
+        JSON_ENCODE_NANOS.record(nanos);
+        JSON_BYTES.record(length);
+    }
+    
+    static void recordBinary(long nanos, int length) {
+        BINARY_ENCODE_NANOS.record(nanos);
+        BINARY_BYTES.record(length);
+    }
+    
+    static void recordInputDelay(long nanos) {
+        INPUT_DELAY_NANOS.record(nanos);
+    }
+    
+    /**
+     * Handler time of each GET action, by action name
+     */
+    static Map<String, Histogram> getRequestNanos() {
+        return GET_NANOS;
+    }
+    
+    /**
+     * Handler time of each POST action, by action name
+     */
+    static Map<String, Histogram> postRequestNanos() {
+        return POST_NANOS;
+    }
+    
+    private static Histogram lookup(Map<String, Histogram> histograms, String action) {
+        Histogram histogram = action == null ? null : histograms.get(action);
+        return histogram != null ? histogram : histograms.get(OTHER);
+    }
+    
+    private static Map<String, Histogram> histograms(String... actions) {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (String action : actions) {
+            histograms.put(action, new Histogram());
+        }
+        return Collections.unmodifiableMap(histograms);
+    }
+}
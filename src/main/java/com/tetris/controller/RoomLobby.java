@@ -0,0 +1,252 @@
+package com.tetris.controller;
+
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.model.Room;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Versus rooms between the games of {@link GamePassivator}'s registry.
+ *
+ * A player opens a table for a number of seats and shares its code; others
+ * join with the code, and once every seat is taken their games restart
+ * together as a {@link Room}. Games in a match are pinned, so they are
+ * neither passivated nor handed to another node, and are released again by
+ * {@link #sweep} once the match is over. Tables are local to the node, so in
+ * a cluster every player of a table must be served by the same node.
+ */
+final class RoomLobby {
+    
+    static final int MAX_SEATS = 4;
+    // Tables still waiting for players after this long are closed
+    static final long WAITING_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final SecureRandom CODES = new SecureRandom();
+    private static final String CODE_CHARACTERS = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private static final int CODE_LENGTH = 6;
+    
+    private static final Supplier<Void> NOTHING = new Supplier<Void>() {
+        @Override
+        public Void get() {
+            return null;
+        }
+    };
+    
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    
+    /**
+     * Seats waiting for players and, once full, the match between them
+     */
+    final class Table {
+        private final String code;
+        private final int seats;
+        private final long created = System.nanoTime();
+        // Guarded by this
+        private final List<GameHolder> holders = new ArrayList<>();
+        private Room room;
+        private boolean closed;
+        
+        private Table(String code, int seats) {
+            this.code = code;
+            this.seats = seats;
+        }
+        
+        String getCode() {
+            return code;
+        }
+        
+        synchronized boolean isPlaying() {
+            return room != null && !closed;
+        }
+        
+        /**
+         * The table as JSON fields: seats, players, and the match once it started
+         */
+        synchronized Map<String, Object> describe() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("room", code);
+            data.put("seats", seats);
+            data.put("started", room != null);
+            data.put("finished", room != null && room.isFinished());
+            List<Map<String, Object>> players = new ArrayList<>();
+            for (int seat = 0; seat < holders.size(); seat++) {
+                Map<String, Object> player = new LinkedHashMap<>();
+                player.put("seat", seat);
+                player.put("name", holders.get(seat).getPlayerName());
+                if (room != null) {
+                    Room.Player inRoom = room.getPlayers().get(seat);
+                    player.put("sent", inRoom.getSent());
+                    player.put("received", inRoom.getReceived());
+                    player.put("incoming", inRoom.getIncoming());
+                    player.put("out", inRoom.isOut());
+                }
+                players.add(player);
+            }
+            data.put("players", players);
+            if (room != null && room.getWinner() != null) {
+                data.put("winner", room.getWinner().getSeat());
+            }
+            return data;
+        }
+        
+        private synchronized boolean seat(GameHolder holder) {
+            if (closed || room != null || holders.size() == seats) {
+                return false;
+            }
+            holders.add(holder);
+            if (holders.size() == seats) {
+                start();
+            }
+            return true;
+        }
+        
+        // Every seat is taken: pin the games and start the match from fresh
+        // boards, dealt the same pieces like the games of Room.create
+        private void start() {
+            long seed = CODES.nextLong();
+            List<Game> games = new ArrayList<>(seats);
+            for (GameHolder holder : holders) {
+                holder.pin();
+                Game game = holder.get();
+                game.restart(PieceGenerator.sevenBag(seed));
+                // Wait for the restart, so no lock from the old board counts in the match
+                game.query(NOTHING);
+                games.add(game);
+            }
+            room = new Room(games, seed);
+        }
+        
+        /**
+         * Close the table if its match is over or it waited too long
+         *
+         * @return true when the table was closed by this call
+         */
+        private synchronized boolean closeIfDone(long now) {
+            if (closed || (room == null ? now - created < WAITING_NANOS : !room.isFinished())) {
+                return false;
+            }
+            closed = true;
+            for (GameHolder holder : holders) {
+                synchronized (holder) {
+                    if (holder.table == this) {
+                        holder.table = null;
+                    }
+                }
+                if (room != null) {
+                    Game game = holder.get();
+                    game.setLockListener(null);
+                    // The winner's game was stopped with the match; let it play on
+                    if (!game.isTicking() && !game.isGameOver()) {
+                        game.start();
+                    }
+                    holder.unpin();
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Open a table with the player in the first seat
+     *
+     * @return the table, or null when the seat count is out of range or the
+     *         player is already at a table
+     */
+    Table open(GameHolder holder, int seats) {
+        if (seats < Room.MIN_PLAYERS || seats > MAX_SEATS) {
+            return null;
+        }
+        Table table;
+        do {
+            table = new Table(newCode(), seats);
+        } while (tables.putIfAbsent(table.code, table) != null);
+        if (!claim(holder, table)) {
+            tables.remove(table.code, table);
+            return null;
+        }
+        table.seat(holder);
+        return table;
+    }
+    
+    /**
+     * Take a seat at the table with {@code code}
+     *
+     * @return the table, or null when there is no such table, it is full or
+     *         the player is already at another table
+     */
+    Table join(GameHolder holder, String code) {
+        Table table = code == null ? null : tables.get(code.toUpperCase());
+        if (table == null || !claim(holder, table)) {
+            return null;
+        }
+        if (!table.seat(holder)) {
+            synchronized (holder) {
+                if (holder.table == table) {
+                    holder.table = null;
+                }
+            }
+            return null;
+        }
+        return table;
+    }
+    
+    /**
+     * The table the player sits at, or null
+     */
+    Table tableOf(GameHolder holder) {
+        synchronized (holder) {
+            return holder.table;
+        }
+    }
+    
+    /**
+     * Close the tables whose match is over and those that waited too long
+     *
+     * @return the number of tables closed
+     */
+    int sweep() {
+        long now = System.nanoTime();
+        int closed = 0;
+        for (Table table : tables.values()) {
+            if (table.closeIfDone(now)) {
+                tables.remove(table.code, table);
+                closed++;
+            }
+        }
+        return closed;
+    }
+    
+    int getTableCount() {
+        return tables.size();
+    }
+    
+    Map<String, Table> getTables() {
+        return Collections.unmodifiableMap(tables);
+    }
+    
+    // Reserve the player for a table; false when they already sit at one
+    private static boolean claim(GameHolder holder, Table table) {
+        synchronized (holder) {
+            if (holder.table != null) {
+                return false;
+            }
+            holder.table = table;
+            return true;
+        }
+    }
+    
+    private static String newCode() {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = CODE_CHARACTERS.charAt(CODES.nextInt(CODE_CHARACTERS.length()));
+        }
+        return new String(code);
+    }
+}
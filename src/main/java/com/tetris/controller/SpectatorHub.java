@@ -0,0 +1,245 @@
+package com.tetris.controller;
+
+import com.tetris.model.Board;
+import com.tetris.model.Game;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+/**
+ * Streams one game to everyone watching it.
+ *
+ * Each change is encoded once, by the game's writer, into a binary frame
+ * that is never modified afterwards, and every spectator is handed a
+ * read-only view of those same bytes, so a change costs the same whether
+ * one spectator or thousands are watching. Each spectator has at most one
+ * frame in flight; a newer frame replaces the one waiting behind it, so a
+ * slow spectator skips to the latest board instead of queuing frames.
+ *
+ * While anyone is watching, the game is pinned so it is never passivated.
+ */
+final class SpectatorHub implements Game.GameListener {
+    
+    private final GameHolder holder;
+    private final Set<Spectator> spectators = ConcurrentHashMap.newKeySet();
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    // Set while anyone watches; guarded by this
+    private volatile Game game;
+    // Written only by the game's writer
+    private volatile Frame latest;
+    
+    /**
+     * An encoded frame, shared by every spectator
+     */
+    static final class Frame {
+        final long version;
+        final boolean gameOver;
+        final boolean paused;
+        private final ByteBuffer bytes;
+        
+        Frame(long version, boolean gameOver, boolean paused, byte[] bytes) {
+            this.version = version;
+            this.gameOver = gameOver;
+            this.paused = paused;
+            this.bytes = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        
+        /**
+         * A read-only view with its own position, sharing the frame's bytes
+         */
+        ByteBuffer view() {
+            return bytes.duplicate();
+        }
+    }
+    
+    /**
+     * Writes frames to one spectator, such as {@link javax.websocket.RemoteEndpoint.Async#sendBinary}
+     */
+    interface Sink {
+        void send(ByteBuffer frame, SendHandler handler);
+    }
+    
+    /**
+     * One spectator's connection, sending one frame at a time
+     */
+    final class Spectator implements SendHandler {
+        private final Sink sink;
+        private final AtomicReference<Frame> waiting = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        private volatile Frame lastSent;
+        private volatile boolean closed;
+        
+        private Spectator(Sink sink) {
+            this.sink = sink;
+        }
+        
+        void offer(Frame frame) {
+            if (closed || frame == lastSent) {
+                return;
+            }
+            Frame replaced = waiting.getAndSet(frame);
+            if (replaced != null && replaced != frame) {
+                skipped.increment();
+            }
+            sendIfIdle();
+        }
+        
+        private void sendIfIdle() {
+            while (!closed && waiting.get() != null && sending.compareAndSet(false, true)) {
+                Frame frame = waiting.getAndSet(null);
+                if (frame == null || frame == lastSent) {
+                    sending.set(false);
+                    continue;
+                }
+                
+                lastSent = frame;
+                try {
+                    sink.send(frame.view(), this);
+                    return;
+                } catch (RuntimeException e) {
+                    closed = true;
+                    sending.set(false);
+                }
+            }
+        }
+        
+        @Override
+        public void onResult(SendResult result) {
+            if (result.isOK()) {
+                sent.increment();
+            } else {
+                closed = true;
+            }
+            sending.set(false);
+            sendIfIdle();
+        }
+        
+        boolean isClosed() {
+            return closed;
+        }
+    }
+    
+    SpectatorHub(GameHolder holder) {
+        this.holder = holder;
+    }
+    
+    /**
+     * Start watching. The spectator is sent the current board straight away.
+     */
+    Spectator join(Sink sink) {
+        Spectator spectator = new Spectator(sink);
+        final Game watched;
+        synchronized (this) {
+            if (game == null) {
+                // Keep the game live, and the same object, while it is watched
+                holder.pin();
+                game = holder.get();
+                game.addGameListener(this);
+            }
+            watched = game;
+            spectators.add(spectator);
+        }
+        
+        Frame current = watched.query(new Supplier<Frame>() {
+            @Override
+            public Frame get() {
+                publish(watched);
+                return latest;
+            }
+        });
+        spectator.offer(current);
+        return spectator;
+    }
+    
+    /**
+     * Stop watching; the last spectator to leave unpins the game
+     */
+    synchronized void leave(Spectator spectator) {
+        spectator.closed = true;
+        if (spectators.remove(spectator) && spectators.isEmpty() && game != null) {
+            game.removeGameListener(this);
+            game = null;
+            holder.unpin();
+        }
+    }
+    
+    int getSpectatorCount() {
+        return spectators.size();
+    }
+    
+    /**
+     * Frames encoded, once each however many spectators there are
+     */
+    long getFramesEncoded() {
+        return encoded.sum();
+    }
+    
+    long getFramesSent() {
+        return sent.sum();
+    }
+    
+    /**
+     * Frames that a slow spectator never received because a newer one replaced them
+     */
+    long getFramesSkipped() {
+        return skipped.sum();
+    }
+    
+    // Called by the game's writer
+    private void publish(Game game) {
+        Board board = game.getBoard();
+        long version = board.getVersion();
+        boolean gameOver = game.isGameOver();
+        boolean paused = game.isPaused();
+        Frame last = latest;
+        if (last != null && last.version == version && last.gameOver == gameOver && last.paused == paused) {
+            // Score and level changes come with a board change already encoded
+            return;
+        }
+        
+        long started = System.nanoTime();
+        byte[] bytes = GameStateEncoder.readBinaryState(game);
+        RequestMetrics.recordBinary(System.nanoTime() - started, bytes.length);
+        Frame frame = new Frame(version, gameOver, paused, bytes);
+        latest = frame;
+        encoded.increment();
+        for (Spectator spectator : spectators) {
+            spectator.offer(frame);
+        }
+    }
+    
+    private void changed() {
+        Game watched = game;
+        if (watched != null) {
+            publish(watched);
+        }
+    }
+    
+    @Override
+    public void onBoardUpdated() {
+        changed();
+    }
+    
+    @Override
+    public void onGameOver() {
+        changed();
+    }
+    
+    @Override
+    public void onScoreUpdated(int score) {
+        changed();
+    }
+    
+    @Override
+    public void onLevelUpdated(int level) {
+        changed();
+    }
+}
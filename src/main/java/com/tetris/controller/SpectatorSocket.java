@@ -0,0 +1,70 @@
+package com.tetris.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import javax.websocket.CloseReason;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnOpen;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+/**
+ * Read-only stream of someone else's game, chosen by the id the player
+ * shares (GET {@code ?action=watchId}). Frames are the binary encoding of
+ * {@link GameStateEncoder}, sent whenever the game changes; anything the
+ * spectator sends is ignored.
+ */
+@ServerEndpoint("/tetris/watch")
+public class SpectatorSocket {
+    
+    static final String GAME_PARAM = "game";
+    
+    private SpectatorHub hub;
+    private SpectatorHub.Spectator spectator;
+    
+    @OnOpen
+    public void onOpen(Session session, EndpointConfig config) throws IOException {
+        List<String> ids = session.getRequestParameterMap().get(GAME_PARAM);
+        String id = ids == null || ids.isEmpty() ? null : ids.get(0);
+        GamePassivator passivator = GameLifecycleListener.passivator();
+        GameHolder holder = passivator == null ? null : passivator.find(id);
+        if (holder == null) {
+            ClusterRouter router = passivator == null ? null : passivator.getRouter();
+            boolean elsewhere = id != null && router != null && !router.isLocal(id);
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                    elsewhere ? "Game is on another node" : "No such game"));
+            return;
+        }
+        
+        final RemoteEndpoint.Async remote = session.getAsyncRemote();
+        hub = holder.getSpectators();
+        spectator = hub.join(new SpectatorHub.Sink() {
+            @Override
+            public void send(ByteBuffer frame, SendHandler handler) {
+                remote.sendBinary(frame, handler);
+            }
+        });
+    }
+    
+    @OnClose
+    public void onClose() {
+        detach();
+    }
+    
+    @OnError
+    public void onError(Throwable error) {
+        detach();
+    }
+    
+    private void detach() {
+        if (spectator != null) {
+            hub.leave(spectator);
+            spectator = null;
+        }
+    }
+}
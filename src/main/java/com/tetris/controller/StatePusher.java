@@ -0,0 +1,87 @@
+package com.tetris.controller;
+
+import com.tetris.model.Game;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+/**
+ * Sends the game state to one push connection whenever the game changes.
+ *
+ * At most one frame is in flight at a time. Changes that arrive while a frame
+ * is being written only set a flag, and the next frame is a delta against the
+ * last version the client received, so a slow connection receives fewer,
+ * larger updates instead of a growing queue.
+ */
+class StatePusher implements Game.GameListener, SendHandler {
+    
+    private final Game game;
+    private final RemoteEndpoint.Async remote;
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile long lastVersion = GameStateEncoder.NO_VERSION;
+    private volatile boolean closed;
+    
+    StatePusher(Game game, RemoteEndpoint.Async remote) {
+        this.game = game;
+        this.remote = remote;
+    }
+    
+    /**
+     * Schedule a frame with the current state
+     */
+    void push() {
+        dirty.set(true);
+        sendIfIdle();
+    }
+    
+    private void sendIfIdle() {
+        while (!closed && dirty.get() && sending.compareAndSet(false, true)) {
+            if (!dirty.getAndSet(false)) {
+                sending.set(false);
+                continue;
+            }
+            
+            Map<String, Object> state = GameStateEncoder.getGameState(game, lastVersion);
+            lastVersion = Long.parseLong((String) state.get("version"));
+            try {
+                remote.sendText(GameStateEncoder.toJson(state), this);
+                return;
+            } catch (RuntimeException e) {
+                closed = true;
+                sending.set(false);
+            }
+        }
+    }
+    
+    @Override
+    public void onResult(SendResult result) {
+        if (!result.isOK()) {
+            closed = true;
+        }
+        sending.set(false);
+        sendIfIdle();
+    }
+    
+    @Override
+    public void onBoardUpdated() {
+        push();
+    }
+    
+    @Override
+    public void onGameOver() {
+        push();
+    }
+    
+    @Override
+    public void onScoreUpdated(int score) {
+        push();
+    }
+    
+    @Override
+    public void onLevelUpdated(int level) {
+        push();
+    }
+}
\ No newline at end of file
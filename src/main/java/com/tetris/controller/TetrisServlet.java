@@ -1,70 +1,94 @@
 package com.tetris.controller;
 
+import com.tetris.journal.InputJournal;
 import com.tetris.model.Game;
-import com.tetris.model.Shape;
-import com.tetris.model.Block;
+import com.tetris.model.Room;
 import java.io.IOException;
+import java.nio.file.Paths;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.List;
 
-@WebServlet("/tetris")
+@WebServlet(value = "/tetris", asyncSupported = true)
 public class TetrisServlet extends HttpServlet {
     
     private static final long serialVersionUID = 1L;
-    private static final String GAME_ATTRIBUTE = "tetrisGame";
+    // Context parameter naming the directory for the input journal; unset disables it
+    static final String JOURNAL_DIRECTORY_PARAM = "tetris.journal.directory";
+    // Context parameters for parking idle games; see GamePassivator
+    static final String IDLE_SECONDS_PARAM = "tetris.passivation.idleSeconds";
+    static final String SNAPSHOT_DIRECTORY_PARAM = "tetris.passivation.directory";
+    // Context parameter for discarding games nobody uses; see GamePassivator
+    static final String EXPIRE_MINUTES_PARAM = "tetris.games.expireMinutes";
+    // Context parameters for sharing games across nodes; see ClusterRouter
+    static final String CLUSTER_SELF_PARAM = "tetris.cluster.self";
+    static final String CLUSTER_NODES_PARAM = "tetris.cluster.nodes";
+    static final String CLUSTER_SECRET_PARAM = "tetris.cluster.secret";
+    // Context parameter naming the directory for the leaderboard log; unset keeps scores in memory
+    static final String LEADERBOARD_DIRECTORY_PARAM = "tetris.leaderboard.directory";
     private final Gson gson = new Gson();
+    private InputJournal journal;
+    private final GameLifecycleListener.GameSetup gameSetup = new GameLifecycleListener.GameSetup() {
+        @Override
+        public void prepare(Game game) {
+            InputJournal current = journal;
+            if (current != null) {
+                current.record(game);
+            }
+        }
+    };
     
-    // Method to get game state including next shape
-    private Map<String, Object> getGameState(Game game) {
-        Map<String, Object> gameState = new HashMap<>();
-        
-        // Add basic game state
-        gameState.put("grid", game.getBoard().getGrid());
-        gameState.put("score", game.getBoard().getScore());
-        gameState.put("level", game.getLevel());
-        gameState.put("gameOver", game.isGameOver());
-        
-        // Add the next shape if available
-        Shape nextShape = game.getNextShape();
-        if (nextShape != null) {
-            List<Map<String, Object>> nextShapeBlocks = new ArrayList<>();
-            for (Block block : nextShape.getBlocks()) {
-                Map<String, Object> blockData = new HashMap<>();
-                blockData.put("x", block.getX());
-                blockData.put("y", block.getY());
-                blockData.put("color", block.getColor());
-                nextShapeBlocks.add(blockData);
+    @Override
+    public void init() throws ServletException {
+        String directory = getServletContext().getInitParameter(JOURNAL_DIRECTORY_PARAM);
+        if (directory != null && !directory.isEmpty()) {
+            try {
+                journal = new InputJournal(Paths.get(directory));
+            } catch (IOException e) {
+                throw new ServletException("Cannot open the input journal in " + directory, e);
             }
-            gameState.put("nextShape", nextShapeBlocks);
         }
-        
-        return gameState;
     }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
         
-        HttpSession session = request.getSession(true);
-        Game game = (Game) session.getAttribute(GAME_ATTRIBUTE);
+        // A parked long poll is timed up to the moment it is parked
+        String action = request.getParameter("action");
+        long started = System.nanoTime();
+        try {
+            get(request, response, action);
+        } finally {
+            RequestMetrics.recordGet(action, System.nanoTime() - started);
+        }
+    }
+    
+    private void get(HttpServletRequest request, HttpServletResponse response, String action)
+            throws ServletException, IOException {
         
-        if (game == null) {
+        String token = GameLifecycleListener.tokenOf(request);
+        GameHolder holder = GameLifecycleListener.passivator(getServletContext()).findByToken(token);
+        if (holder == null) {
+            if (forwardToOwner(token, request, response)) {
+                return;
+            }
             // Create a new game if none exists
-            game = new Game(10, 20);
-            game.start();
-            session.setAttribute(GAME_ATTRIBUTE, game);
+            holder = GameLifecycleListener.createHolder(getServletContext(), gameSetup);
+            Cookie cookie = new Cookie(GameLifecycleListener.TOKEN_COOKIE, holder.getToken());
+            cookie.setHttpOnly(true);
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            response.addCookie(cookie);
         }
+        Game game = holder.get();
         
-        String action = request.getParameter("action");
         if (action == null) {
             // Forward to the game page
             request.getRequestDispatcher("/WEB-INF/tetris.jsp").forward(request, response);
@@ -77,18 +101,38 @@ public class TetrisServlet extends HttpServlet {
         
         switch (action) {
             case "getState":
-                responseData = getGameState(game);
-                break;
+                long since = GameStateEncoder.parseVersion(request.getParameter("since"));
+                boolean binary = GameStateEncoder.acceptsBinary(request);
+                
+                // Long poll: wait for the next change without holding this thread
+                if (request.getParameter("wait") != null && request.isAsyncSupported()
+                        && LongPollHub.forGame(holder, game).park(request, since, binary)) {
+                    return;
+                }
+                GameStateEncoder.writeState(game, since, binary, response);
+                return;
                 
             case "newGame":
-                game.restart();
                 responseData = new HashMap<>();
+                if (holder.isInMatch()) {
+                    // A match goes on until one player is left
+                    responseData.put("error", "Match in progress");
+                    response.setStatus(HttpServletResponse.SC_CONFLICT);
+                    break;
+                }
+                game.restart();
                 responseData.put("success", true);
                 break;
                 
             case "pause":
-                game.pause();
                 responseData = new HashMap<>();
+                if (holder.isInMatch()) {
+                    // Garbage keeps coming, so a match cannot be paused
+                    responseData.put("error", "Match in progress");
+                    response.setStatus(HttpServletResponse.SC_CONFLICT);
+                    break;
+                }
+                game.pause();
                 responseData.put("success", true);
                 break;
                 
@@ -98,6 +142,63 @@ public class TetrisServlet extends HttpServlet {
                 responseData.put("success", true);
                 break;
                 
+            case "watchId":
+                // Shared with others so they can watch on SpectatorSocket
+                responseData = new HashMap<>();
+                responseData.put("watchId", holder.getId());
+                break;
+                
+            case "setName":
+                // The name this player's final scores go on the leaderboard under
+                responseData = new HashMap<>();
+                if (holder.setPlayerName(request.getParameter("name"))) {
+                    responseData.put("success", true);
+                } else {
+                    responseData.put("error", "Invalid name");
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                }
+                break;
+                
+            case "openRoom":
+                // A versus table for this player and seats - 1 others, who join with its code
+                responseData = new HashMap<>();
+                RoomLobby.Table opened = null;
+                try {
+                    String seats = request.getParameter("seats");
+                    opened = rooms().open(holder, seats == null ? Room.MIN_PLAYERS : Integer.parseInt(seats));
+                } catch (NumberFormatException e) {
+                    // Answered below like any other refused table
+                }
+                if (opened != null) {
+                    responseData.putAll(opened.describe());
+                } else {
+                    responseData.put("error", "Cannot open a room");
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                }
+                break;
+                
+            case "joinRoom":
+                RoomLobby.Table joined = rooms().join(holder, request.getParameter("room"));
+                if (joined != null) {
+                    responseData = joined.describe();
+                } else {
+                    responseData = new HashMap<>();
+                    responseData.put("error", "Cannot join the room");
+                    response.setStatus(HttpServletResponse.SC_CONFLICT);
+                }
+                break;
+                
+            case "room":
+                // The player's table and, once it is full, the match
+                RoomLobby.Table table = rooms().tableOf(holder);
+                if (table != null) {
+                    responseData = table.describe();
+                } else {
+                    // Not at a table: an empty object
+                    responseData = new HashMap<>();
+                }
+                break;
+                
             default:
                 responseData = new HashMap<>();
                 responseData.put("error", "Unknown action");
@@ -107,23 +208,41 @@ public class TetrisServlet extends HttpServlet {
         response.getWriter().write(gson.toJson(responseData));
     }
     
+    private RoomLobby rooms() {
+        return GameLifecycleListener.passivator(getServletContext()).getRooms();
+    }
+    
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
         
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Session expired");
+        String action = request.getParameter("action");
+        long started = System.nanoTime();
+        try {
+            post(request, response, action);
+        } finally {
+            RequestMetrics.recordPost(action, System.nanoTime() - started);
+        }
+    }
+    
+    private void post(HttpServletRequest request, HttpServletResponse response, String action)
+            throws ServletException, IOException {
+        
+        String token = GameLifecycleListener.tokenOf(request);
+        GameHolder holder = GameLifecycleListener.passivator(getServletContext()).findByToken(token);
+        if (holder == null) {
+            if (!forwardToOwner(token, request, response)) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "No game in progress");
+            }
             return;
         }
         
-        Game game = (Game) session.getAttribute(GAME_ATTRIBUTE);
-        if (game == null) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No game in progress");
+        if ("batch".equals(action)) {
+            postBatch(holder, request, response);
             return;
         }
         
-        String action = request.getParameter("action");
+        Game game = holder.get();
         response.setContentType("application/json");
         Map<String, Object> responseData = new HashMap<>();
         
@@ -156,9 +275,63 @@ public class TetrisServlet extends HttpServlet {
         response.getWriter().write(gson.toJson(responseData));
     }
     
+    /**
+     * Apply a pipelined batch of inputs and reply with the resulting state,
+     * as a delta against {@code since}, plus {@code ack}: the highest input
+     * sequence number applied so far.
+     */
+    private void postBatch(GameHolder holder, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        InputBatch batch;
+        try {
+            batch = gson.fromJson(request.getReader(), InputBatch.class);
+        } catch (JsonParseException e) {
+            batch = null;
+        }
+        if (batch == null || !batch.isValid()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed input batch");
+            return;
+        }
+        
+        long ack = holder.applyBatch(batch);
+        Map<String, Object> state = GameStateEncoder.getGameState(holder.get(),
+                GameStateEncoder.parseVersion(request.getParameter("since")));
+        state.put("ack", ack);
+        response.setContentType("application/json");
+        response.getWriter().write(GameStateEncoder.toJson(state));
+    }
+    
+    /**
+     * Pass the request on to the node that owns the game with {@code token},
+     * if that is another node
+     *
+     * @return true when the request was forwarded and answered
+     */
+    private boolean forwardToOwner(String token, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ClusterRouter router = GameLifecycleListener.passivator(getServletContext()).getRouter();
+        if (router == null || !router.shouldForward(token, request)) {
+            return false;
+        }
+        String owner = router.ownerOf(GameHolder.idOf(token));
+        // A long poll holds the owner until the game changes
+        if (request.getParameter("wait") == null || !router.forwardLater(owner, request, response)) {
+            ClusterRouter.forward(owner, request, response);
+        }
+        return true;
+    }
+    
     @Override
     public void destroy() {
         // Clean up any resources
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log("Failed to close the input journal", e);
+            }
+            journal = null;
+        }
         super.destroy();
     }
 }
\ No newline at end of file
@@ -0,0 +1,374 @@
+package com.tetris.journal;
+
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of game inputs in memory-mapped segment files.
+ *
+ * Each recorded game starts with a record holding its piece generator's
+ * seed and board size, followed by one small record per input: the game's
+ * id, the input and the milliseconds since the game's previous input, both
+ * varint-encoded. A typical input takes four or five bytes.
+ *
+ * Writers reserve space in the current segment with a single atomic add and
+ * copy their record into the mapping, so game threads never make a system
+ * call. A background thread forces written pages to disk at a fixed
+ * interval, retires full segments and maps the next segment ahead of time.
+ *
+ * Record layout: {@code [length u8][game id varint][code u8][delta varint][payload]}.
+ * A length of 0 marks the end of the written part of a segment. The first
+ * record of every segment has game id 0 and holds the journal's run id,
+ * because game ids are only unique within one run.
+ *
+ * @see JournalReader
+ */
+public class InputJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 16 << 20;
+    public static final long DEFAULT_FLUSH_MILLIS = 200;
+    
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    
+    // Record codes; inputs use the Game.InputRecorder values 1-6
+    static final int SEGMENT = 0;
+    static final int START = 0x40;
+    
+    // Length byte plus the largest record: a start record with a 5-byte id
+    // and delta, seed, distribution, two 5-byte sizes and a timestamp
+    private static final int MAX_RECORD_BYTES = 1 + 5 + 1 + 5 + 8 + 1 + 5 + 5 + 8;
+    
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushNanos;
+    private final long runId;
+    private final AtomicInteger gameIds = new AtomicInteger();
+    private final Queue<Segment> retired = new ConcurrentLinkedQueue<>();
+    private final Thread flusher;
+    private int nextSegmentIndex;
+    private volatile Segment current;
+    // Mapped ahead of time by the flusher; guarded by this
+    private Segment spare;
+    private volatile boolean running = true;
+    
+    private static final class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        final AtomicInteger position = new AtomicInteger();
+        // Threads that may still be copying a record into this segment
+        final AtomicInteger writers = new AtomicInteger();
+        // Only touched by the flusher
+        int forced;
+        
+        Segment(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+    }
+    
+    /**
+     * Records inputs of one game into the journal
+     */
+    public final class Recorder implements Game.InputRecorder {
+        private final int gameId;
+        private volatile long lastMillis;
+        
+        private Recorder(int gameId, long startMillis) {
+            this.gameId = gameId;
+            this.lastMillis = startMillis;
+        }
+        
+        @Override
+        public void record(int input) {
+            long now = monotonicMillis();
+            long delta = Math.max(0, now - lastMillis);
+            lastMillis = now;
+            append(gameId, input, delta, null, 0, 0);
+        }
+        
+        public int getGameId() {
+            return gameId;
+        }
+    }
+    
+    public InputJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_FLUSH_MILLIS);
+    }
+    
+    /**
+     * Open a journal that writes new segments to {@code directory}, after
+     * any segments already there
+     */
+    public InputJournal(Path directory, int segmentBytes, long flushMillis) throws IOException {
+        if (segmentBytes < MAX_RECORD_BYTES * 2 || segmentBytes > 1 << 30) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentBytes);
+        }
+        if (flushMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushMillis);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.runId = System.currentTimeMillis();
+        this.nextSegmentIndex = lastSegmentIndex(directory) + 1;
+        this.current = mapNextSegment();
+        
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        }, "tetris-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    /**
+     * Start recording {@code game}: write its start record and attach a
+     * recorder for its inputs. Call before the first input of the game.
+     */
+    public Recorder record(Game game) {
+        PieceGenerator pieces = game.getPieceGenerator();
+        Recorder recorder = new Recorder(gameIds.incrementAndGet(), monotonicMillis());
+        
+        byte[] payload = new byte[8 + 1 + 5 + 5 + 8];
+        int length = putLong(payload, 0, pieces.getSeed());
+        payload[length++] = (byte) pieces.getDistribution().ordinal();
+        length = putVarint(payload, length, game.getBoard().getWidth());
+        length = putVarint(payload, length, game.getBoard().getHeight());
+        length = putLong(payload, length, System.currentTimeMillis());
+        append(recorder.gameId, START, 0, payload, 0, length);
+        
+        game.setInputRecorder(recorder);
+        return recorder;
+    }
+    
+    /**
+     * Force everything written so far to disk
+     */
+    public synchronized void flush() throws IOException {
+        for (Segment segment : retired) {
+            segment.buffer.force();
+        }
+        current.buffer.force();
+    }
+    
+    public long getRunId() {
+        return runId;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        synchronized (this) {
+            flush();
+            Segment segment;
+            while ((segment = retired.poll()) != null) {
+                segment.channel.close();
+            }
+            current.channel.close();
+            if (spare != null) {
+                spare.channel.close();
+                Files.deleteIfExists(segmentPath(nextSegmentIndex - 1));
+                spare = null;
+            }
+        }
+    }
+    
+    private void append(int gameId, int code, long delta, byte[] payload, int offset, int payloadLength) {
+        int bodyLength = varintSize(gameId) + 1 + varintSize(delta) + payloadLength;
+        int total = 1 + bodyLength;
+        
+        while (running) {
+            Segment segment = current;
+            segment.writers.incrementAndGet();
+            if (segment != current) {
+                // Rolled before this thread counted itself; the flusher may
+                // already have closed it, so write to the new segment
+                segment.writers.decrementAndGet();
+                continue;
+            }
+            try {
+                int position = segment.position.getAndAdd(total);
+                if (position + total <= segment.capacity) {
+                    MappedByteBuffer buffer = segment.buffer;
+                    int index = position + 1;
+                    index = putVarint(buffer, index, gameId);
+                    buffer.put(index++, (byte) code);
+                    index = putVarint(buffer, index, delta);
+                    for (int i = 0; i < payloadLength; i++) {
+                        buffer.put(index++, payload[offset + i]);
+                    }
+                    // The length goes in last, so a reader never sees half a record
+                    buffer.put(position, (byte) bodyLength);
+                    return;
+                }
+            } finally {
+                segment.writers.decrementAndGet();
+            }
+            roll(segment);
+        }
+    }
+    
+    private synchronized void roll(Segment full) {
+        if (current != full || !running) {
+            return;
+        }
+        retired.add(full);
+        try {
+            Segment next = spare != null ? spare : mapNextSegment();
+            spare = null;
+            current = next;
+        } catch (IOException e) {
+            // Keep the game running without a journal rather than failing inputs
+            running = false;
+        }
+        LockSupport.unpark(flusher);
+    }
+    
+    // Must be called with the lock held, or from the constructor
+    private Segment mapNextSegment() throws IOException {
+        Path path = segmentPath(nextSegmentIndex++);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        
+        byte[] payload = new byte[8];
+        putLong(payload, 0, runId);
+        int bodyLength = 1 + 1 + 1 + payload.length;
+        segment.buffer.put(1, (byte) 0);
+        segment.buffer.put(2, (byte) SEGMENT);
+        segment.buffer.put(3, (byte) 0);
+        for (int i = 0; i < payload.length; i++) {
+            segment.buffer.put(4 + i, payload[i]);
+        }
+        segment.buffer.put(0, (byte) bodyLength);
+        segment.position.set(1 + bodyLength);
+        return segment;
+    }
+    
+    private void runFlusher() {
+        while (running) {
+            LockSupport.parkNanos(this, flushNanos);
+            try {
+                flushRetired();
+                
+                Segment segment = current;
+                int written = Math.min(segment.position.get(), segment.capacity);
+                if (written > segment.forced) {
+                    segment.buffer.force();
+                    segment.forced = written;
+                }
+                
+                synchronized (this) {
+                    if (spare == null && running) {
+                        spare = mapNextSegment();
+                    }
+                }
+            } catch (IOException e) {
+                // Try again on the next round
+            }
+        }
+    }
+    
+    private void flushRetired() throws IOException {
+        for (Segment segment : retired) {
+            if (segment.writers.get() == 0) {
+                segment.buffer.force();
+                segment.channel.close();
+                retired.remove(segment);
+            }
+        }
+    }
+    
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+    
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+    
+    private static int lastSegmentIndex(Path directory) throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (isSegment(path)) {
+                    String name = path.getFileName().toString();
+                    try {
+                        last = Math.max(last, Integer.parseInt(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        return last;
+    }
+    
+    private static long monotonicMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+    
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+    
+    private static int putVarint(MappedByteBuffer buffer, int index, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(index++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(index++, (byte) value);
+        return index;
+    }
+    
+    private static int putVarint(byte[] bytes, int index, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[index++] = (byte) value;
+        return index;
+    }
+    
+    private static int putLong(byte[] bytes, int index, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[index++] = (byte) (value >>> shift);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,213 @@
+package com.tetris.journal;
+
+import com.tetris.model.Board;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the games recorded by {@link InputJournal} back from its segment files
+ */
+public final class JournalReader {
+
+    private JournalReader() {
+    }
+    
+    /**
+     * The recorded inputs of one game
+     */
+    public static final class GameLog {
+        private final long runId;
+        private final int gameId;
+        private final long seed;
+        private final PieceGenerator.Distribution distribution;
+        private final int width;
+        private final int height;
+        private final long startedAt;
+        private final ByteArrayOutputStream inputs = new ByteArrayOutputStream();
+        private long elapsedMillis;
+        
+        GameLog(long runId, int gameId, long seed, PieceGenerator.Distribution distribution,
+                int width, int height, long startedAt) {
+            this.runId = runId;
+            this.gameId = gameId;
+            this.seed = seed;
+            this.distribution = distribution;
+            this.width = width;
+            this.height = height;
+            this.startedAt = startedAt;
+        }
+        
+        public long getRunId() {
+            return runId;
+        }
+        
+        public int getGameId() {
+            return gameId;
+        }
+        
+        public long getSeed() {
+            return seed;
+        }
+        
+        public PieceGenerator.Distribution getDistribution() {
+            return distribution;
+        }
+        
+        public int getWidth() {
+            return width;
+        }
+        
+        public int getHeight() {
+            return height;
+        }
+        
+        /**
+         * Wall-clock time the game started, in epoch milliseconds
+         */
+        public long getStartedAt() {
+            return startedAt;
+        }
+        
+        /**
+         * Milliseconds between the start of the game and its last input
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+        
+        /**
+         * The inputs in order, as {@link Game.InputRecorder} codes
+         */
+        public byte[] getInputs() {
+            return inputs.toByteArray();
+        }
+        
+        /**
+         * Apply the recorded inputs to a fresh board dealt from the recorded
+         * seed, the way {@link Game} applies them, and return the final board
+         */
+        public Board replay() {
+            return JournalReader.replay(width, height, PieceGenerator.create(distribution, seed), getInputs());
+        }
+    }
+    
+    /**
+     * Apply {@link Game.InputRecorder} codes to a fresh board dealt from
+     * {@code pieces}, the way {@link Game} applies them, and return the final
+     * board
+     */
+    public static Board replay(int width, int height, PieceGenerator pieces, byte[] inputs) {
+        Board board = new Board(width, height, pieces);
+        board.createNewShape();
+        
+        for (byte input : inputs) {
+            if (input == Game.InputRecorder.RESTART) {
+                board = new Board(width, height, pieces);
+                board.createNewShape();
+                continue;
+            }
+            if (board.isGameOver()) {
+                continue;
+            }
+            switch (input) {
+                case Game.InputRecorder.MOVE_LEFT:
+                    board.moveShapeLeft();
+                    break;
+                case Game.InputRecorder.MOVE_RIGHT:
+                    board.moveShapeRight();
+                    break;
+                case Game.InputRecorder.ROTATE:
+                    board.rotateShape();
+                    break;
+                case Game.InputRecorder.DROP:
+                    board.hardDrop();
+                    break;
+                case Game.InputRecorder.TICK:
+                    board.moveShapeDown();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown input " + input);
+            }
+        }
+        return board;
+    }
+    
+    /**
+     * Read every game in the journal directory, in the order the games started
+     */
+    public static List<GameLog> read(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (InputJournal.isSegment(path)) {
+                    segments.add(path);
+                }
+            }
+        }
+        // Segment names are zero-padded, so name order is write order
+        Collections.sort(segments);
+        
+        Map<String, GameLog> games = new LinkedHashMap<>();
+        for (Path path : segments) {
+            readSegment(ByteBuffer.wrap(Files.readAllBytes(path)), games);
+        }
+        return new ArrayList<>(games.values());
+    }
+    
+    private static void readSegment(ByteBuffer buffer, Map<String, GameLog> games) {
+        long runId = 0;
+        
+        while (buffer.hasRemaining()) {
+            int length = buffer.get() & 0xFF;
+            if (length == 0 || length > buffer.remaining()) {
+                // End of the written part of the segment
+                return;
+            }
+            int end = buffer.position() + length;
+            int gameId = (int) getVarint(buffer);
+            int code = buffer.get() & 0xFF;
+            long delta = getVarint(buffer);
+            
+            if (code == InputJournal.SEGMENT) {
+                runId = buffer.getLong();
+            } else if (code == InputJournal.START) {
+                long seed = buffer.getLong();
+                PieceGenerator.Distribution distribution = PieceGenerator.Distribution.values()[buffer.get()];
+                int width = (int) getVarint(buffer);
+                int height = (int) getVarint(buffer);
+                long startedAt = buffer.getLong();
+                games.put(runId + ":" + gameId,
+                        new GameLog(runId, gameId, seed, distribution, width, height, startedAt));
+            } else {
+                GameLog game = games.get(runId + ":" + gameId);
+                if (game != null) {
+                    game.inputs.write(code);
+                    game.elapsedMillis += delta;
+                }
+            }
+            buffer.position(end);
+        }
+    }
+    
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
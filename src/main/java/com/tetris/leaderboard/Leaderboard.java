@@ -0,0 +1,342 @@
+package com.tetris.leaderboard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every player's best final score, ranked.
+ *
+ * Players are spread over {@value #STRIPES} stripes by name, each holding
+ * its players' bests in a {@link RankedList} under its own read-write lock,
+ * so submissions for different players rarely wait for each other. A rank
+ * adds up how many entries are ahead in every stripe and the top K merges
+ * the first K of every stripe, so both cost O(stripes · log n) and
+ * O(stripes · K) with read locks only. Equal scores rank by who reached
+ * them first.
+ *
+ * A leaderboard from {@link #open} is durable: every new best is appended
+ * to a {@link ScoreLog}, a background thread forces the log to disk every
+ * {@value #FLUSH_MILLIS} ms and compacts it once it holds more records than
+ * there are players, and the next {@link #open} replays it.
+ */
+public final class Leaderboard implements Closeable {
+    
+    public static final int MAX_PLAYER_LENGTH = 64;
+    static final long FLUSH_MILLIS = 1000;
+    // Fewer records than this are not worth a compaction
+    static final long MIN_COMPACT_RECORDS = 10_000;
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    
+    // Best first: higher score, then the earlier submission
+    static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.score != b.score) {
+                return a.score > b.score ? -1 : 1;
+            }
+            return Long.compare(a.sequence, b.sequence);
+        }
+    };
+    
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+    private final ScoreLog log;
+    private final Thread maintainer;
+    private volatile boolean running = true;
+    
+    /**
+     * A player's best score
+     */
+    public static final class Entry {
+        private final String player;
+        private final int score;
+        private final long sequence;
+        
+        Entry(String player, int score, long sequence) {
+            this.player = player;
+            this.score = score;
+            this.sequence = sequence;
+        }
+        
+        public String getPlayer() {
+            return player;
+        }
+        
+        public int getScore() {
+            return score;
+        }
+        
+        /**
+         * Order in which the scores were reached, for breaking ties
+         */
+        long getSequence() {
+            return sequence;
+        }
+        
+        @Override
+        public String toString() {
+            return player + "=" + score;
+        }
+    }
+    
+    private static final class Stripe {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<String, Entry> best = new HashMap<>();
+        final RankedList ranked;
+        
+        Stripe(long seed) {
+            this.ranked = new RankedList(seed);
+        }
+    }
+    
+    /**
+     * A leaderboard kept in memory only
+     */
+    public Leaderboard() {
+        createStripes();
+        this.log = null;
+        this.maintainer = null;
+    }
+    
+    private Leaderboard(Path directory) throws IOException {
+        createStripes();
+        this.log = ScoreLog.open(directory, new ScoreLog.Replay() {
+            @Override
+            public void restore(String player, int score, long sequence) {
+                Leaderboard.this.restore(player, score, sequence);
+            }
+        });
+        this.maintainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, "tetris-leaderboard-log");
+        this.maintainer.setDaemon(true);
+        this.maintainer.start();
+    }
+    
+    /**
+     * Open the leaderboard logged in {@code directory}, replaying what it holds
+     */
+    public static Leaderboard open(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("No directory for the leaderboard log");
+        }
+        return new Leaderboard(directory);
+    }
+    
+    /**
+     * Record a final score; it counts only if it beats the player's best
+     *
+     * @return true when the score is the player's new best
+     */
+    public boolean submit(String player, int score) {
+        if (player == null || player.isEmpty() || player.length() > MAX_PLAYER_LENGTH) {
+            throw new IllegalArgumentException("Player name must be 1 to " + MAX_PLAYER_LENGTH + " characters");
+        }
+        if (score < 0) {
+            throw new IllegalArgumentException("Score cannot be negative: " + score);
+        }
+        
+        Stripe stripe = stripeOf(player);
+        stripe.lock.writeLock().lock();
+        try {
+            Entry current = stripe.best.get(player);
+            if (current != null && current.score >= score) {
+                return false;
+            }
+            Entry entry = new Entry(player, score, sequence.getAndIncrement());
+            put(stripe, current, entry);
+            if (log != null) {
+                // Inside the lock, so a player's records reach the log in order
+                log.append(player, score, entry.sequence);
+            }
+            return true;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * The player's best, or null when the player has no score
+     */
+    public Entry get(String player) {
+        Stripe stripe = stripeOf(player);
+        stripe.lock.readLock().lock();
+        try {
+            return stripe.best.get(player);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * The player's position, 1 for the best, or 0 when the player has no
+     * score. Submissions made while counting may or may not be included.
+     */
+    public int rankOf(String player) {
+        Entry entry = get(player);
+        if (entry == null) {
+            return 0;
+        }
+        int rank = 1;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                rank += stripe.ranked.countBefore(entry);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return rank;
+    }
+    
+    /**
+     * The best {@code count} entries, best first
+     */
+    public List<Entry> top(int count) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        List<Entry> candidates = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                stripe.ranked.first(count, candidates);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        Collections.sort(candidates, ORDER);
+        return candidates.size() > count ? new ArrayList<>(candidates.subList(0, count)) : candidates;
+    }
+    
+    /**
+     * Players with a score
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                size += stripe.ranked.size();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Force every new best so far to disk. Does nothing for a leaderboard
+     * in memory.
+     */
+    public void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+    
+    /**
+     * Replace the log with a snapshot of the current bests. Submissions
+     * carry on meanwhile, into the next segment.
+     */
+    public synchronized void compact() throws IOException {
+        if (log == null) {
+            return;
+        }
+        int covered = log.rotate();
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                entries.addAll(stripe.best.values());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        log.writeSnapshot(covered, entries);
+    }
+    
+    /**
+     * Stop the background thread and force the log to disk
+     */
+    @Override
+    public void close() throws IOException {
+        if (log == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(maintainer);
+        try {
+            maintainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+    
+    private void createStripes() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+    
+    // Keeps the better of a replayed record and what is already known
+    private void restore(String player, int score, long recorded) {
+        Stripe stripe = stripeOf(player);
+        stripe.lock.writeLock().lock();
+        try {
+            Entry current = stripe.best.get(player);
+            if (current == null || ORDER.compare(new Entry(player, score, recorded), current) < 0) {
+                put(stripe, current, new Entry(player, score, recorded));
+            }
+            if (recorded >= sequence.get()) {
+                sequence.set(recorded + 1);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+    
+    // Must be called with the stripe's write lock held
+    private static void put(Stripe stripe, Entry replaced, Entry entry) {
+        if (replaced != null) {
+            stripe.ranked.remove(replaced);
+        }
+        stripe.ranked.insert(entry);
+        stripe.best.put(entry.player, entry);
+    }
+    
+    private Stripe stripeOf(String player) {
+        return stripes[(player.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+    
+    private void maintain() {
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS);
+        while (running) {
+            LockSupport.parkNanos(this, flushNanos);
+            try {
+                log.flush();
+                if (log.getAppended() > Math.max(MIN_COMPACT_RECORDS, size())) {
+                    compact();
+                }
+            } catch (IOException e) {
+                // Try again on the next round
+            }
+        }
+    }
+}
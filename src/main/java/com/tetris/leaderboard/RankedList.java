@@ -0,0 +1,146 @@
+package com.tetris.leaderboard;
+
+import java.util.List;
+
+/**
+ * Skip list of leaderboard entries in rank order that also counts, so the
+ * position of any entry is found in O(log n) like a lookup.
+ *
+ * Every forward link records how many entries it skips; walking towards an
+ * entry and adding up the links taken gives its rank, and inserts and
+ * removals fix the counts of the links they pass over.
+ *
+ * Not thread safe; {@link Leaderboard} guards each list with its stripe's lock.
+ */
+final class RankedList {
+    
+    private static final int MAX_LEVEL = 32;
+    
+    private final Node head = new Node(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+    private long random;
+    
+    private static final class Node {
+        final Leaderboard.Entry entry;
+        final Node[] next;
+        // Entries passed by following next[i], counting the one it leads to
+        final int[] span;
+        
+        Node(Leaderboard.Entry entry, int level) {
+            this.entry = entry;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+    
+    RankedList(long seed) {
+        this.random = seed | 1;
+    }
+    
+    void insert(Leaderboard.Entry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && Leaderboard.ORDER.compare(x.next[i].entry, entry) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+        Node node = new Node(entry, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+    
+    /**
+     * @return false when the entry is not in the list
+     */
+    boolean remove(Leaderboard.Entry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && Leaderboard.ORDER.compare(x.next[i].entry, entry) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        Node node = x.next[0];
+        if (node == null || node.entry != entry) {
+            return false;
+        }
+        
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == node) {
+                update[i].span[i] += node.span[i] - 1;
+                update[i].next[i] = node.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+    
+    /**
+     * Entries that rank ahead of {@code entry}, whether or not it is in the list
+     */
+    int countBefore(Leaderboard.Entry entry) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && Leaderboard.ORDER.compare(x.next[i].entry, entry) < 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return rank;
+    }
+    
+    /**
+     * Add up to {@code count} leading entries to {@code out}, best first
+     */
+    void first(int count, List<Leaderboard.Entry> out) {
+        Node x = head.next[0];
+        for (int i = 0; i < count && x != null; i++) {
+            out.add(x.entry);
+            x = x.next[0];
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Each level is a quarter as likely as the one below
+    private int randomLevel() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        int nodeLevel = 1 + Long.numberOfTrailingZeros(random | 1L << (2 * (MAX_LEVEL - 1))) / 2;
+        return Math.min(nodeLevel, MAX_LEVEL);
+    }
+}
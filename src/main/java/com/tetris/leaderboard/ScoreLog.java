@@ -0,0 +1,236 @@
+package com.tetris.leaderboard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only log of leaderboard improvements in numbered segment files.
+ *
+ * Each record is a player's new best: {@code [player UTF][score int][sequence long]}.
+ * Records are buffered and forced to disk by {@link #flush}. Compaction
+ * starts a new segment, writes every current best to a snapshot named after
+ * the last segment it covers and then deletes the covered segments, so the
+ * log never holds much more than the leaderboard itself. Opening the log
+ * loads the newest snapshot and replays the segments after it; a record
+ * torn by a crash ends its segment.
+ *
+ * A new segment is started every time the log is opened, so nothing is ever
+ * appended after a torn record.
+ */
+final class ScoreLog implements Closeable {
+    
+    static final String PREFIX = "scores-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_BYTES = 1 << 16;
+    
+    /**
+     * Receives every record read back when the log is opened
+     */
+    interface Replay {
+        void restore(String player, int score, long sequence);
+    }
+    
+    private final Path directory;
+    // Guarded by this
+    private int segment;
+    private FileOutputStream file;
+    private DataOutputStream out;
+    private long appended;
+    private IOException failure;
+    
+    private ScoreLog(Path directory, int segment, long appended) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.appended = appended;
+        openSegment();
+    }
+    
+    /**
+     * Open the log in {@code directory}, feeding everything it holds to {@code replay} first
+     */
+    static ScoreLog open(Path directory, Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> segments = new ArrayList<>();
+        List<Integer> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // A compaction that never finished
+                    Files.delete(path);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(indexOf(name, SEGMENT_SUFFIX));
+                } else if (name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.add(indexOf(name, SNAPSHOT_SUFFIX));
+                }
+            }
+        }
+        Collections.sort(segments);
+        Collections.sort(snapshots);
+        
+        int covered = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if (covered > 0) {
+            read(directory.resolve(name(covered, SNAPSHOT_SUFFIX)), replay);
+        }
+        long appended = 0;
+        int last = covered;
+        for (int index : segments) {
+            if (index > covered) {
+                appended += read(directory.resolve(name(index, SEGMENT_SUFFIX)), replay);
+            }
+            last = Math.max(last, index);
+        }
+        deleteCovered(directory, covered);
+        return new ScoreLog(directory, last + 1, appended);
+    }
+    
+    /**
+     * Buffer a record. A write error is kept and reported by the next
+     * {@link #flush} rather than failing the submission.
+     */
+    synchronized void append(String player, int score, long sequence) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            write(out, player, score, sequence);
+            appended++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+    
+    /**
+     * Force everything appended so far to disk
+     */
+    synchronized void flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        out.flush();
+        file.getChannel().force(false);
+    }
+    
+    /**
+     * Records appended since the last compaction, including those replayed
+     */
+    synchronized long getAppended() {
+        return appended;
+    }
+    
+    /**
+     * First step of compaction: close the current segment and start the next
+     *
+     * @return the last segment that a snapshot taken from now on covers
+     */
+    synchronized int rotate() throws IOException {
+        flush();
+        out.close();
+        int covered = segment++;
+        appended = 0;
+        openSegment();
+        return covered;
+    }
+    
+    /**
+     * Second step of compaction: write the bests, which must include every
+     * record up to segment {@code covered}, then drop what they replace
+     */
+    void writeSnapshot(int covered, Iterable<Leaderboard.Entry> entries) throws IOException {
+        Path target = directory.resolve(name(covered, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(name(covered, SNAPSHOT_SUFFIX) + TEMP_SUFFIX);
+        try (FileOutputStream snapshotFile = new FileOutputStream(temp.toFile());
+                DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(snapshotFile, BUFFER_BYTES))) {
+            for (Leaderboard.Entry entry : entries) {
+                write(snapshot, entry.getPlayer(), entry.getScore(), entry.getSequence());
+            }
+            snapshot.flush();
+            snapshotFile.getChannel().force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteCovered(directory, covered);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+    
+    // Must be called with the lock held, or from the constructor
+    private void openSegment() throws IOException {
+        file = new FileOutputStream(directory.resolve(name(segment, SEGMENT_SUFFIX)).toFile());
+        out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_BYTES));
+    }
+    
+    private static void write(DataOutputStream out, String player, int score, long sequence) throws IOException {
+        out.writeUTF(player);
+        out.writeInt(score);
+        out.writeLong(sequence);
+    }
+    
+    // Returns the number of complete records read
+    private static long read(Path path, Replay replay) throws IOException {
+        long records = 0;
+        try (InputStream file = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_BYTES))) {
+            while (true) {
+                String player;
+                try {
+                    player = in.readUTF();
+                } catch (EOFException e) {
+                    return records;
+                }
+                int score = in.readInt();
+                long sequence = in.readLong();
+                replay.restore(player, score, sequence);
+                records++;
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            // Torn by a crash; everything before it stands
+            return records;
+        }
+    }
+    
+    // Delete segments up to and including covered and any older snapshots
+    private static void deleteCovered(Path directory, int covered) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX) && indexOf(name, SEGMENT_SUFFIX) <= covered
+                        || name.endsWith(SNAPSHOT_SUFFIX) && indexOf(name, SNAPSHOT_SUFFIX) < covered) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+    
+    // Names are zero-padded, so name order is write order
+    private static String name(int index, String suffix) {
+        return String.format("%s%08d%s", PREFIX, index, suffix);
+    }
+    
+    private static int indexOf(String name, String suffix) {
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - suffix.length()));
+    }
+}
@@ -0,0 +1,168 @@
+package com.tetris.model;
+
+import java.util.Arrays;
+
+/**
+ * Cell storage that keeps one occupancy bitmask per row, with bit x set when
+ * column x is filled, plus a separate byte plane holding the piece type of
+ * each filled cell for colouring.
+ *
+ * Collision tests shift the precomputed {@link Tetromino} row masks into place
+ * and AND them with at most four rows, and a row is full when its mask equals
+ * {@link #fullRow}. Both are stored by slot behind a {@link RowIndex}, so
+ * clearing lines moves row references rather than masks and types.
+ */
+class BitboardStorage extends CellStorage {
+    static final int MAX_WIDTH = Long.SIZE;
+    
+    // Occupancy mask of each slot
+    private final long[] rows;
+    // Piece type + 1 for each cell by slot, 0 for empty
+    private final byte[] types;
+    // Row hash of each slot
+    private final long[] hashes;
+    private final long fullRow;
+    private final RowIndex index;
+    
+    BitboardStorage(int width, int height) {
+        super(width, height);
+        if (width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Bitboard supports at most " + MAX_WIDTH + " columns");
+        }
+        this.rows = new long[height];
+        this.types = new byte[width * height];
+        this.hashes = new long[height];
+        this.fullRow = width == MAX_WIDTH ? -1L : (1L << width) - 1;
+        this.index = new RowIndex(height);
+    }
+    
+    @Override
+    boolean fits(Shape shape) {
+        int type = shape.getShapeType();
+        if (!Tetromino.isValidType(type)) {
+            return fitsByBlock(shape);
+        }
+        
+        Block pivot = shape.getBlocks()[1];
+        return fits(type, shape.getRotation(), pivot.getX(), pivot.getY());
+    }
+    
+    @Override
+    boolean fits(int type, int rotation, int pivotX, int pivotY) {
+        int left = pivotX + Tetromino.minDx(type, rotation);
+        int top = pivotY + Tetromino.minDy(type, rotation);
+        
+        if (left < 0 || pivotX + Tetromino.maxDx(type, rotation) >= width
+                || top < 0 || pivotY + Tetromino.maxDy(type, rotation) >= height) {
+            return false;
+        }
+        
+        int pieceRows = Tetromino.maxDy(type, rotation) - Tetromino.minDy(type, rotation) + 1;
+        for (int row = 0; row < pieceRows; row++) {
+            if ((rows[index.slot(top + row)] & (Tetromino.rowMask(type, rotation, row) << left)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean fitsByBlock(Shape shape) {
+        for (Block block : shape.getBlocks()) {
+            int x = block.getX();
+            int y = block.getY();
+            if (x < 0 || x >= width || y < 0 || y >= height || (rows[index.slot(y)] & (1L << x)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    void place(int type, int rotation, int pivotX, int pivotY) {
+        for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+            int x = pivotX + Tetromino.dx(type, rotation, cell);
+            int y = pivotY + Tetromino.dy(type, rotation, cell);
+            
+            if (y >= 0 && y < height && x >= 0 && x < width) {
+                int slot = index.slot(y);
+                if ((rows[slot] & (1L << x)) == 0) {
+                    rows[slot] |= 1L << x;
+                    hashes[slot] ^= columnKey(x);
+                }
+                types[slot * width + x] = (byte) (type + 1);
+            }
+        }
+    }
+    
+    @Override
+    int clearFullRows(int top, int bottom) {
+        long full = 0;
+        for (int row = top; row <= bottom; row++) {
+            if (rows[index.slot(row)] == fullRow) {
+                full |= 1L << (row - top);
+            }
+        }
+        
+        int cleared = index.remove(top, bottom, full);
+        // The slots of the cleared rows are now the top rows
+        for (int row = 0; row < cleared; row++) {
+            int slot = index.slot(row);
+            rows[slot] = 0;
+            hashes[slot] = 0;
+            Arrays.fill(types, slot * width, (slot + 1) * width, (byte) 0);
+        }
+        return cleared;
+    }
+    
+    @Override
+    void pushUp(int count, int hole) {
+        index.raise(count);
+        long garbage = fullRow & ~(1L << hole);
+        long hash = 0;
+        for (int x = 0; x < width; x++) {
+            if (x != hole) {
+                hash ^= columnKey(x);
+            }
+        }
+        // The slots of the dropped rows are now the bottom rows
+        for (int row = height - count; row < height; row++) {
+            int slot = index.slot(row);
+            rows[slot] = garbage;
+            hashes[slot] = hash;
+            Arrays.fill(types, slot * width, (slot + 1) * width, (byte) (Board.GARBAGE_TYPE + 1));
+            types[slot * width + hole] = 0;
+        }
+    }
+    
+    @Override
+    int colorAt(int x, int y) {
+        int type = types[index.slot(y) * width + x];
+        return type == 0 ? 0 : Tetromino.color(type - 1);
+    }
+    
+    @Override
+    boolean isOccupied(int x, int y) {
+        return (rows[index.slot(y)] & (1L << x)) != 0;
+    }
+    
+    @Override
+    int typeAt(int x, int y) {
+        return types[index.slot(y) * width + x] - 1;
+    }
+    
+    @Override
+    void setType(int x, int y, int type) {
+        int slot = index.slot(y);
+        long filled = type == Board.NO_PIECE ? 0 : 1L << x;
+        if ((rows[slot] & (1L << x)) != filled) {
+            rows[slot] ^= 1L << x;
+            hashes[slot] ^= columnKey(x);
+        }
+        types[slot * width + x] = (byte) (type + 1);
+    }
+    
+    @Override
+    long rowHash(int y) {
+        return hashes[index.slot(y)];
+    }
+}
\ No newline at end of file
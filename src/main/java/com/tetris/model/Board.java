@@ -1,116 +1,244 @@
 package com.tetris.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the Tetris game board
  */
 public class Board {
+    
+    /**
+     * How locked cells are stored. GRID keeps one RGB value per cell; BITBOARD
+     * keeps one occupancy mask per row and a compact piece-type plane, and
+     * tests collisions and full rows with mask operations.
+     */
+    public enum Mode {
+        GRID,
+        BITBOARD
+    }
+    
+    // Value of pieceType and nextType when there is no piece
+    public static final int NO_PIECE = -1;
+    
+    // Garbage rows reuse a piece type so that every state encoding can carry them
+    public static final int GARBAGE_TYPE = Shape.O_SHAPE;
+    
+    // Each board numbers its versions from its own epoch, so versions from
+    // different boards (for example before and after a restart) never overlap
+    private static final AtomicLong EPOCHS = new AtomicLong();
+    
+    // Odd multiplier weighing each row hash by the row's distance from the floor
+    private static final long ROW_WEIGHT = 0xD6E8FEB86659FD93L;
+    
     private int width;
     private int height;
-    private int[][] grid;
-    private Shape currentShape;
-    private Shape nextShape;
+    private final Mode mode;
+    private final CellStorage cells;
+    // The falling piece as (type, rotation, pivot x, pivot y); see Tetromino
+    private int pieceType = NO_PIECE;
+    private int pieceRotation;
+    private int pieceX;
+    private int pieceY;
+    private int nextType = NO_PIECE;
     private int score;
+    private int linesCleared;
+    private long piecesPlaced;
     private boolean gameOver;
+    private final PieceGenerator pieces;
+    // Version of the displayed board and the version at which each row last changed
+    private final long baseVersion;
+    private long version;
+    private final long[] rowVersions;
+    // Row of the highest locked cell in each column, height when it is empty
+    private final int[] columnTops;
+    // Sum of the row hashes of the locked cells, each times ROW_WEIGHT to the
+    // power of the row's distance from the floor
+    private long hash;
     
     public Board(int width, int height) {
+        this(width, height, width <= BitboardStorage.MAX_WIDTH ? Mode.BITBOARD : Mode.GRID);
+    }
+    
+    public Board(int width, int height, Mode mode) {
+        this(width, height, mode, PieceGenerator.uniform(ThreadLocalRandom.current().nextLong()));
+    }
+    
+    /**
+     * Create a board whose piece sequence is fully determined by {@code seed}
+     */
+    public Board(int width, int height, long seed) {
+        this(width, height, PieceGenerator.uniform(seed));
+    }
+    
+    public Board(int width, int height, PieceGenerator pieces) {
+        this(width, height, width <= BitboardStorage.MAX_WIDTH ? Mode.BITBOARD : Mode.GRID, pieces);
+    }
+    
+    public Board(int width, int height, Mode mode, PieceGenerator pieces) {
         this.width = width;
         this.height = height;
-        this.grid = new int[height][width];
+        this.mode = mode;
+        this.cells = mode == Mode.BITBOARD ? new BitboardStorage(width, height) : new GridStorage(width, height);
         this.score = 0;
         this.gameOver = false;
-        initializeBoard();
-    }
-    
-    private void initializeBoard() {
-        // Initialize the grid with zeros (empty cells)
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                grid[row][col] = 0;
-            }
-        }
+        this.pieces = pieces;
+        this.baseVersion = EPOCHS.incrementAndGet() << 32;
+        this.version = baseVersion;
+        this.rowVersions = new long[height];
+        Arrays.fill(rowVersions, baseVersion);
+        this.columnTops = new int[width];
+        Arrays.fill(columnTops, height);
     }
     
     public void createNewShape() {
+        version++;
+        markPieceRows();
+        
         // If there's a next shape, make it the current shape
-        if (nextShape != null) {
-            currentShape = nextShape;
+        if (nextType != NO_PIECE) {
+            pieceType = nextType;
         } else {
-            // Create a random shape for the first time
-            currentShape = Shape.createRandomShape();
+            // Deal the first shape
+            pieceType = pieces.next();
         }
         
-        // Create a new random shape as the next shape
-        nextShape = Shape.createRandomShape();
+        // Deal the next shape
+        nextType = pieces.next();
         
-        // Position the current shape at the top center of the board
+        // Position the current shape with its top-left corner at the top center of the board
         int startX = (width / 2) - 1;
-        currentShape.setPosition(startX, 0);
+        pieceRotation = 0;
+        pieceX = startX - Tetromino.minDx(pieceType, 0);
+        pieceY = -Tetromino.minDy(pieceType, 0);
+        
+        markPieceRows();
         
         // Check if the new shape can be placed
-        if (!isValidPosition(currentShape)) {
+        if (!cells.fits(pieceType, pieceRotation, pieceX, pieceY)) {
             gameOver = true;
         }
     }
     
     public boolean moveShapeDown() {
-        if (currentShape == null) return false;
-        
-        Shape movedShape = currentShape.getCopy();
-        movedShape.move(0, 1);
+        if (pieceType == NO_PIECE) return false;
         
-        if (isValidPosition(movedShape)) {
-            currentShape = movedShape;
+        if (cells.fits(pieceType, pieceRotation, pieceX, pieceY + 1)) {
+            version++;
+            markPieceRows();
+            pieceY++;
+            markPieceRows();
             return true;
         } else {
             // Lock the current shape in place
             placeShape();
             // Check for completed lines
-            int linesCleared = clearLines();
+            int cleared = clearLines();
+            linesCleared += cleared;
             // Update score
-            updateScore(linesCleared);
+            updateScore(cleared);
             // Create a new shape
             createNewShape();
             return false;
         }
     }
     
-    public boolean moveShapeLeft() {
-        if (currentShape == null) return false;
+    /**
+     * Drop the falling piece straight to where it lands and lock it there
+     *
+     * @return the number of rows it fell
+     */
+    public int hardDrop() {
+        if (pieceType == NO_PIECE) return 0;
         
-        Shape movedShape = currentShape.getCopy();
-        movedShape.move(-1, 0);
+        int distance = getDropDistance();
+        if (distance > 0) {
+            version++;
+            markPieceRows();
+            pieceY += distance;
+            markPieceRows();
+        }
+        // Locks the piece, clears lines and deals the next one
+        moveShapeDown();
+        return distance;
+    }
+    
+    /**
+     * Rows the falling piece can still fall, 0 when there is none.
+     *
+     * While every column of the piece is above the stack the distance comes
+     * from the column tops and the piece's bottom profile. A piece tucked
+     * under an overhang is stepped down cell by cell instead.
+     */
+    public int getDropDistance() {
+        if (pieceType == NO_PIECE) return 0;
         
-        if (isValidPosition(movedShape)) {
-            currentShape = movedShape;
-            return true;
+        int left = pieceX + Tetromino.minDx(pieceType, pieceRotation);
+        int columns = Tetromino.maxDx(pieceType, pieceRotation) - Tetromino.minDx(pieceType, pieceRotation) + 1;
+        if (left < 0 || left + columns > width) {
+            return steppedDropDistance();
         }
-        return false;
+        int distance = Integer.MAX_VALUE;
+        for (int column = 0; column < columns; column++) {
+            int bottom = pieceY + Tetromino.bottomDy(pieceType, pieceRotation, column);
+            int top = columnTops[left + column];
+            if (bottom >= top) {
+                return steppedDropDistance();
+            }
+            distance = Math.min(distance, top - 1 - bottom);
+        }
+        return distance;
+    }
+    
+    private int steppedDropDistance() {
+        int distance = 0;
+        while (cells.fits(pieceType, pieceRotation, pieceX, pieceY + distance + 1)) {
+            distance++;
+        }
+        return distance;
+    }
+    
+    /**
+     * Pivot row the falling piece would land on, for drawing its ghost. Only
+     * meaningful while there is a falling piece.
+     */
+    public int getGhostY() {
+        return pieceY + getDropDistance();
+    }
+    
+    public boolean moveShapeLeft() {
+        return shiftShape(-1);
     }
     
     public boolean moveShapeRight() {
-        if (currentShape == null) return false;
-        
-        Shape movedShape = currentShape.getCopy();
-        movedShape.move(1, 0);
+        return shiftShape(1);
+    }
+    
+    private boolean shiftShape(int deltaX) {
+        if (pieceType == NO_PIECE) return false;
         
-        if (isValidPosition(movedShape)) {
-            currentShape = movedShape;
+        if (cells.fits(pieceType, pieceRotation, pieceX + deltaX, pieceY)) {
+            version++;
+            markPieceRows();
+            pieceX += deltaX;
+            markPieceRows();
             return true;
         }
         return false;
     }
     
     public boolean rotateShape() {
-        if (currentShape == null) return false;
+        if (pieceType == NO_PIECE) return false;
         
-        Shape rotatedShape = currentShape.getCopy();
-        rotatedShape.rotate();
+        // The O shape does not rotate, matching Shape.rotate()
+        int rotated = pieceType == Shape.O_SHAPE ? pieceRotation : (pieceRotation + 1) % Tetromino.ROTATIONS;
         
-        if (isValidPosition(rotatedShape)) {
-            currentShape = rotatedShape;
+        if (cells.fits(pieceType, rotated, pieceX, pieceY)) {
+            version++;
+            markPieceRows();
+            pieceRotation = rotated;
+            markPieceRows();
             return true;
         }
         return false;
@@ -119,75 +247,169 @@ public class Board {
     public boolean isValidPosition(Shape shape) {
         if (shape == null) return false;
         
-        for (Block block : shape.getBlocks()) {
-            int x = block.getX();
-            int y = block.getY();
-            
-            // Check if the block is out of bounds
-            if (x < 0 || x >= width || y < 0 || y >= height) {
-                return false;
+        return cells.fits(shape);
+    }
+    
+    /**
+     * Push the locked cells up by {@code rows} rows of garbage, filled in
+     * every column but {@code hole}, as sent by an opponent in a
+     * {@link Room}. Cells pushed off the top end the game. A falling piece
+     * that no longer fits is lifted until it does, or ends the game when
+     * it cannot be.
+     */
+    public void addGarbage(int rows, int hole) {
+        if (rows <= 0 || gameOver) return;
+        if (hole < 0 || hole >= width) {
+            throw new IllegalArgumentException("Hole column " + hole + " is outside the board");
+        }
+        rows = Math.min(rows, height);
+        version++;
+        markPieceRows();
+        
+        int stackTop = stackTop();
+        boolean toppedOut = stackTop < rows;
+        long pushedOff = weighRows(0, rows);
+        cells.pushUp(rows, hole);
+        
+        if (toppedOut) {
+            gameOver = true;
+            scanColumnTops();
+        } else {
+            // Every top rises with the stack; an empty hole column stays empty
+            for (int x = 0; x < width; x++) {
+                if (x != hole || columnTops[x] < height) {
+                    columnTops[x] -= rows;
+                }
             }
-            
-            // Check if the block overlaps with existing blocks on the grid
-            if (y >= 0 && grid[y][x] != 0) {
-                return false;
+        }
+        // Every row that stayed is as many rows further from the floor
+        hash = (hash - pushedOff) * power(ROW_WEIGHT, rows) + weighRows(height - rows, height);
+        
+        if (pieceType != NO_PIECE) {
+            int highest = -Tetromino.minDy(pieceType, pieceRotation);
+            while (pieceY > highest && !cells.fits(pieceType, pieceRotation, pieceX, pieceY)) {
+                pieceY--;
+            }
+            if (!cells.fits(pieceType, pieceRotation, pieceX, pieceY)) {
+                gameOver = true;
             }
         }
-        return true;
+        // The whole stack rose, so every row from its new top down changed
+        markRows(Math.max(0, stackTop - rows), height - 1);
+        markPieceRows();
     }
     
     private void placeShape() {
-        if (currentShape == null) return;
+        if (pieceType == NO_PIECE) return;
         
-        for (Block block : currentShape.getBlocks()) {
-            int x = block.getX();
-            int y = block.getY();
-            
-            // Only place blocks that are within the grid
-            if (y >= 0 && y < height && x >= 0 && x < width) {
-                grid[y][x] = block.getColor();
+        int top = Math.max(0, pieceY + Tetromino.minDy(pieceType, pieceRotation));
+        int bottom = Math.min(height - 1, pieceY + Tetromino.maxDy(pieceType, pieceRotation));
+        hash -= weighRows(top, bottom + 1);
+        cells.place(pieceType, pieceRotation, pieceX, pieceY);
+        hash += weighRows(top, bottom + 1);
+        piecesPlaced++;
+        
+        for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+            int x = pieceX + Tetromino.dx(pieceType, pieceRotation, cell);
+            int y = pieceY + Tetromino.dy(pieceType, pieceRotation, cell);
+            if (x >= 0 && x < width && y >= 0 && y < height && y < columnTops[x]) {
+                columnTops[x] = y;
             }
         }
     }
     
+    // Only the rows of the piece that just locked can have become full
     private int clearLines() {
-        List<Integer> linesToClear = new ArrayList<>();
+        if (pieceType == NO_PIECE) return 0;
         
-        // Find completed lines
-        for (int row = 0; row < height; row++) {
-            boolean lineComplete = true;
-            for (int col = 0; col < width; col++) {
-                if (grid[row][col] == 0) {
-                    lineComplete = false;
-                    break;
-                }
-            }
-            if (lineComplete) {
-                linesToClear.add(row);
-            }
+        int top = Math.max(0, pieceY + Tetromino.minDy(pieceType, pieceRotation));
+        int bottom = Math.min(height - 1, pieceY + Tetromino.maxDy(pieceType, pieceRotation));
+        long span = weighRows(top, bottom + 1);
+        int stackTop = stackTop();
+        int cleared = cells.clearFullRows(top, bottom);
+        if (cleared > 0) {
+            lowerColumnTops(cleared);
+            // The survivors of the span end at its bottom, and the rows that
+            // were above it now sit right above them, each as many rows
+            // nearer the floor as were cleared. Rows below do not move.
+            int survivors = top + cleared;
+            long above = weighRows(Math.min(stackTop + cleared, survivors), survivors);
+            hash += weighRows(survivors, bottom + 1) - span + above - above * power(ROW_WEIGHT, cleared);
+            
+            // Rows above the old top of the stack were empty and still are
+            version++;
+            markRows(stackTop, bottom);
         }
-        
-        // Clear the lines and move blocks down
-        for (int lineIndex : linesToClear) {
-            // Clear the line
-            for (int col = 0; col < width; col++) {
-                grid[lineIndex][col] = 0;
+        return cleared;
+    }
+    
+    // A full row reaches every column, so each column's top was at or above
+    // the highest cleared row. Tops above it fell with the rows; a top that
+    // was cleared is found again by looking down from where it would be.
+    private void lowerColumnTops(int cleared) {
+        for (int x = 0; x < width; x++) {
+            int row = Math.min(columnTops[x] + cleared, height);
+            while (row < height && !cells.isOccupied(x, row)) {
+                row++;
             }
-            
-            // Move all blocks above this line down
-            for (int row = lineIndex; row > 0; row--) {
-                for (int col = 0; col < width; col++) {
-                    grid[row][col] = grid[row - 1][col];
-                }
+            columnTops[x] = row;
+        }
+    }
+    
+    // Row of the highest locked cell, height when the board is empty
+    private int stackTop() {
+        int top = height;
+        for (int x = 0; x < width; x++) {
+            top = Math.min(top, columnTops[x]);
+        }
+        return top;
+    }
+    
+    // Share of the rows from top up to but excluding bottom in the hash
+    private long weighRows(int top, int bottom) {
+        long sum = 0;
+        long weight = power(ROW_WEIGHT, height - bottom);
+        for (int row = bottom - 1; row >= top; row--) {
+            sum += cells.rowHash(row) * weight;
+            weight *= ROW_WEIGHT;
+        }
+        return sum;
+    }
+    
+    private static long power(long base, int exponent) {
+        long result = 1;
+        for (; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0) {
+                result *= base;
             }
-            
-            // Clear the top line
-            for (int col = 0; col < width; col++) {
-                grid[0][col] = 0;
+            base *= base;
+        }
+        return result;
+    }
+    
+    private void scanColumnTops() {
+        for (int x = 0; x < width; x++) {
+            int row = 0;
+            while (row < height && !cells.isOccupied(x, row)) {
+                row++;
             }
+            columnTops[x] = row;
         }
+    }
+    
+    // Stamp the rows covered by the falling piece with the current version
+    private void markPieceRows() {
+        if (pieceType == NO_PIECE) return;
         
-        return linesToClear.size();
+        int top = Math.max(0, pieceY + Tetromino.minDy(pieceType, pieceRotation));
+        int bottom = Math.min(height - 1, pieceY + Tetromino.maxDy(pieceType, pieceRotation));
+        markRows(top, bottom);
+    }
+    
+    private void markRows(int top, int bottom) {
+        for (int row = top; row <= bottom; row++) {
+            rowVersions[row] = version;
+        }
     }
     
     private void updateScore(int linesCleared) {
@@ -208,6 +430,87 @@ public class Board {
         }
     }
     
+    /**
+     * Version of the displayed board. It increases whenever a cell or the
+     * falling piece changes; reading it before reading rows guarantees that
+     * any later change has a higher version.
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Indices of the rows whose display has changed since the given version,
+     * in top-to-bottom order, or null when the version does not belong to this
+     * board and the caller needs the full grid.
+     */
+    public int[] getChangedRows(long since) {
+        long current = version;
+        if (since < baseVersion || since > current) {
+            return null;
+        }
+        
+        int count = 0;
+        for (int row = 0; row < height; row++) {
+            if (rowVersions[row] > since) {
+                count++;
+            }
+        }
+        int[] changed = new int[count];
+        int index = 0;
+        for (int row = 0; row < height && index < count; row++) {
+            if (rowVersions[row] > since) {
+                changed[index++] = row;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Colors of one displayed row, including the falling piece
+     */
+    public int[] getRow(int row) {
+        int[] displayRow = new int[width];
+        for (int col = 0; col < width; col++) {
+            displayRow[col] = cells.colorAt(col, row);
+        }
+        
+        if (pieceType != NO_PIECE) {
+            int color = Tetromino.color(pieceType);
+            for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+                int x = pieceX + Tetromino.dx(pieceType, pieceRotation, cell);
+                if (pieceY + Tetromino.dy(pieceType, pieceRotation, cell) == row && x >= 0 && x < width) {
+                    displayRow[x] = color;
+                }
+            }
+        }
+        return displayRow;
+    }
+    
+    /**
+     * Fill {@code types} (at least width * height long, row-major) with the
+     * piece type + 1 of every displayed cell, including the falling piece, and
+     * 0 for empty cells
+     */
+    public void fillCellTypes(byte[] types) {
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                types[row * width + col] = (byte) (cells.typeAt(col, row) + 1);
+            }
+        }
+        
+        if (pieceType != NO_PIECE) {
+            for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+                int x = pieceX + Tetromino.dx(pieceType, pieceRotation, cell);
+                int y = pieceY + Tetromino.dy(pieceType, pieceRotation, cell);
+                
+                if (y >= 0 && y < height && x >= 0 && x < width) {
+                    types[y * width + x] = (byte) (pieceType + 1);
+                }
+            }
+        }
+    }
+    
     public int[][] getGrid() {
         // Create a copy of the grid with the current shape
         int[][] displayGrid = new int[height][width];
@@ -215,18 +518,19 @@ public class Board {
         // Copy the fixed blocks
         for (int row = 0; row < height; row++) {
             for (int col = 0; col < width; col++) {
-                displayGrid[row][col] = grid[row][col];
+                displayGrid[row][col] = cells.colorAt(col, row);
             }
         }
         
         // Add the current shape
-        if (currentShape != null) {
-            for (Block block : currentShape.getBlocks()) {
-                int x = block.getX();
-                int y = block.getY();
+        if (pieceType != NO_PIECE) {
+            int color = Tetromino.color(pieceType);
+            for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+                int x = pieceX + Tetromino.dx(pieceType, pieceRotation, cell);
+                int y = pieceY + Tetromino.dy(pieceType, pieceRotation, cell);
                 
                 if (y >= 0 && y < height && x >= 0 && x < width) {
-                    displayGrid[y][x] = block.getColor();
+                    displayGrid[y][x] = color;
                 }
             }
         }
@@ -234,23 +538,170 @@ public class Board {
         return displayGrid;
     }
     
+    /**
+     * Piece type of a locked cell, not counting the falling piece, or
+     * {@link #NO_PIECE} when it is empty
+     */
+    int lockedTypeAt(int x, int y) {
+        return cells.typeAt(x, y);
+    }
+    
+    /**
+     * Whether a locked cell is filled, not counting the falling piece
+     */
+    public boolean isOccupied(int x, int y) {
+        return cells.isOccupied(x, y);
+    }
+    
+    /**
+     * Rows from the floor up to and including the highest locked cell of a
+     * column, 0 for an empty column
+     */
+    public int getColumnHeight(int x) {
+        return height - columnTops[x];
+    }
+    
+    /**
+     * 64-bit Zobrist hash of which cells are locked, kept up to date as
+     * pieces lock and lines clear. Boards of the same size with the same
+     * locked cells hash alike whatever their colors, score or falling piece.
+     *
+     * Each row hashes its cells with keys by column alone, and the board
+     * weighs the row hashes by their distance from the floor. Clearing lines
+     * then only rescans the piece's rows and the stack above them, and
+     * multiplies out the distance the rows above fell.
+     */
+    public long getHash() {
+        return hash;
+    }
+    
+    /**
+     * An independent copy of the cells, pieces and score, for trying moves
+     * without touching this board. Pieces after the next one are dealt from
+     * {@code pieces}. The copy numbers its versions from a new epoch.
+     */
+    public Board copy(PieceGenerator pieces) {
+        Board copy = new Board(width, height, mode, pieces);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                if (cells.isOccupied(col, row)) {
+                    copy.cells.setType(col, row, cells.typeAt(col, row));
+                }
+            }
+        }
+        System.arraycopy(columnTops, 0, copy.columnTops, 0, width);
+        copy.hash = hash;
+        copy.pieceType = pieceType;
+        copy.pieceRotation = pieceRotation;
+        copy.pieceX = pieceX;
+        copy.pieceY = pieceY;
+        copy.nextType = nextType;
+        copy.score = score;
+        copy.linesCleared = linesCleared;
+        copy.piecesPlaced = piecesPlaced;
+        copy.gameOver = gameOver;
+        return copy;
+    }
+    
+    // Rebuild the state captured in a GameSnapshot; cellTypes holds the
+    // locked cells row-major as type + 1, 0 for empty
+    void restore(byte[] cellTypes, int pieceType, int pieceRotation, int pieceX, int pieceY, int nextType,
+            int score, int linesCleared, long piecesPlaced, boolean gameOver) {
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                cells.setType(col, row, cellTypes[row * width + col] - 1);
+            }
+        }
+        this.pieceType = pieceType;
+        this.pieceRotation = pieceRotation;
+        this.pieceX = pieceX;
+        this.pieceY = pieceY;
+        this.nextType = nextType;
+        this.score = score;
+        this.linesCleared = linesCleared;
+        this.piecesPlaced = piecesPlaced;
+        this.gameOver = gameOver;
+        version++;
+        Arrays.fill(rowVersions, version);
+        scanColumnTops();
+        hash = weighRows(0, height);
+    }
+    
     // Add method to set the current shape
     public void setCurrentShape(Shape shape) {
-        this.currentShape = shape;
+        version++;
+        markPieceRows();
+        
+        if (shape == null) {
+            pieceType = NO_PIECE;
+            return;
+        }
+        
+        // Unknown types are built from I blocks and rotate like an I
+        int type = shape.getShapeType();
+        pieceType = Tetromino.isValidType(type) ? type : Shape.I_SHAPE;
+        pieceRotation = shape.getRotation();
+        
+        Block pivot = shape.getBlocks()[1];
+        pieceX = pivot.getX();
+        pieceY = pivot.getY();
+        markPieceRows();
     }
     
+    /**
+     * A new {@link Shape} showing where the falling piece is, or null when
+     * there is none. Changing the returned shape does not move the piece.
+     */
     public Shape getCurrentShape() {
-        return currentShape;
+        if (pieceType == NO_PIECE) return null;
+        
+        return Shape.at(pieceType, pieceRotation, pieceX, pieceY);
     }
     
     public Shape getNextShape() {
-        return nextShape;
+        if (nextType == NO_PIECE) return null;
+        
+        return new Shape(nextType);
+    }
+    
+    public int getPieceType() {
+        return pieceType;
+    }
+    
+    public int getPieceRotation() {
+        return pieceRotation;
+    }
+    
+    public int getPieceX() {
+        return pieceX;
+    }
+    
+    public int getPieceY() {
+        return pieceY;
+    }
+    
+    public int getNextType() {
+        return nextType;
     }
     
     public int getScore() {
         return score;
     }
     
+    /**
+     * Total number of lines cleared on this board
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+    
+    /**
+     * Total number of pieces locked into this board
+     */
+    public long getPiecesPlaced() {
+        return piecesPlaced;
+    }
+    
     public boolean isGameOver() {
         return gameOver;
     }
@@ -262,4 +713,8 @@ public class Board {
     public int getHeight() {
         return height;
     }
+    
+    public Mode getMode() {
+        return mode;
+    }
 }
\ No newline at end of file
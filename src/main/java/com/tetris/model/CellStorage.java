@@ -0,0 +1,80 @@
+package com.tetris.model;
+
+import com.tetris.util.SplitMix64;
+
+/**
+ * Storage for the locked cells of a {@link Board}. Implementations decide how
+ * cells are laid out in memory; the board only talks to them through these
+ * operations.
+ */
+abstract class CellStorage {
+    // Seed of the Zobrist key of each column; fixed so hashes are comparable
+    // between boards and runs
+    private static final long ZOBRIST_SEED = 0x5A0B1257L;
+    
+    protected final int width;
+    protected final int height;
+    
+    protected CellStorage(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * Check that every block of the shape is inside the board and on an empty cell
+     */
+    abstract boolean fits(Shape shape);
+    
+    /**
+     * Check that the piece in the given orientation with its pivot at (x, y)
+     * is inside the board and only covers empty cells
+     */
+    abstract boolean fits(int type, int rotation, int x, int y);
+    
+    /**
+     * Lock the piece in the given orientation with its pivot at (x, y) into the board
+     */
+    abstract void place(int type, int rotation, int x, int y);
+    
+    /**
+     * Remove the full rows between {@code top} and {@code bottom}, moving the
+     * rows above them down. Only rows a piece has just been locked into can
+     * have become full, so the board passes the rows of that piece.
+     *
+     * @return the number of rows removed
+     */
+    abstract int clearFullRows(int top, int bottom);
+    
+    /**
+     * Move every row up by {@code rows}, dropping the top rows, and fill the
+     * bottom rows with {@link Board#GARBAGE_TYPE} in every column but {@code hole}
+     */
+    abstract void pushUp(int rows, int hole);
+    
+    /**
+     * RGB color of a locked cell, or 0 when the cell is empty
+     */
+    abstract int colorAt(int x, int y);
+    
+    abstract boolean isOccupied(int x, int y);
+    
+    /**
+     * Piece type of a locked cell, or {@link Board#NO_PIECE} when the cell is empty
+     */
+    abstract int typeAt(int x, int y);
+    
+    /**
+     * Set a locked cell to a piece type, or clear it with {@link Board#NO_PIECE}
+     */
+    abstract void setType(int x, int y, int type);
+    
+    /**
+     * XOR of the {@link #columnKey column keys} of the locked cells of a row.
+     * It does not depend on where the row is, so it moves with the row.
+     */
+    abstract long rowHash(int y);
+    
+    static long columnKey(int x) {
+        return SplitMix64.valueAt(ZOBRIST_SEED, x);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.tetris.model;
+
+import com.tetris.util.SplitMix64;
+
+/**
+ * Base for generators that produce pieces a chunk at a time.
+ *
+ * Filling a small buffer in one loop keeps the random generator's state in
+ * registers and leaves {@link #next()} as an array read, which is what a
+ * simulation dealing millions of pieces spends its time on.
+ */
+public abstract class ChunkedPieceGenerator implements PieceGenerator {
+
+    protected final SplitMix64 random;
+    private final long seed;
+    private final byte[] chunk;
+    private int position;
+    // State of the random generator before the current chunk was filled
+    private long chunkState;
+    
+    protected ChunkedPieceGenerator(long seed, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.random = new SplitMix64(seed);
+        this.seed = seed;
+        this.chunk = new byte[chunkSize];
+        this.position = chunkSize;
+    }
+    
+    @Override
+    public final int next() {
+        if (position == chunk.length) {
+            chunkState = random.getState();
+            fill(chunk);
+            position = 0;
+        }
+        return chunk[position++];
+    }
+    
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Random state from which the current chunk can be regenerated. Together
+     * with {@link #getChunkPosition()} it captures where the generator is.
+     */
+    public long getChunkState() {
+        return position == chunk.length ? random.getState() : chunkState;
+    }
+    
+    public int getChunkPosition() {
+        return position;
+    }
+    
+    /**
+     * Continue from a point captured with {@link #getChunkState()} and
+     * {@link #getChunkPosition()}
+     */
+    public void restore(long state, int chunkPosition) {
+        if (chunkPosition < 0 || chunkPosition > chunk.length) {
+            throw new IllegalArgumentException("Chunk position out of range: " + chunkPosition);
+        }
+        random.setState(state);
+        chunkState = state;
+        if (chunkPosition < chunk.length) {
+            fill(chunk);
+        }
+        position = chunkPosition;
+    }
+    
+    /**
+     * Fill the whole chunk with the next piece types
+     */
+    protected abstract void fill(byte[] chunk);
+}
@@ -1,21 +1,68 @@
 package com.tetris.model;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import com.tetris.util.Histogram;
+import com.tetris.util.MpscQueue;
+import com.tetris.util.TickScheduler;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
- * Manages the Tetris game state and logic
+ * Manages the Tetris game state and logic.
+ *
+ * A game has a single writer. Inputs, ticks and reads from any thread are
+ * queued as commands on a bounded lock-free queue, and whichever thread
+ * holds the writer role applies them one at a time, in order. A thread that
+ * queues a command takes the role itself when nobody holds it, so an
+ * uncontended call runs straight through; otherwise the current writer
+ * applies the command before it lets go. Listeners and the input recorder
+ * are always called by the writer.
  */
 public class Game {
-    private Board board;
-    private Timer gameTimer;
-    private boolean isPaused;
-    private int level;
+    // Games registered with a scheduler, across the process
+    private static final AtomicInteger TICKING = new AtomicInteger();
+    // Time spent applying each tick, across the process
+    private static final Histogram TICK_NANOS = new Histogram();
+    
+    static final int COMMAND_QUEUE_CAPACITY = 64;
+    // Gravity is stepped once a frame whatever the level; see Gravity
+    static final long FRAME_MILLIS = TimeUnit.NANOSECONDS.toMillis(Gravity.FRAME_NANOS);
+    
+    // Command codes; the inputs share their values with InputRecorder
+    private static final int PAUSE = 7;
+    private static final int RESUME = 8;
+    private static final int SOFT_DROP = 9;
+    private static final int COMMAND_CODES = 10;
+    
+    private volatile Board board;
+    // Only replaced by the writer
+    private volatile PieceGenerator pieces;
+    private final TickScheduler scheduler;
+    // Only changed while holding the lock
+    private volatile TickScheduler.Timeout tickTimeout;
+    private volatile boolean isPaused;
+    private volatile int level;
     private int linesCleared;
+    // Only touched by the writer
+    private final Gravity gravity;
     private GameListener gameListener;
-    private Shape nextShape;
-    private Shape currentShape;  // Add this field
-    private boolean gameOver;    // Add this field
+    private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile InputRecorder inputRecorder;
+    private volatile LockListener lockListener;
+    private volatile boolean gameOver;
+    private final MpscQueue<Runnable> commands = new MpscQueue<>(COMMAND_QUEUE_CAPACITY);
+    // One reusable command per code, so inputs do not allocate
+    private final Command[] inputCommands = new Command[COMMAND_CODES];
+    // The thread currently applying commands, or null
+    private final AtomicReference<Thread> writer = new AtomicReference<>();
+    private final AtomicLong droppedCommands = new AtomicLong();
     
     // Interface for game event listeners
     public interface GameListener {
@@ -25,176 +72,508 @@ public class Game {
         void onLevelUpdated(int level);
     }
     
+    /**
+     * Receives every input that changes the game, in the order it is applied.
+     * Together with the piece generator's seed this is enough to replay the
+     * game. Implementations must not block.
+     */
+    public interface InputRecorder {
+        int MOVE_LEFT = 1;
+        int MOVE_RIGHT = 2;
+        int ROTATE = 3;
+        int DROP = 4;
+        int TICK = 5;
+        int RESTART = 6;
+        
+        void record(int input);
+    }
+    
+    /**
+     * Told by the writer each time a piece locks, after lines are cleared and
+     * before listeners hear of the move, so it may still change the board.
+     */
+    public interface LockListener {
+        void onPieceLocked(Game game, int linesCleared);
+    }
+    
+    private final class Command implements Runnable {
+        private final int code;
+        
+        Command(int code) {
+            this.code = code;
+        }
+        
+        @Override
+        public void run() {
+            apply(code);
+        }
+    }
+    
     public Game(int width, int height) {
-        this.board = new Board(width, height);
+        this(width, height, TickScheduler.shared());
+    }
+    
+    public Game(int width, int height, TickScheduler scheduler) {
+        this(width, height, scheduler, PieceGenerator.uniform(ThreadLocalRandom.current().nextLong()));
+    }
+    
+    /**
+     * Create a game that deals its pieces from {@code pieces}. With a seeded
+     * generator the game is fully determined by the seed and the inputs,
+     * including across restarts, which keep drawing from the same generator.
+     */
+    public Game(int width, int height, TickScheduler scheduler, PieceGenerator pieces) {
+        this.pieces = pieces;
+        this.board = new Board(width, height, pieces);
+        this.scheduler = scheduler;
         this.isPaused = false;
         this.level = 1;
         this.linesCleared = 0;
         this.gameOver = false;   // Initialize gameOver
+        this.gravity = new Gravity(level, System.nanoTime());
+        createCommands();
         
         // Initialize shapes
-        this.nextShape = Shape.createRandomShape();
         createNewShape();
     }
     
+    // Rebuild a game around a restored board, see GameSnapshot
+    Game(Board board, PieceGenerator pieces, TickScheduler scheduler, int level, int linesCleared, boolean paused) {
+        this.pieces = pieces;
+        this.board = board;
+        this.scheduler = scheduler;
+        this.isPaused = paused;
+        this.level = level;
+        this.linesCleared = linesCleared;
+        this.gameOver = board.isGameOver();
+        this.gravity = new Gravity(level, System.nanoTime());
+        createCommands();
+    }
+    
+    private void createCommands() {
+        for (int code = 1; code < COMMAND_CODES; code++) {
+            inputCommands[code] = new Command(code);
+        }
+    }
+    
     public void setGameListener(GameListener listener) {
+        if (gameListener != null) {
+            listeners.remove(gameListener);
+        }
         this.gameListener = listener;
+        if (listener != null) {
+            listeners.add(listener);
+        }
     }
     
-    public void start() {
-        if (gameTimer != null) {
-            gameTimer.cancel();
-        }
+    /**
+     * Register an additional listener, for example a push connection, next to
+     * the one set with {@link #setGameListener}
+     */
+    public void addGameListener(GameListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeGameListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Record every following input with {@code recorder}, or stop recording
+     * when it is null. Attach it before the first input to be able to replay
+     * the game from its seed.
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        this.inputRecorder = recorder;
+    }
+    
+    public InputRecorder getInputRecorder() {
+        return inputRecorder;
+    }
+    
+    public void setLockListener(LockListener listener) {
+        this.lockListener = listener;
+    }
+    
+    public synchronized void start() {
+        stopTicking();
         
-        gameTimer = new Timer();
-        gameTimer.scheduleAtFixedRate(new TimerTask() {
+        // Register with the shared scheduler instead of owning a timer thread
+        TICKING.incrementAndGet();
+        tickTimeout = scheduler.schedule(new Runnable() {
             @Override
             public void run() {
-                if (!isPaused && !board.isGameOver()) {
-                    tick();
+                // A tick that finds the queue full is skipped, like a late one
+                if (!isPaused && !board.isGameOver() && !commands.offer(inputCommands[InputRecorder.TICK])) {
+                    droppedCommands.incrementAndGet();
                 }
+                drain();
             }
-        }, 0, calculateDropInterval());
+        }, 0, FRAME_MILLIS);
     }
     
-    private long calculateDropInterval() {
-        // Drop interval decreases as level increases (game gets faster)
-        return Math.max(100, 1000 - ((level - 1) * 100));
+    public void moveLeft() {
+        submit(InputRecorder.MOVE_LEFT);
     }
     
-    private void tick() {
-        boolean moved = board.moveShapeDown();
-        
-        if (gameListener != null) {
-            gameListener.onBoardUpdated();
-            
-            if (board.isGameOver()) {
-                gameTimer.cancel();
-                gameListener.onGameOver();
-            }
-        }
+    public void moveRight() {
+        submit(InputRecorder.MOVE_RIGHT);
     }
     
-    public void moveLeft() {
-        if (!isPaused && !board.isGameOver()) {
-            board.moveShapeLeft();
-            if (gameListener != null) {
-                gameListener.onBoardUpdated();
+    public void rotate() {
+        submit(InputRecorder.ROTATE);
+    }
+    
+    public void dropDown() {
+        submit(InputRecorder.DROP);
+    }
+    
+    /**
+     * Move the piece down one row, locking it if it has landed. Recorded as
+     * a tick, which has the same effect.
+     */
+    public void softDrop() {
+        submit(SOFT_DROP);
+    }
+    
+    public void pause() {
+        submit(PAUSE);
+    }
+    
+    public void resume() {
+        submit(RESUME);
+    }
+    
+    public void restart() {
+        submit(InputRecorder.RESTART);
+    }
+    
+    /**
+     * Start over with pieces dealt from {@code pieces} from now on, so that
+     * the players of a match can be dealt the same pieces. The journal
+     * records a plain restart.
+     */
+    public void restart(final PieceGenerator pieces) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                Game.this.pieces = pieces;
+                applyRestart();
             }
-        }
+        });
     }
     
-    public void moveRight() {
-        if (!isPaused && !board.isGameOver()) {
-            board.moveShapeRight();
-            if (gameListener != null) {
-                gameListener.onBoardUpdated();
+    /**
+     * Run {@code reader} as the game's writer and return its result, so it
+     * sees the game between two commands and never in the middle of one.
+     * Called from a listener or another command it runs immediately.
+     */
+    public <T> T query(final Supplier<T> reader) {
+        if (writer.get() == Thread.currentThread()) {
+            return reader.get();
+        }
+        
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable command = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(reader.get());
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+        enqueue(command);
+        
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
         }
     }
     
-    public void rotate() {
-        if (!isPaused && !board.isGameOver()) {
-            board.rotateShape();
-            if (gameListener != null) {
-                gameListener.onBoardUpdated();
+    /**
+     * Number of ticks skipped because the command queue was full
+     */
+    public long getDroppedCommandCount() {
+        return droppedCommands.get();
+    }
+    
+    private void submit(int code) {
+        enqueue(inputCommands[code]);
+    }
+    
+    // Inputs and reads are never dropped: while the queue is full the caller
+    // helps empty it, which holds back threads that produce faster than the
+    // game can apply
+    private void enqueue(Runnable command) {
+        while (!commands.offer(command)) {
+            if (writer.get() == Thread.currentThread()) {
+                // The writer cannot wait for itself
+                command.run();
+                return;
             }
+            drain();
+            Thread.yield();
         }
+        drain();
     }
     
-    public void dropDown() {
-        if (!isPaused && !board.isGameOver()) {
-            while (board.moveShapeDown()) {
-                // Keep moving down until it can't move anymore
-            }
-            if (gameListener != null) {
-                gameListener.onBoardUpdated();
-                gameListener.onScoreUpdated(board.getScore());
+    // Become the writer and apply queued commands until the queue is empty.
+    // If another thread is the writer it will apply whatever we queued.
+    private void drain() {
+        Thread current = Thread.currentThread();
+        if (writer.get() == current) {
+            // Queued by a command or listener; the running drain picks it up
+            return;
+        }
+        
+        RuntimeException failure = null;
+        while (!commands.isEmpty() && writer.compareAndSet(null, current)) {
+            try {
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    try {
+                        command.run();
+                    } catch (RuntimeException e) {
+                        // Keep applying the other commands
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                }
+            } finally {
+                writer.set(null);
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
     }
     
-    public void pause() {
-        isPaused = true;
+    // Only called by the writer
+    private void apply(int code) {
+        switch (code) {
+            case InputRecorder.TICK:
+                if (!isPaused && !board.isGameOver()) {
+                    long started = System.nanoTime();
+                    int rows = gravity.advance(started);
+                    if (rows > 0) {
+                        tick(rows);
+                        TICK_NANOS.record(System.nanoTime() - started);
+                    }
+                }
+                break;
+            case InputRecorder.MOVE_LEFT:
+                if (!isPaused && !board.isGameOver()) {
+                    record(InputRecorder.MOVE_LEFT);
+                    board.moveShapeLeft();
+                    fireBoardUpdated();
+                }
+                break;
+            case InputRecorder.MOVE_RIGHT:
+                if (!isPaused && !board.isGameOver()) {
+                    record(InputRecorder.MOVE_RIGHT);
+                    board.moveShapeRight();
+                    fireBoardUpdated();
+                }
+                break;
+            case InputRecorder.ROTATE:
+                if (!isPaused && !board.isGameOver()) {
+                    record(InputRecorder.ROTATE);
+                    board.rotateShape();
+                    fireBoardUpdated();
+                }
+                break;
+            case InputRecorder.DROP:
+                if (!isPaused && !board.isGameOver()) {
+                    record(InputRecorder.DROP);
+                    int linesBefore = board.getLinesCleared();
+                    long placed = board.getPiecesPlaced();
+                    board.hardDrop();
+                    gravity.settle();
+                    if (board.getPiecesPlaced() != placed) {
+                        pieceLocked(linesBefore);
+                    }
+                    if (board.isGameOver()) {
+                        stopTicking();
+                    }
+                    fireBoardUpdated();
+                    fireScoreUpdated(board.getScore());
+                    if (board.isGameOver()) {
+                        fireGameOver();
+                    }
+                }
+                break;
+            case SOFT_DROP:
+                if (!isPaused && !board.isGameOver()) {
+                    tick(1);
+                }
+                break;
+            case PAUSE:
+                if (!isPaused) {
+                    isPaused = true;
+                    // Listeners show the pause like any other change
+                    fireBoardUpdated();
+                }
+                break;
+            case RESUME:
+                if (isPaused) {
+                    // Paused time does not count towards gravity
+                    gravity.restart(System.nanoTime());
+                    isPaused = false;
+                    fireBoardUpdated();
+                }
+                break;
+            case InputRecorder.RESTART:
+                applyRestart();
+                break;
+            default:
+                throw new IllegalStateException("Unknown command " + code);
+        }
     }
     
-    public void resume() {
-        isPaused = false;
+    // Let the piece fall up to the given rows, each recorded as one tick
+    private void tick(int rows) {
+        for (int row = 0; row < rows; row++) {
+            record(InputRecorder.TICK);
+            int linesBefore = board.getLinesCleared();
+            long placed = board.getPiecesPlaced();
+            if (!board.moveShapeDown()) {
+                if (board.getPiecesPlaced() != placed) {
+                    // The next piece starts from rest
+                    gravity.settle();
+                    pieceLocked(linesBefore);
+                }
+                break;
+            }
+        }
+        
+        if (board.isGameOver()) {
+            stopTicking();
+        }
+        
+        fireBoardUpdated();
+        
+        if (board.isGameOver()) {
+            fireGameOver();
+        }
     }
     
-    public void restart() {
-        board = new Board(board.getWidth(), board.getHeight());
+    private void applyRestart() {
+        record(InputRecorder.RESTART);
+        board = new Board(board.getWidth(), board.getHeight(), pieces);
         isPaused = false;
         level = 1;
         linesCleared = 0;
         gameOver = false;
+        gravity.setLevel(1);
+        gravity.restart(System.nanoTime());
         
         // Initialize shapes
-        this.nextShape = Shape.createRandomShape();
         createNewShape();
         
-        if (gameTimer != null) {
-            gameTimer.cancel();
-        }
-        
         start();
         
-        if (gameListener != null) {
-            gameListener.onBoardUpdated();
-            gameListener.onScoreUpdated(0);
-            gameListener.onLevelUpdated(1);
+        fireBoardUpdated();
+        fireScoreUpdated(0);
+        fireLevelUpdated(1);
+    }
+    
+    public void updateLevel(final int newLinesCleared) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                applyLevel(newLinesCleared);
+            }
+        });
+    }
+    
+    // Count the lines the piece that just locked cleared, then tell the lock listener
+    private void pieceLocked(int linesBefore) {
+        int cleared = board.getLinesCleared() - linesBefore;
+        if (cleared > 0) {
+            applyLevel(linesCleared + cleared);
+        }
+        LockListener listener = lockListener;
+        if (listener != null) {
+            listener.onPieceLocked(this, cleared);
         }
     }
     
-    public void updateLevel(int newLinesCleared) {
-        int oldLinesCleared = this.linesCleared;
+    private void applyLevel(int newLinesCleared) {
         this.linesCleared = newLinesCleared;
         
-        // Level up every 10 lines
+        // Level up every 10 lines; the next frame falls at the new speed
         int newLevel = (newLinesCleared / 10) + 1;
         if (newLevel > level) {
             level = newLevel;
-            
-            // Restart timer with new interval
-            if (gameTimer != null) {
-                gameTimer.cancel();
-            }
-            start();
-            
-            if (gameListener != null) {
-                gameListener.onLevelUpdated(level);
-            }
+            gravity.setLevel(level);
+            fireLevelUpdated(level);
+        }
+    }
+    
+    private void record(int input) {
+        InputRecorder recorder = inputRecorder;
+        if (recorder != null) {
+            recorder.record(input);
         }
     }
     
-    // Modify the method that creates a new shape
+    private void fireBoardUpdated() {
+        for (GameListener listener : listeners) {
+            listener.onBoardUpdated();
+        }
+    }
+    
+    private void fireGameOver() {
+        for (GameListener listener : listeners) {
+            listener.onGameOver();
+        }
+    }
+    
+    private void fireScoreUpdated(int score) {
+        for (GameListener listener : listeners) {
+            listener.onScoreUpdated(score);
+        }
+    }
+    
+    private void fireLevelUpdated(int level) {
+        for (GameListener listener : listeners) {
+            listener.onLevelUpdated(level);
+        }
+    }
+    
+    // The board deals both the current and the next shape, so the preview
+    // always matches the piece that actually spawns
     private void createNewShape() {
-        // Move the next shape to be the current shape
-        currentShape = nextShape;
-        
-        // Create a new next shape
-        nextShape = Shape.createRandomShape();
-        
-        // Position the current shape at the top center of the board
-        currentShape.setPosition(board.getWidth() / 2 - currentShape.getWidth() / 2, 0);
-        
-        // Set the current shape on the board
-        board.setCurrentShape(currentShape);
+        board.createNewShape();
         
         // Check if game is over
-        if (!board.isValidPosition(currentShape)) {
+        if (board.isGameOver()) {
             gameOver = true;
         }
     }
 
     // Add a getter for the next shape
     public Shape getNextShape() {
-        return nextShape;
+        return board.getNextShape();
     }
     
     // Add a getter for the current shape
     public Shape getCurrentShape() {
-        return currentShape;
+        return board.getCurrentShape();
+    }
+
+    public PieceGenerator getPieceGenerator() {
+        return pieces;
     }
 
     public Board getBoard() {
@@ -209,14 +588,57 @@ public class Game {
         return level;
     }
     
+    /**
+     * Lines cleared in this game as pieces lock, or as last set through
+     * {@link #updateLevel}
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+    
     public boolean isGameOver() {
         return gameOver || board.isGameOver();
     }
     
     public void shutdown() {
-        if (gameTimer != null) {
-            gameTimer.cancel();
-            gameTimer = null;
+        stopTicking();
+    }
+    
+    /**
+     * Whether the game is registered for ticks
+     */
+    public boolean isTicking() {
+        return tickTimeout != null;
+    }
+    
+    /**
+     * Number of games in this process that are registered for ticks, that
+     * is started and neither shut down nor over
+     */
+    public static int getTickingCount() {
+        return TICKING.get();
+    }
+    
+    /**
+     * How fast pieces fall at a level
+     */
+    public static double rowsPerSecond(int level) {
+        return Gravity.rowsPerSecond(level);
+    }
+    
+    /**
+     * Nanoseconds taken by each tick that moved a piece, across every game
+     * in this process, listeners included
+     */
+    public static Histogram getTickDurations() {
+        return TICK_NANOS;
+    }
+    
+    private synchronized void stopTicking() {
+        if (tickTimeout != null) {
+            tickTimeout.cancel();
+            tickTimeout = null;
+            TICKING.decrementAndGet();
         }
     }
 }
\ No newline at end of file
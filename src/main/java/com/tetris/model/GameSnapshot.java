@@ -0,0 +1,145 @@
+package com.tetris.model;
+
+import com.tetris.util.TickScheduler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact byte form of a {@link Game}, used to park idle games.
+ *
+ * A snapshot holds the locked cells packed at three bits each, the falling
+ * and next piece, score, lines, level and the exact position of the piece
+ * generator, so a restored game deals the same pieces the original would
+ * have. A 10x20 game takes 129 bytes.
+ *
+ * Layout (big-endian): format u8, flags u8 (bit 0 board over, bit 1 paused),
+ * width u16, height u16, distribution u8, seed i64, generator state i64,
+ * chunk position u16, piece type i8, rotation u8, piece x i16, piece y i16,
+ * next type i8, score i32, board lines i32, pieces placed i64, level u16,
+ * game lines i32, then the cells as type + 1, row-major, LSB first.
+ */
+public final class GameSnapshot {
+
+    static final int FORMAT = 1;
+    private static final int BITS_PER_CELL = 3;
+    
+    private GameSnapshot() {
+    }
+    
+    /**
+     * Capture a game that is not running; stop its ticks first
+     *
+     * @throws IllegalArgumentException if the game's piece generator cannot
+     *         report its position
+     */
+    public static byte[] capture(Game game) {
+        if (!(game.getPieceGenerator() instanceof ChunkedPieceGenerator)) {
+            throw new IllegalArgumentException("Cannot snapshot a game using "
+                    + game.getPieceGenerator().getClass().getName());
+        }
+        ChunkedPieceGenerator pieces = (ChunkedPieceGenerator) game.getPieceGenerator();
+        Board board = game.getBoard();
+        int width = board.getWidth();
+        int height = board.getHeight();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (width * height * BITS_PER_CELL + 7) / 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeByte((board.isGameOver() ? 1 : 0) | (game.isPaused() ? 2 : 0));
+            out.writeShort(width);
+            out.writeShort(height);
+            out.writeByte(pieces.getDistribution().ordinal());
+            out.writeLong(pieces.getSeed());
+            out.writeLong(pieces.getChunkState());
+            out.writeShort(pieces.getChunkPosition());
+            out.writeByte(board.getPieceType());
+            out.writeByte(board.getPieceRotation());
+            out.writeShort(board.getPieceX());
+            out.writeShort(board.getPieceY());
+            out.writeByte(board.getNextType());
+            out.writeInt(board.getScore());
+            out.writeInt(board.getLinesCleared());
+            out.writeLong(board.getPiecesPlaced());
+            out.writeShort(game.getLevel());
+            out.writeInt(game.getLinesCleared());
+            
+            int bits = 0;
+            int count = 0;
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    bits |= (board.lockedTypeAt(col, row) + 1) << count;
+                    count += BITS_PER_CELL;
+                    if (count >= 8) {
+                        out.writeByte(bits);
+                        bits >>>= 8;
+                        count -= 8;
+                    }
+                }
+            }
+            if (count > 0) {
+                out.writeByte(bits);
+            }
+        } catch (IOException e) {
+            // Writing to memory cannot fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Rebuild a captured game. The game is not started; call
+     * {@link Game#start()} to resume its ticks.
+     *
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public static Game restore(byte[] snapshot, TickScheduler scheduler) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            int format = in.readUnsignedByte();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unknown snapshot format " + format);
+            }
+            int flags = in.readUnsignedByte();
+            int width = in.readUnsignedShort();
+            int height = in.readUnsignedShort();
+            PieceGenerator.Distribution distribution = PieceGenerator.Distribution.values()[in.readUnsignedByte()];
+            long seed = in.readLong();
+            long chunkState = in.readLong();
+            int chunkPosition = in.readUnsignedShort();
+            int pieceType = in.readByte();
+            int pieceRotation = in.readUnsignedByte();
+            int pieceX = in.readShort();
+            int pieceY = in.readShort();
+            int nextType = in.readByte();
+            int score = in.readInt();
+            int boardLines = in.readInt();
+            long piecesPlaced = in.readLong();
+            int level = in.readUnsignedShort();
+            int gameLines = in.readInt();
+            
+            byte[] cellTypes = new byte[width * height];
+            int bits = 0;
+            int count = 0;
+            for (int cell = 0; cell < cellTypes.length; cell++) {
+                if (count < BITS_PER_CELL) {
+                    bits |= in.readUnsignedByte() << count;
+                    count += 8;
+                }
+                cellTypes[cell] = (byte) (bits & 0x7);
+                bits >>>= BITS_PER_CELL;
+                count -= BITS_PER_CELL;
+            }
+            
+            ChunkedPieceGenerator pieces = (ChunkedPieceGenerator) PieceGenerator.create(distribution, seed);
+            pieces.restore(chunkState, chunkPosition);
+            Board board = new Board(width, height, pieces);
+            board.restore(cellTypes, pieceType, pieceRotation, pieceX, pieceY, nextType,
+                    score, boardLines, piecesPlaced, (flags & 1) != 0);
+            return new Game(board, pieces, scheduler, level, gameLines, (flags & 2) != 0);
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt game snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.tetris.model;
+
+/**
+ * Turns elapsed time into rows of gravity for one game.
+ *
+ * Speed is measured in fractions of a row per 60 Hz frame, kept in fixed
+ * point as {@value #UNITS_PER_ROW} units per row, so slow levels fall a
+ * fraction of a row each frame and the fastest ones fall the whole board
+ * height at once (20G) without changing how often the game is stepped.
+ * Time is taken from the caller's {@link System#nanoTime} readings and
+ * used up in whole frames, so how often or how late {@link #advance} is
+ * called does not change the speed. A gap longer than
+ * {@value #MAX_CATCH_UP_FRAMES} frames, such as a GC pause, is dropped
+ * rather than made up in a burst.
+ *
+ * Not thread safe; the game's writer owns it.
+ */
+final class Gravity {
+    
+    static final long FRAME_NANOS = 1_000_000_000L / 60;
+    static final int UNITS_PER_ROW = 1 << 16;
+    // Falls the full height of a standard board every frame
+    static final int MAX_ROWS_PER_FRAME = 20;
+    static final int MAX_CATCH_UP_FRAMES = 4;
+    private static final int MAX_LEVEL = 20;
+    
+    // Units per frame for levels 1 to MAX_LEVEL, at index level - 1
+    private static final int[] SPEEDS = new int[MAX_LEVEL];
+    
+    static {
+        // Guideline curve: seconds per row = (0.8 - (level - 1) * 0.007) ^ (level - 1)
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            double secondsPerRow = Math.pow(0.8 - (level - 1) * 0.007, level - 1);
+            long units = Math.round(UNITS_PER_ROW / (secondsPerRow * 60));
+            SPEEDS[level - 1] = (int) Math.max(1, Math.min(units, (long) MAX_ROWS_PER_FRAME * UNITS_PER_ROW));
+        }
+    }
+    
+    private int speed;
+    private long lastNanos;
+    // Time not yet used up as whole frames
+    private long pendingNanos;
+    // Fraction of a row fallen but not yet applied
+    private long pendingUnits;
+    
+    Gravity(int level, long now) {
+        setLevel(level);
+        restart(now);
+    }
+    
+    /**
+     * Units per frame at a level; levels past the table keep its last speed
+     */
+    static int speedOf(int level) {
+        return SPEEDS[Math.max(1, Math.min(level, MAX_LEVEL)) - 1];
+    }
+    
+    static double rowsPerSecond(int level) {
+        return (double) speedOf(level) * 60 / UNITS_PER_ROW;
+    }
+    
+    void setLevel(int level) {
+        speed = speedOf(level);
+    }
+    
+    /**
+     * Start counting from {@code now} with nothing pending, for example after
+     * a pause
+     */
+    void restart(long now) {
+        lastNanos = now;
+        pendingNanos = 0;
+        pendingUnits = 0;
+    }
+    
+    /**
+     * Drop the fraction of a row gathered so far, so a new piece starts
+     * from rest
+     */
+    void settle() {
+        pendingUnits = 0;
+    }
+    
+    /**
+     * Account for the time up to {@code now}
+     *
+     * @return the whole rows to fall now
+     */
+    int advance(long now) {
+        long elapsed = now - lastNanos;
+        lastNanos = now;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        pendingNanos += Math.min(elapsed, MAX_CATCH_UP_FRAMES * FRAME_NANOS);
+        long frames = pendingNanos / FRAME_NANOS;
+        pendingNanos -= frames * FRAME_NANOS;
+        
+        pendingUnits += frames * speed;
+        long rows = pendingUnits / UNITS_PER_ROW;
+        pendingUnits -= rows * UNITS_PER_ROW;
+        return (int) Math.min(rows, MAX_CATCH_UP_FRAMES * MAX_ROWS_PER_FRAME);
+    }
+}
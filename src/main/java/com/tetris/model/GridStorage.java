@@ -0,0 +1,140 @@
+package com.tetris.model;
+
+import java.util.Arrays;
+
+/**
+ * Cell storage that keeps one RGB color per cell in an {@code int[height][width]} grid.
+ *
+ * Rows are reached through a {@link RowIndex}, so clearing lines moves row
+ * references instead of cells, and a count of filled cells per row tells
+ * whether a row is full without scanning it.
+ */
+class GridStorage extends CellStorage {
+    // Rows by storage slot
+    private final int[][] grid;
+    private final int[] filled;
+    private final long[] hashes;
+    private final RowIndex rows;
+    
+    GridStorage(int width, int height) {
+        super(width, height);
+        this.grid = new int[height][width];
+        this.filled = new int[height];
+        this.hashes = new long[height];
+        this.rows = new RowIndex(height);
+    }
+    
+    @Override
+    boolean fits(Shape shape) {
+        for (Block block : shape.getBlocks()) {
+            int x = block.getX();
+            int y = block.getY();
+            
+            // Check if the block is out of bounds
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return false;
+            }
+            
+            // Check if the block overlaps with existing blocks on the grid
+            if (grid[rows.slot(y)][x] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    boolean fits(int type, int rotation, int pivotX, int pivotY) {
+        for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+            int x = pivotX + Tetromino.dx(type, rotation, cell);
+            int y = pivotY + Tetromino.dy(type, rotation, cell);
+            
+            if (x < 0 || x >= width || y < 0 || y >= height || grid[rows.slot(y)][x] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    void place(int type, int rotation, int pivotX, int pivotY) {
+        int color = Tetromino.color(type);
+        for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+            int x = pivotX + Tetromino.dx(type, rotation, cell);
+            int y = pivotY + Tetromino.dy(type, rotation, cell);
+            
+            // Only place blocks that are within the grid
+            if (y >= 0 && y < height && x >= 0 && x < width) {
+                set(rows.slot(y), x, color);
+            }
+        }
+    }
+    
+    @Override
+    int clearFullRows(int top, int bottom) {
+        long full = 0;
+        for (int row = top; row <= bottom; row++) {
+            if (filled[rows.slot(row)] == width) {
+                full |= 1L << (row - top);
+            }
+        }
+        
+        int cleared = rows.remove(top, bottom, full);
+        // The slots of the cleared rows are now the top rows
+        for (int row = 0; row < cleared; row++) {
+            int slot = rows.slot(row);
+            Arrays.fill(grid[slot], 0);
+            filled[slot] = 0;
+            hashes[slot] = 0;
+        }
+        return cleared;
+    }
+    
+    @Override
+    void pushUp(int count, int hole) {
+        rows.raise(count);
+        int color = Tetromino.color(Board.GARBAGE_TYPE);
+        // The slots of the dropped rows are now the bottom rows
+        for (int row = height - count; row < height; row++) {
+            int slot = rows.slot(row);
+            for (int x = 0; x < width; x++) {
+                set(slot, x, x == hole ? 0 : color);
+            }
+        }
+    }
+    
+    @Override
+    int colorAt(int x, int y) {
+        return grid[rows.slot(y)][x];
+    }
+    
+    @Override
+    boolean isOccupied(int x, int y) {
+        return grid[rows.slot(y)][x] != 0;
+    }
+    
+    @Override
+    int typeAt(int x, int y) {
+        int color = grid[rows.slot(y)][x];
+        return color == 0 ? Board.NO_PIECE : Tetromino.typeOfColor(color);
+    }
+    
+    @Override
+    void setType(int x, int y, int type) {
+        set(rows.slot(y), x, type == Board.NO_PIECE ? 0 : Tetromino.color(type));
+    }
+    
+    private void set(int slot, int x, int color) {
+        int[] row = grid[slot];
+        if ((row[x] == 0) != (color == 0)) {
+            filled[slot] += color == 0 ? -1 : 1;
+            hashes[slot] ^= columnKey(x);
+        }
+        row[x] = color;
+    }
+    
+    @Override
+    long rowHash(int y) {
+        return hashes[rows.slot(y)];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.tetris.model;
+
+/**
+ * Source of the piece types a board deals, one per game.
+ *
+ * A generator is created from an explicit seed, so a game is fully
+ * determined by its seed and its inputs. Generators are not thread-safe;
+ * they are owned by a single board.
+ */
+public interface PieceGenerator {
+
+    /**
+     * How piece types are distributed
+     */
+    enum Distribution {
+        // Each piece is independent of the previous ones
+        UNIFORM,
+        // Pieces are dealt from shuffled bags holding one of each type
+        SEVEN_BAG
+    }
+    
+    /**
+     * The next piece type, between 0 and {@link Tetromino#TYPES} - 1
+     */
+    int next();
+    
+    /**
+     * The seed the generator was created from
+     */
+    long getSeed();
+    
+    Distribution getDistribution();
+    
+    static PieceGenerator create(Distribution distribution, long seed) {
+        switch (distribution) {
+            case SEVEN_BAG:
+                return new SevenBagGenerator(seed);
+            case UNIFORM:
+            default:
+                return new UniformGenerator(seed);
+        }
+    }
+    
+    static PieceGenerator uniform(long seed) {
+        return new UniformGenerator(seed);
+    }
+    
+    static PieceGenerator sevenBag(long seed) {
+        return new SevenBagGenerator(seed);
+    }
+}
@@ -0,0 +1,226 @@
+package com.tetris.model;
+
+import com.tetris.util.SplitMix64;
+import com.tetris.util.TickScheduler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A versus match between two or more games that attack each other with
+ * garbage rows.
+ *
+ * When a piece locks and clears lines, the sender first cancels garbage
+ * waiting in its own inbox and sends what is left to the next opponent
+ * still in play, taking turns around the room. Inboxes are a single atomic
+ * row count per player: senders add to it from their own writer and never
+ * touch the target's game, and the target takes the whole count the next
+ * time one of its pieces locks without clearing a line, so no game ever
+ * waits on another. The games keep ticking on their scheduler like any
+ * other, so a room costs no threads of its own.
+ *
+ * Garbage is not an input, so the journal of a room game does not replay it.
+ */
+public final class Room {
+    
+    public static final int MIN_PLAYERS = 2;
+    // Rows sent for clearing 0 to 4 lines at once
+    private static final int[] ATTACK = {0, 0, 1, 2, 4};
+    
+    private final List<Player> players;
+    private final AtomicInteger remaining;
+    private final AtomicReference<Player> winner = new AtomicReference<>();
+    
+    /**
+     * One game in the room and its garbage inbox
+     */
+    public static final class Player implements Game.LockListener {
+        private final Room room;
+        private final int seat;
+        private final Game game;
+        private final AtomicInteger incoming = new AtomicInteger();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger received = new AtomicInteger();
+        private volatile boolean out;
+        
+        // Only touched by this player's writer
+        private long holes;
+        private int nextTarget;
+        
+        private Player(Room room, int seat, int seats, Game game, long seed) {
+            this.room = room;
+            this.seat = seat;
+            this.game = game;
+            this.holes = seed;
+            this.nextTarget = (seat + 1) % seats;
+        }
+        
+        @Override
+        public void onPieceLocked(Game game, int linesCleared) {
+            if (out) {
+                return;
+            }
+            int attack = ATTACK[Math.min(linesCleared, ATTACK.length - 1)];
+            if (attack > 0) {
+                attack -= cancel(attack);
+                if (attack > 0) {
+                    room.send(this, attack);
+                }
+            } else if (linesCleared == 0) {
+                int rows = incoming.getAndSet(0);
+                if (rows > 0) {
+                    holes = SplitMix64.mix(holes + rows);
+                    Board board = game.getBoard();
+                    board.addGarbage(rows, (int) Long.remainderUnsigned(holes, board.getWidth()));
+                    received.addAndGet(rows);
+                }
+            }
+            if (game.getBoard().isGameOver()) {
+                room.eliminate(this);
+            }
+        }
+        
+        // Take up to the given rows out of the inbox
+        private int cancel(int rows) {
+            while (true) {
+                int pending = incoming.get();
+                int cancelled = Math.min(pending, rows);
+                if (cancelled == 0 || incoming.compareAndSet(pending, pending - cancelled)) {
+                    return cancelled;
+                }
+            }
+        }
+        
+        public int getSeat() {
+            return seat;
+        }
+        
+        public Game getGame() {
+            return game;
+        }
+        
+        /**
+         * Garbage rows waiting to rise into this player's board
+         */
+        public int getIncoming() {
+            return incoming.get();
+        }
+        
+        /**
+         * Garbage rows this player has sent to opponents
+         */
+        public int getSent() {
+            return sent.get();
+        }
+        
+        /**
+         * Garbage rows that have risen into this player's board
+         */
+        public int getReceived() {
+            return received.get();
+        }
+        
+        public boolean isOut() {
+            return out;
+        }
+    }
+    
+    /**
+     * Seat the given games in order. Their lock listeners are replaced.
+     *
+     * @param seed decides where the holes in each player's garbage fall
+     */
+    public Room(List<Game> games, long seed) {
+        if (games.size() < MIN_PLAYERS) {
+            throw new IllegalArgumentException("A room needs at least " + MIN_PLAYERS + " players: " + games.size());
+        }
+        List<Player> seats = new ArrayList<>(games.size());
+        for (int seat = 0; seat < games.size(); seat++) {
+            Player player = new Player(this, seat, games.size(), games.get(seat), SplitMix64.valueAt(seed, seat));
+            games.get(seat).setLockListener(player);
+            seats.add(player);
+        }
+        this.players = Collections.unmodifiableList(seats);
+        this.remaining = new AtomicInteger(seats.size());
+    }
+    
+    /**
+     * A room of new games on {@code scheduler}, all dealt the same pieces
+     * from {@code seed}. The games are not started.
+     */
+    public static Room create(int players, int width, int height, TickScheduler scheduler, long seed) {
+        List<Game> games = new ArrayList<>(players);
+        for (int seat = 0; seat < players; seat++) {
+            games.add(new Game(width, height, scheduler, PieceGenerator.sevenBag(seed)));
+        }
+        return new Room(games, seed);
+    }
+    
+    public void start() {
+        for (Player player : players) {
+            player.game.start();
+        }
+    }
+    
+    public void shutdown() {
+        for (Player player : players) {
+            player.game.shutdown();
+        }
+    }
+    
+    public List<Player> getPlayers() {
+        return players;
+    }
+    
+    /**
+     * Players still in play
+     */
+    public int getRemaining() {
+        return remaining.get();
+    }
+    
+    /**
+     * The last player left in play, or null while the match is on or when
+     * the last two went out together
+     */
+    public Player getWinner() {
+        return winner.get();
+    }
+    
+    public boolean isFinished() {
+        return remaining.get() <= 1;
+    }
+    
+    // Called by the sender's writer
+    private void send(Player from, int rows) {
+        int seats = players.size();
+        for (int step = 0; step < seats; step++) {
+            Player target = players.get(from.nextTarget);
+            from.nextTarget = (from.nextTarget + 1) % seats;
+            if (target != from && !target.out) {
+                target.incoming.addAndGet(rows);
+                from.sent.addAndGet(rows);
+                return;
+            }
+        }
+    }
+    
+    // Called by the eliminated player's writer
+    private void eliminate(Player player) {
+        if (player.out) {
+            return;
+        }
+        player.out = true;
+        if (remaining.decrementAndGet() == 1) {
+            for (Player candidate : players) {
+                if (!candidate.out) {
+                    winner.compareAndSet(null, candidate);
+                    // The match is over, so the winner's game stops too
+                    candidate.game.shutdown();
+                }
+            }
+        }
+    }
+}
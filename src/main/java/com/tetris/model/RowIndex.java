@@ -0,0 +1,109 @@
+package com.tetris.model;
+
+/**
+ * Maps the rows of a board, top to bottom, to the storage slots holding their
+ * cells, so rows can be moved without copying their contents.
+ *
+ * The slots are kept in a ring. Removing full rows turns the ring back by the
+ * number of rows removed, which lets every row above them fall into place at
+ * once; only the rows between and below the removed ones are written again,
+ * and the freed slots come back as the empty rows at the top. Clearing lines
+ * near the floor therefore costs a handful of index writes however tall the
+ * board is. Raising the rows turns the ring the other way, and the slots of
+ * the top rows come back at the bottom.
+ */
+final class RowIndex {
+
+    // Longest run of rows that one removal may cover
+    static final int MAX_SPAN = Long.SIZE;
+    
+    private final int[] ring;
+    // Ring position of row 0
+    private int base;
+    // Slots removed or kept by the last removal; the board has a single writer
+    private final int[] scratch = new int[MAX_SPAN];
+    
+    RowIndex(int rows) {
+        this.ring = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            ring[row] = row;
+        }
+    }
+    
+    /**
+     * Storage slot of a row, 0 being the top row
+     */
+    int slot(int row) {
+        int position = base + row;
+        return ring[position < ring.length ? position : position - ring.length];
+    }
+    
+    /**
+     * Remove rows between {@code top} and {@code bottom}, letting the rows
+     * above fall. Bit {@code i} of {@code removed} marks row {@code top + i}.
+     * The freed slots become rows 0 to {@code bitCount(removed) - 1}; their
+     * contents are left for the caller to clear.
+     *
+     * @return the number of rows removed
+     */
+    int remove(int top, int bottom, long removed) {
+        int count = Long.bitCount(removed);
+        if (count == 0) {
+            return 0;
+        }
+        if (bottom - top >= MAX_SPAN || top < 0 || bottom >= ring.length) {
+            throw new IllegalArgumentException("Rows " + top + "-" + bottom + " cannot be removed together");
+        }
+        
+        // Freed slots first, then the surviving rows of the span in order
+        int freed = 0;
+        int kept = count;
+        for (int row = top; row <= bottom; row++) {
+            if ((removed & (1L << (row - top))) != 0) {
+                scratch[freed++] = slot(row);
+            } else {
+                scratch[kept++] = slot(row);
+            }
+        }
+        
+        int rows = ring.length;
+        int oldBase = base;
+        base = oldBase >= count ? oldBase - count : oldBase - count + rows;
+        
+        // Rows below the span stay where they are, so their entries move
+        // back by the turn of the ring. Each target was read before.
+        for (int row = bottom + 1; row < rows; row++) {
+            int from = oldBase + row;
+            int to = from - count;
+            ring[to < rows ? to : to - rows] = ring[from < rows ? from : from - rows];
+        }
+        
+        // The survivors of the span end at its bottom row, and the freed
+        // slots become the top rows
+        for (int i = count; i < kept; i++) {
+            set(bottom - (kept - 1 - i), scratch[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            set(i, scratch[i]);
+        }
+        return count;
+    }
+    
+    /**
+     * Move every row up by {@code count} rows. The slots of the top
+     * {@code count} rows become the bottom rows; their contents are left for
+     * the caller to replace.
+     */
+    void raise(int count) {
+        if (count < 0 || count > ring.length) {
+            throw new IllegalArgumentException("Cannot raise " + count + " of " + ring.length + " rows");
+        }
+        int position = base + count;
+        base = position < ring.length ? position : position - ring.length;
+    }
+    
+    private void set(int row, int slot) {
+        int position = base + row;
+        ring[position < ring.length ? position : position - ring.length] = slot;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tetris.model;
+
+/**
+ * Deals pieces from shuffled bags that hold one of each of the seven types,
+ * so no type is ever more than twelve pieces away
+ */
+final class SevenBagGenerator extends ChunkedPieceGenerator {
+
+    // Nine bags per chunk
+    private static final int CHUNK_SIZE = Tetromino.TYPES * 9;
+    
+    SevenBagGenerator(long seed) {
+        super(seed, CHUNK_SIZE);
+    }
+    
+    @Override
+    public Distribution getDistribution() {
+        return Distribution.SEVEN_BAG;
+    }
+    
+    @Override
+    protected void fill(byte[] chunk) {
+        for (int bag = 0; bag < chunk.length; bag += Tetromino.TYPES) {
+            for (int type = 0; type < Tetromino.TYPES; type++) {
+                chunk[bag + type] = (byte) type;
+            }
+            // Fisher-Yates shuffle of the bag
+            for (int i = Tetromino.TYPES - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                byte swap = chunk[bag + i];
+                chunk[bag + i] = chunk[bag + j];
+                chunk[bag + j] = swap;
+            }
+        }
+    }
+}
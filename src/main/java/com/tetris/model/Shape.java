@@ -1,11 +1,14 @@
 package com.tetris.model;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Represents a Tetris shape (tetromino)
  */
 public class Shape {
     private Block[] blocks;
     private int shapeType;
+    private int rotation;
     
     // Shape types
     public static final int I_SHAPE = 0;
@@ -114,6 +117,7 @@ public class Shape {
             // Rotate 90 degrees clockwise: (x, y) -> (-y, x)
             block.setPosition(centerX - y, centerY + x);
         }
+        rotation = (rotation + 1) % 4;
     }
     
     public void move(int deltaX, int deltaY) {
@@ -146,6 +150,7 @@ public class Shape {
         for (int i = 0; i < blocks.length; i++) {
             copy.blocks[i].setPosition(blocks[i].getX(), blocks[i].getY());
         }
+        copy.rotation = rotation;
         
         return copy;
     }
@@ -158,6 +163,13 @@ public class Shape {
         return shapeType;
     }
     
+    /**
+     * Number of clockwise quarter turns applied since creation (0-3)
+     */
+    public int getRotation() {
+        return rotation;
+    }
+    
     public int getWidth() {
         int minX = Integer.MAX_VALUE;
         int maxX = Integer.MIN_VALUE;
@@ -182,9 +194,26 @@ public class Shape {
         return maxY - minY + 1;
     }
     
-    // Static method to create a random shape
+    // Static method to create a random shape. Games deal their pieces from a
+    // seeded PieceGenerator instead.
     public static Shape createRandomShape() {
-        int shapeType = (int) (Math.random() * 7); // 7 different shapes
-        return new Shape(shapeType);
+        return new Shape(randomShapeType());
+    }
+    
+    public static int randomShapeType() {
+        return ThreadLocalRandom.current().nextInt(7); // 7 different shapes
+    }
+    
+    /**
+     * Build a shape in the given orientation with its pivot block (block 1) at (x, y)
+     */
+    public static Shape at(int shapeType, int rotation, int x, int y) {
+        Shape shape = new Shape(shapeType);
+        for (int i = 0; i < rotation; i++) {
+            shape.rotate();
+        }
+        Block pivot = shape.blocks[1];
+        shape.move(x - pivot.getX(), y - pivot.getY());
+        return shape;
     }
 }
\ No newline at end of file
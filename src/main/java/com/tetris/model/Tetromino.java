@@ -0,0 +1,147 @@
+package com.tetris.model;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed geometry for the seven tetrominoes in all four orientations.
+ *
+ * Cells are stored as offsets from the pivot block (block 1 of a {@link Shape}),
+ * which is the block {@link Shape#rotate()} turns around, so a piece is fully
+ * described by its type, rotation and pivot position. The tables are built by
+ * rotating real {@link Shape} instances, so they always agree with the shape
+ * rules.
+ */
+public final class Tetromino {
+
+    public static final int TYPES = 7;
+    public static final int ROTATIONS = 4;
+    public static final int CELLS = 4;
+    
+    // Cell offsets from the pivot, indexed by (type * ROTATIONS + rotation) * CELLS + cell
+    private static final int[] DX = new int[TYPES * ROTATIONS * CELLS];
+    private static final int[] DY = new int[TYPES * ROTATIONS * CELLS];
+    
+    // Bounding box of each orientation relative to the pivot
+    private static final int[] MIN_DX = new int[TYPES * ROTATIONS];
+    private static final int[] MAX_DX = new int[TYPES * ROTATIONS];
+    private static final int[] MIN_DY = new int[TYPES * ROTATIONS];
+    private static final int[] MAX_DY = new int[TYPES * ROTATIONS];
+    
+    // One bit per occupied column for each row of the bounding box, bit 0 = MIN_DX
+    private static final long[][] ROW_MASKS = new long[TYPES * ROTATIONS][];
+    
+    // Lowest cell offset in each column of the bounding box, column 0 = MIN_DX
+    private static final int[][] BOTTOM_DY = new int[TYPES * ROTATIONS][];
+    
+    private static final int[] COLORS = new int[TYPES];
+    
+    static {
+        for (int type = 0; type < TYPES; type++) {
+            Shape shape = new Shape(type);
+            COLORS[type] = shape.getBlocks()[0].getColor();
+            
+            for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+                int orientation = type * ROTATIONS + rotation;
+                Block[] blocks = shape.getBlocks();
+                Block pivot = blocks[1];
+                
+                int minDx = Integer.MAX_VALUE, maxDx = Integer.MIN_VALUE;
+                int minDy = Integer.MAX_VALUE, maxDy = Integer.MIN_VALUE;
+                for (int cell = 0; cell < CELLS; cell++) {
+                    int dx = blocks[cell].getX() - pivot.getX();
+                    int dy = blocks[cell].getY() - pivot.getY();
+                    DX[orientation * CELLS + cell] = dx;
+                    DY[orientation * CELLS + cell] = dy;
+                    minDx = Math.min(minDx, dx);
+                    maxDx = Math.max(maxDx, dx);
+                    minDy = Math.min(minDy, dy);
+                    maxDy = Math.max(maxDy, dy);
+                }
+                MIN_DX[orientation] = minDx;
+                MAX_DX[orientation] = maxDx;
+                MIN_DY[orientation] = minDy;
+                MAX_DY[orientation] = maxDy;
+                
+                long[] masks = new long[maxDy - minDy + 1];
+                for (int cell = 0; cell < CELLS; cell++) {
+                    masks[DY[orientation * CELLS + cell] - minDy] |= 1L << (DX[orientation * CELLS + cell] - minDx);
+                }
+                ROW_MASKS[orientation] = masks;
+                
+                int[] bottoms = new int[maxDx - minDx + 1];
+                Arrays.fill(bottoms, Integer.MIN_VALUE);
+                for (int cell = 0; cell < CELLS; cell++) {
+                    int column = DX[orientation * CELLS + cell] - minDx;
+                    bottoms[column] = Math.max(bottoms[column], DY[orientation * CELLS + cell]);
+                }
+                BOTTOM_DY[orientation] = bottoms;
+                
+                shape.rotate();
+            }
+        }
+    }
+    
+    private Tetromino() {
+    }
+    
+    public static boolean isValidType(int type) {
+        return type >= 0 && type < TYPES;
+    }
+    
+    public static int dx(int type, int rotation, int cell) {
+        return DX[(type * ROTATIONS + rotation) * CELLS + cell];
+    }
+    
+    public static int dy(int type, int rotation, int cell) {
+        return DY[(type * ROTATIONS + rotation) * CELLS + cell];
+    }
+    
+    public static int minDx(int type, int rotation) {
+        return MIN_DX[type * ROTATIONS + rotation];
+    }
+    
+    public static int maxDx(int type, int rotation) {
+        return MAX_DX[type * ROTATIONS + rotation];
+    }
+    
+    public static int minDy(int type, int rotation) {
+        return MIN_DY[type * ROTATIONS + rotation];
+    }
+    
+    public static int maxDy(int type, int rotation) {
+        return MAX_DY[type * ROTATIONS + rotation];
+    }
+    
+    /**
+     * Occupied columns of one row of the piece's bounding box, with bit 0 at
+     * the leftmost column of the box. Row 0 is the top row ({@link #minDy}).
+     */
+    public static long rowMask(int type, int rotation, int row) {
+        return ROW_MASKS[type * ROTATIONS + rotation][row];
+    }
+    
+    /**
+     * Offset from the pivot of the lowest cell in one column of the piece's
+     * bounding box, with column 0 at {@link #minDx}. Every column of a
+     * tetromino holds at least one cell.
+     */
+    public static int bottomDy(int type, int rotation, int column) {
+        return BOTTOM_DY[type * ROTATIONS + rotation][column];
+    }
+    
+    public static int color(int type) {
+        return COLORS[type];
+    }
+    
+    /**
+     * Map an RGB block color back to its piece type, or -1 for an unknown color
+     */
+    public static int typeOfColor(int color) {
+        for (int type = 0; type < TYPES; type++) {
+            if (COLORS[type] == color) {
+                return type;
+            }
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.tetris.model;
+
+/**
+ * Deals every piece type with equal probability, independently of earlier pieces
+ */
+final class UniformGenerator extends ChunkedPieceGenerator {
+
+    private static final int CHUNK_SIZE = 64;
+    
+    UniformGenerator(long seed) {
+        super(seed, CHUNK_SIZE);
+    }
+    
+    @Override
+    public Distribution getDistribution() {
+        return Distribution.UNIFORM;
+    }
+    
+    @Override
+    protected void fill(byte[] chunk) {
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) random.nextInt(Tetromino.TYPES);
+        }
+    }
+}
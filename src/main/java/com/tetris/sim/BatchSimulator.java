@@ -0,0 +1,158 @@
+package com.tetris.sim;
+
+import com.tetris.util.SplitMix64;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ * Plays large numbers of independent games across all cores with fork/join.
+ *
+ * Game {@code i} of a batch uses a seed derived from the batch seed and
+ * {@code i}, so a batch gives the same totals however the work is split and
+ * any single game can be replayed on its own with {@link #gameSeed}.
+ */
+public class BatchSimulator {
+
+    // Below this many games a task runs its games instead of splitting
+    private static final int SEQUENTIAL_GAMES = 64;
+    
+    private final ForkJoinPool pool;
+    private final int width;
+    private final int height;
+    private final long maxFrames;
+    private final LongFunction<InputSource> inputs;
+    
+    /**
+     * @param inputs creates the input source of a game from the game's seed
+     */
+    public BatchSimulator(int width, int height, long maxFrames, LongFunction<InputSource> inputs) {
+        this(ForkJoinPool.commonPool(), width, height, maxFrames, inputs);
+    }
+    
+    public BatchSimulator(ForkJoinPool pool, int width, int height, long maxFrames, LongFunction<InputSource> inputs) {
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+        this.maxFrames = maxFrames;
+        this.inputs = inputs;
+    }
+    
+    /**
+     * Totals for a batch of games
+     */
+    public static final class Totals {
+        private long games;
+        private long frames;
+        private long pieces;
+        private long lines;
+        private long score;
+        private long elapsedNanos;
+        
+        private void add(SimulationResult result) {
+            games++;
+            frames += result.getFrames();
+            pieces += result.getPieces();
+            lines += result.getLines();
+            score += result.getScore();
+        }
+        
+        private void add(Totals other) {
+            games += other.games;
+            frames += other.frames;
+            pieces += other.pieces;
+            lines += other.lines;
+            score += other.score;
+        }
+        
+        public long getGames() {
+            return games;
+        }
+        
+        public long getFrames() {
+            return frames;
+        }
+        
+        public long getPieces() {
+            return pieces;
+        }
+        
+        public long getLines() {
+            return lines;
+        }
+        
+        public long getScore() {
+            return score;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public double getGamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games / (elapsedNanos / 1e9);
+        }
+        
+        public double getPiecesPerSecond() {
+            return elapsedNanos == 0 ? 0 : pieces / (elapsedNanos / 1e9);
+        }
+    }
+    
+    /**
+     * Play {@code games} games and return their totals and throughput
+     */
+    public Totals run(long batchSeed, long games) {
+        long start = System.nanoTime();
+        Totals totals = pool.invoke(new Games(batchSeed, 0, games));
+        totals.elapsedNanos = System.nanoTime() - start;
+        return totals;
+    }
+    
+    /**
+     * Play one game of a batch on the calling thread
+     */
+    public SimulationResult play(long batchSeed, long index) {
+        long seed = gameSeed(batchSeed, index);
+        return new Simulation(width, height, seed).run(inputs.apply(seed), maxFrames);
+    }
+    
+    /**
+     * Seed of game {@code index} of a batch (a SplitMix64 step, so that
+     * neighbouring games get unrelated seeds)
+     */
+    public static long gameSeed(long batchSeed, long index) {
+        return SplitMix64.valueAt(batchSeed, index);
+    }
+    
+    private final class Games extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+        
+        private final long batchSeed;
+        private final long from;
+        private final long to;
+        
+        Games(long batchSeed, long from, long to) {
+            this.batchSeed = batchSeed;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Totals compute() {
+            if (to - from <= SEQUENTIAL_GAMES) {
+                Totals totals = new Totals();
+                for (long index = from; index < to; index++) {
+                    totals.add(play(batchSeed, index));
+                }
+                return totals;
+            }
+            
+            long middle = (from + to) >>> 1;
+            Games left = new Games(batchSeed, from, middle);
+            left.fork();
+            Totals totals = new Games(batchSeed, middle, to).compute();
+            totals.add(left.join());
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.tetris.sim;
+
+/**
+ * Input codes understood by {@link Simulation}, one per logical frame
+ */
+public final class Input {
+
+    public static final byte NONE = 0;
+    public static final byte LEFT = 1;
+    public static final byte RIGHT = 2;
+    public static final byte ROTATE = 3;
+    public static final byte SOFT_DROP = 4;
+    public static final byte HARD_DROP = 5;
+    
+    private Input() {
+    }
+    
+    public static boolean isValid(int input) {
+        return input >= NONE && input <= HARD_DROP;
+    }
+}
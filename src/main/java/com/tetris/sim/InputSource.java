@@ -0,0 +1,34 @@
+package com.tetris.sim;
+
+import com.tetris.model.Board;
+
+/**
+ * Supplies the input for each logical frame of a {@link Simulation}
+ */
+public interface InputSource {
+
+    /**
+     * Value returned when the source has no more input
+     */
+    int END = -1;
+    
+    /**
+     * The input for the next frame, or {@link #END} to stop the simulation.
+     * The board is passed so that bots can react to it; replays ignore it.
+     */
+    int nextInput(Board board);
+    
+    /**
+     * Replay a recorded input stream
+     */
+    static InputSource of(final byte[] inputs) {
+        return new InputSource() {
+            private int position;
+            
+            @Override
+            public int nextInput(Board board) {
+                return position < inputs.length ? inputs[position++] : END;
+            }
+        };
+    }
+}
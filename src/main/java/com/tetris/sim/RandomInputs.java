@@ -0,0 +1,45 @@
+package com.tetris.sim;
+
+import com.tetris.model.Board;
+import java.util.Random;
+
+/**
+ * Plays each piece to a random rotation and column and then hard-drops it.
+ * The choices depend only on the seed, so a game played with the same seed
+ * and board seed is always the same.
+ */
+public class RandomInputs implements InputSource {
+
+    private final Random random;
+    private long piece = -1;
+    private int rotations;
+    private int shift;
+    
+    public RandomInputs(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    @Override
+    public int nextInput(Board board) {
+        // Plan a placement whenever a new piece appears
+        if (board.getPiecesPlaced() != piece) {
+            piece = board.getPiecesPlaced();
+            rotations = random.nextInt(4);
+            shift = random.nextInt(board.getWidth()) - board.getWidth() / 2;
+        }
+        
+        if (rotations > 0) {
+            rotations--;
+            return Input.ROTATE;
+        }
+        if (shift < 0) {
+            shift++;
+            return Input.LEFT;
+        }
+        if (shift > 0) {
+            shift--;
+            return Input.RIGHT;
+        }
+        return Input.HARD_DROP;
+    }
+}
@@ -0,0 +1,108 @@
+package com.tetris.sim;
+
+import com.tetris.model.Board;
+import com.tetris.model.PieceGenerator;
+
+/**
+ * Runs the game rules on a {@link Board} without timers, threads or
+ * listeners.
+ *
+ * Time advances in logical frames. Each frame applies one {@link Input} and
+ * every {@code gravityFrames} frames the piece falls one row, so a game runs
+ * as fast as the CPU allows and is fully determined by the seed and the
+ * input stream.
+ */
+public class Simulation {
+
+    // One row per second at 60 frames per second, like level 1 of Game
+    public static final int DEFAULT_GRAVITY_FRAMES = 60;
+    
+    private final Board board;
+    private final long seed;
+    private final int gravityFrames;
+    private long frames;
+    
+    public Simulation(int width, int height, long seed) {
+        this(width, height, seed, DEFAULT_GRAVITY_FRAMES);
+    }
+    
+    public Simulation(int width, int height, long seed, int gravityFrames) {
+        this(width, height, seed, PieceGenerator.Distribution.UNIFORM, gravityFrames);
+    }
+    
+    public Simulation(int width, int height, long seed, PieceGenerator.Distribution distribution, int gravityFrames) {
+        if (gravityFrames <= 0) {
+            throw new IllegalArgumentException("Gravity frames must be positive: " + gravityFrames);
+        }
+        this.board = new Board(width, height, PieceGenerator.create(distribution, seed));
+        this.seed = seed;
+        this.gravityFrames = gravityFrames;
+        board.createNewShape();
+    }
+    
+    /**
+     * Advance one frame. Returns false once the game is over, after which
+     * further steps are ignored.
+     */
+    public boolean step(int input) {
+        if (board.isGameOver()) {
+            return false;
+        }
+        
+        switch (input) {
+            case Input.LEFT:
+                board.moveShapeLeft();
+                break;
+            case Input.RIGHT:
+                board.moveShapeRight();
+                break;
+            case Input.ROTATE:
+                board.rotateShape();
+                break;
+            case Input.SOFT_DROP:
+                board.moveShapeDown();
+                break;
+            case Input.HARD_DROP:
+                board.hardDrop();
+                break;
+            case Input.NONE:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown input: " + input);
+        }
+        
+        frames++;
+        if (frames % gravityFrames == 0 && !board.isGameOver()) {
+            board.moveShapeDown();
+        }
+        return !board.isGameOver();
+    }
+    
+    /**
+     * Step until the game is over, the source runs out or {@code maxFrames}
+     * frames have been played
+     */
+    public SimulationResult run(InputSource inputs, long maxFrames) {
+        while (frames < maxFrames && !board.isGameOver()) {
+            int input = inputs.nextInput(board);
+            if (input == InputSource.END) {
+                break;
+            }
+            step(input);
+        }
+        return getResult();
+    }
+    
+    public SimulationResult getResult() {
+        return new SimulationResult(seed, frames, board.getPiecesPlaced(), board.getLinesCleared(),
+                board.getScore(), board.isGameOver());
+    }
+    
+    public Board getBoard() {
+        return board;
+    }
+    
+    public long getFrames() {
+        return frames;
+    }
+}
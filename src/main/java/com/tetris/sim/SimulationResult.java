@@ -0,0 +1,76 @@
+package com.tetris.sim;
+
+/**
+ * Outcome of one simulated game
+ */
+public final class SimulationResult {
+
+    private final long seed;
+    private final long frames;
+    private final long pieces;
+    private final int lines;
+    private final int score;
+    private final boolean gameOver;
+    
+    public SimulationResult(long seed, long frames, long pieces, int lines, int score, boolean gameOver) {
+        this.seed = seed;
+        this.frames = frames;
+        this.pieces = pieces;
+        this.lines = lines;
+        this.score = score;
+        this.gameOver = gameOver;
+    }
+    
+    public long getSeed() {
+        return seed;
+    }
+    
+    public long getFrames() {
+        return frames;
+    }
+    
+    public long getPieces() {
+        return pieces;
+    }
+    
+    public int getLines() {
+        return lines;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    public boolean isGameOver() {
+        return gameOver;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SimulationResult)) {
+            return false;
+        }
+        SimulationResult result = (SimulationResult) other;
+        return seed == result.seed && frames == result.frames && pieces == result.pieces
+                && lines == result.lines && score == result.score && gameOver == result.gameOver;
+    }
+    
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(seed);
+        hash = 31 * hash + Long.hashCode(frames);
+        hash = 31 * hash + Long.hashCode(pieces);
+        hash = 31 * hash + lines;
+        hash = 31 * hash + score;
+        return 31 * hash + (gameOver ? 1 : 0);
+    }
+    
+    @Override
+    public String toString() {
+        return "SimulationResult[seed=" + seed + ", frames=" + frames + ", pieces=" + pieces
+                + ", lines=" + lines + ", score=" + score + ", gameOver=" + gameOver + "]";
+    }
+}
@@ -0,0 +1,120 @@
+package com.tetris.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Consistent hashing of string keys onto a set of nodes.
+ *
+ * Every node is placed at {@value #DEFAULT_POINTS} pseudo-random points on a
+ * 64-bit ring and a key belongs to the node at the first point at or after
+ * the key's hash. Adding a node therefore takes keys only from the points
+ * it lands in front of, about 1/n of them, and removing one hands only its
+ * own keys to their next points; every other key keeps its owner. A node's
+ * points depend on its name alone, so every process that knows the same
+ * nodes computes the same owners.
+ *
+ * Immutable; {@link #with} and {@link #without} return new rings.
+ */
+public final class HashRing {
+    
+    public static final int DEFAULT_POINTS = 160;
+    
+    private final List<String> nodes;
+    private final int pointsPerNode;
+    // Sorted hashes and the index into nodes of the node at each
+    private final long[] points;
+    private final int[] owners;
+    
+    public HashRing(List<String> nodes) {
+        this(nodes, DEFAULT_POINTS);
+    }
+    
+    public HashRing(List<String> nodes, int pointsPerNode) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        if (pointsPerNode <= 0) {
+            throw new IllegalArgumentException("Points per node must be positive: " + pointsPerNode);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(nodes)));
+        this.pointsPerNode = pointsPerNode;
+        
+        int count = this.nodes.size() * pointsPerNode;
+        long[] placed = new long[count];
+        for (int node = 0; node < this.nodes.size(); node++) {
+            long base = hash(this.nodes.get(node));
+            for (int point = 0; point < pointsPerNode; point++) {
+                placed[node * pointsPerNode + point] = SplitMix64.valueAt(base, point);
+            }
+        }
+        // Sort the points by hash, keeping track of the node each belongs to
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        final long[] unsorted = placed;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compareUnsigned(unsorted[a], unsorted[b]);
+            }
+        });
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = order[i] / pointsPerNode;
+        }
+    }
+    
+    /**
+     * The node that owns {@code key}
+     */
+    public String owner(String key) {
+        long hash = hash(key);
+        int low = 0;
+        int high = points.length;
+        // First point at or after the hash, wrapping around to the start
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return nodes.get(owners[low == points.length ? 0 : low]);
+    }
+    
+    public List<String> getNodes() {
+        return nodes;
+    }
+    
+    public HashRing with(String node) {
+        List<String> more = new ArrayList<>(nodes);
+        more.add(node);
+        return new HashRing(more, pointsPerNode);
+    }
+    
+    public HashRing without(String node) {
+        List<String> fewer = new ArrayList<>(nodes);
+        fewer.remove(node);
+        return new HashRing(fewer, pointsPerNode);
+    }
+    
+    // FNV-1a over the UTF-8 bytes, then mixed so similar keys spread out
+    static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return SplitMix64.mix(hash);
+    }
+}
@@ -0,0 +1,88 @@
+package com.tetris.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * Producers claim a slot with a compare-and-set on the tail and then publish
+ * the element into it; the consumer takes elements in claim order. Only one
+ * thread may poll at a time, but that thread may change, provided each hand
+ * over goes through a volatile write and read (for example an atomic owner
+ * flag).
+ */
+public final class MpscQueue<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    
+    /**
+     * @param capacity maximum number of queued elements, rounded up to a power of two
+     */
+    public MpscQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Add an element unless the queue is full
+     *
+     * @return false when the queue is full and the element was not added
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        
+        slots.lazySet((int) (claimed & mask), element);
+        return true;
+    }
+    
+    /**
+     * Take the oldest element, or null when the queue is empty or the oldest
+     * element's producer has not finished publishing it yet
+     */
+    public E poll() {
+        long current = head;
+        int index = (int) (current & mask);
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        // Free the slot before moving the head, so a producer never reuses a
+        // slot that still holds an element
+        slots.lazySet(index, null);
+        head = current + 1;
+        return element;
+    }
+    
+    /**
+     * Whether no element is claimed; an element that is claimed but not yet
+     * published counts as present
+     */
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+    
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+    
+    public int capacity() {
+        return slots.length();
+    }
+}
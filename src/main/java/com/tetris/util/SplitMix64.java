@@ -0,0 +1,65 @@
+package com.tetris.util;
+
+/**
+ * Small, fast pseudo-random generator (SplitMix64).
+ *
+ * Unlike {@link java.util.Random} it has no atomic state, so each game can
+ * own one without paying for synchronisation, and a given seed always
+ * produces the same sequence. Instances are not thread-safe.
+ */
+public final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private long state;
+    
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+    
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+    
+    /**
+     * The internal state; a generator set to this state continues with the
+     * same values
+     */
+    public long getState() {
+        return state;
+    }
+    
+    public void setState(long state) {
+        this.state = state;
+    }
+    
+    /**
+     * A value in [0, bound). Uses a multiply-shift of the top 32 bits, whose
+     * bias of at most bound / 2^32 is irrelevant for small bounds.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+    
+    /**
+     * The SplitMix64 finaliser: scrambles a value so that nearby inputs give
+     * unrelated outputs
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * The {@code index}-th value of the sequence started from {@code seed},
+     * without stepping through the values before it
+     */
+    public static long valueAt(long seed, long index) {
+        return mix(seed + (index + 1) * GOLDEN_GAMMA);
+    }
+}
@@ -0,0 +1,338 @@
+package com.tetris.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Process-wide periodic task scheduler built on a hashed timing wheel.
+ *
+ * One wheel thread advances the buckets every tick and hands due tasks to a
+ * small worker pool sized to the core count, so the number of threads stays
+ * fixed no matter how many games are registered. A task that is still running
+ * when its next deadline comes up is skipped rather than queued, and a task
+ * that falls behind is moved to its next future deadline instead of firing a
+ * burst of catch-up runs.
+ */
+public final class TickScheduler {
+
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    
+    private static volatile TickScheduler shared;
+    
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private final int workerThreads;
+    private final Thread wheelThread;
+    private final long startTime;
+    private final AtomicInteger scheduledCount = new AtomicInteger();
+    private final Histogram lateness = new Histogram();
+    private volatile boolean running = true;
+    
+    // Only touched by the wheel thread
+    private long tick;
+    
+    /**
+     * Handle for a periodic task registered with the scheduler
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final AtomicBoolean executing = new AtomicBoolean(false);
+        private volatile long periodNanos;
+        private volatile long deadline;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        
+        // Only touched by the wheel thread
+        private long remainingRounds;
+        private long targetTick;
+        private boolean inWheel;
+        
+        private Timeout(Runnable task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+        
+        /**
+         * Stop the task. A run that is already in progress is allowed to finish.
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                scheduledCount.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Change the period of the task. The new period takes effect from the
+         * next deadline, which is moved to one new period from now.
+         */
+        public void reschedule(long periodMillis) {
+            if (periodMillis <= 0) {
+                throw new IllegalArgumentException("Period must be positive: " + periodMillis);
+            }
+            periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            deadline = System.nanoTime() + periodNanos;
+            // The wheel thread moves the task to its new bucket
+            pending.add(this);
+        }
+        
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+        
+        public long getPeriodMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+        }
+        
+        private void fire() {
+            // Skip this deadline if the previous run is still busy
+            if (!executing.compareAndSet(false, true)) {
+                return;
+            }
+            final long due = deadline;
+            try {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!cancelled.get()) {
+                                lateness.record(System.nanoTime() - due);
+                                task.run();
+                            }
+                        } finally {
+                            executing.set(false);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                executing.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Create a scheduler with the default resolution and one worker per core
+     */
+    public TickScheduler() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Create a scheduler with its own wheel thread and worker pool.
+     *
+     * @param tickMillis resolution of the wheel
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param workerThreads number of threads that run due tasks
+     */
+    public TickScheduler(long tickMillis, int wheelSize, int workerThreads) {
+        if (tickMillis <= 0 || wheelSize <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("Tick, wheel size and worker count must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<Timeout>[] buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.wheel = buckets;
+        this.mask = size - 1;
+        
+        this.workerThreads = workerThreads;
+        this.workers = Executors.newFixedThreadPool(workerThreads, daemonThreads("tetris-tick-worker-"));
+        this.startTime = System.nanoTime();
+        this.wheelThread = daemonThreads("tetris-tick-wheel-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        });
+        this.wheelThread.start();
+    }
+    
+    /**
+     * The scheduler shared by every game in this process that is not given
+     * its own, created on first use and again after it has been shut down
+     */
+    public static TickScheduler shared() {
+        TickScheduler scheduler = shared;
+        if (scheduler == null || !scheduler.running) {
+            synchronized (TickScheduler.class) {
+                scheduler = shared;
+                if (scheduler == null || !scheduler.running) {
+                    scheduler = new TickScheduler();
+                    shared = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+    
+    /**
+     * Register a task that runs every {@code periodMillis}, first after
+     * {@code initialDelayMillis}.
+     */
+    public Timeout schedule(Runnable task, long initialDelayMillis, long periodMillis) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodMillis);
+        }
+        if (!running) {
+            throw new IllegalStateException("Scheduler has been shut down");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, initialDelayMillis));
+        Timeout timeout = new Timeout(task, deadline, TimeUnit.MILLISECONDS.toNanos(periodMillis));
+        scheduledCount.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+    
+    /**
+     * Number of tasks currently registered and not cancelled
+     */
+    public int getScheduledCount() {
+        return scheduledCount.get();
+    }
+    
+    /**
+     * Number of threads owned by this scheduler: the wheel thread plus workers
+     */
+    public int getThreadCount() {
+        return 1 + workerThreads;
+    }
+    
+    /**
+     * Nanoseconds from each task's deadline to the moment a worker started
+     * running it: the wheel's resolution plus any queueing on the workers
+     */
+    public Histogram getLateness() {
+        return lateness;
+    }
+    
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(wheelThread);
+        workers.shutdown();
+    }
+    
+    public boolean isShutdown() {
+        return !running;
+    }
+    
+    /**
+     * Wait for the threads of a scheduler that has been shut down to finish
+     *
+     * @return false when they were still running after {@code timeoutMillis}
+     */
+    public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (!workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        wheelThread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        return !wheelThread.isAlive();
+    }
+    
+    private void runWheel() {
+        while (running) {
+            long tickDeadline = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < tickDeadline) {
+                LockSupport.parkNanos(this, tickDeadline - now);
+                if (!running) {
+                    return;
+                }
+            }
+            
+            // Catch up on missed wheel ticks after a stall without firing anything twice
+            long currentTick = (now - startTime) / tickNanos;
+            while (tick < currentTick) {
+                transferPending();
+                expire(wheel[(int) (tick & mask)], now);
+                tick++;
+            }
+        }
+    }
+    
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.inWheel) {
+                wheel[(int) (timeout.targetTick & mask)].remove(timeout);
+                timeout.inWheel = false;
+            }
+            if (!timeout.cancelled.get()) {
+                insert(timeout, tick);
+            }
+        }
+    }
+    
+    private void insert(Timeout timeout, long earliestTick) {
+        long target = Math.max(ticksUntil(timeout.deadline), earliestTick);
+        timeout.remainingRounds = (target - earliestTick) / wheel.length;
+        timeout.targetTick = target;
+        timeout.inWheel = true;
+        wheel[(int) (target & mask)].addLast(timeout);
+    }
+    
+    private long ticksUntil(long deadline) {
+        long elapsed = deadline - startTime;
+        return elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+    
+    private void expire(ArrayDeque<Timeout> bucket, long now) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout timeout = bucket.pollFirst();
+            timeout.inWheel = false;
+            if (timeout.cancelled.get()) {
+                continue;
+            }
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout.inWheel = true;
+                bucket.addLast(timeout);
+                continue;
+            }
+            
+            timeout.fire();
+            
+            // Next deadline at a fixed rate, skipping any that have already passed
+            long period = timeout.periodNanos;
+            long next = timeout.deadline + period;
+            if (next - now <= 0) {
+                next += ((now - next) / period + 1) * period;
+            }
+            timeout.deadline = next;
+            insert(timeout, tick + 1);
+        }
+    }
+    
+    private static ThreadFactory daemonThreads(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
\ No newline at end of file
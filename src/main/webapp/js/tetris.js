@@ -13,7 +13,22 @@ document.addEventListener('DOMContentLoaded', function() {
     // Game state
     let isPaused = false;
     let gameOver = false;
-    let updateInterval;
+    // True while the long-poll loop is running; the generation stops stale loops
+    let polling = false;
+    let pollGeneration = 0;
+    // Last board version received; the server sends only rows changed since then
+    let boardVersion = null;
+    let cells = [];
+    // Cells currently outlined as the falling piece's landing place
+    let ghostCells = [];
+    // Push connection; while it is open long polling is switched off
+    let socket = null;
+    // Inputs posted but not yet acknowledged; every post resends them all, so
+    // a key press never waits for the reply to the previous one
+    const inputStream = Math.random().toString(36).slice(2);
+    let nextSequence = 1;
+    let pendingInputs = [];
+    let lastAck = 0;
     
     // Colors for blocks
     const colors = [
@@ -32,12 +47,15 @@ document.addEventListener('DOMContentLoaded', function() {
         gameBoard.innerHTML = '';
         
         // Create cells for the game board (10x20 grid)
+        cells = [];
         for (let row = 0; row < 20; row++) {
+            cells.push([]);
             for (let col = 0; col < 10; col++) {
                 const cell = document.createElement('div');
                 cell.className = 'game-cell';
                 cell.id = `cell-${row}-${col}`;
                 gameBoard.appendChild(cell);
+                cells[row].push(cell);
             }
         }
     }
@@ -45,21 +63,120 @@ document.addEventListener('DOMContentLoaded', function() {
     // Update the game board based on the current state
     function updateBoard(grid) {
         for (let row = 0; row < 20; row++) {
-            for (let col = 0; col < 10; col++) {
-                const cell = document.getElementById(`cell-${row}-${col}`);
-                const colorValue = grid[row][col];
-                
-                if (colorValue === 0) {
-                    cell.style.backgroundColor = '#ecf0f1';
-                } else {
-                    // Convert the integer color to a hex string
-                    const colorIndex = getColorIndex(colorValue);
-                    cell.style.backgroundColor = colors[colorIndex] || '#333';
+            updateRow(row, grid[row]);
+        }
+    }
+    
+    // Update a single row of the game board
+    function updateRow(row, rowColors) {
+        for (let col = 0; col < 10; col++) {
+            const cell = cells[row][col];
+            const colorValue = rowColors[col];
+            
+            if (colorValue === 0) {
+                cell.style.backgroundColor = '#ecf0f1';
+            } else {
+                // Convert the integer color to a hex string
+                const colorIndex = getColorIndex(colorValue);
+                cell.style.backgroundColor = colors[colorIndex] || '#333';
+            }
+        }
+    }
+    
+    // Apply a full keyframe or the changed rows of a delta update
+    function applyBoardUpdate(data) {
+        if (data.keyframe) {
+            updateBoard(data.grid);
+        } else if (data.rows) {
+            Object.keys(data.rows).forEach(row => updateRow(Number(row), data.rows[row]));
+        }
+        boardVersion = data.version;
+    }
+    
+    // Color values and block layouts of each piece type, as in the Shape class
+    const colorValues = [0x00FFFF, 0x0000FF, 0xFFA500, 0xFFFF00, 0x00FF00, 0x800080, 0xFF0000];
+    const shapeBlocks = [
+        [[0, 0], [1, 0], [2, 0], [3, 0]], // I
+        [[0, 0], [0, 1], [1, 1], [2, 1]], // J
+        [[2, 0], [0, 1], [1, 1], [2, 1]], // L
+        [[0, 0], [1, 0], [0, 1], [1, 1]], // O
+        [[1, 0], [2, 0], [0, 1], [1, 1]], // S
+        [[1, 0], [0, 1], [1, 1], [2, 1]], // T
+        [[0, 0], [1, 0], [1, 1], [2, 1]]  // Z
+    ];
+    
+    // Size of the fixed header of the binary state (see GameStateEncoder)
+    const BINARY_HEADER_BYTES = 22;
+    
+    // Cells of a piece in the given rotation with its pivot (block 1) at x, y;
+    // pieces turn clockwise around the pivot, except the O which never turns
+    function pieceBlocks(type, rotation, x, y) {
+        let blocks = shapeBlocks[type];
+        const [pivotX, pivotY] = blocks[1];
+        for (let turn = 0; type !== 3 && turn < rotation; turn++) {
+            blocks = blocks.map(([bx, by]) => [pivotX - (by - pivotY), pivotY + (bx - pivotX)]);
+        }
+        return blocks.map(([bx, by]) => ({ x: x + bx - pivotX, y: y + by - pivotY }));
+    }
+    
+    // Decode the binary game state into the same shape as the JSON keyframe
+    function decodeBinaryState(buffer) {
+        const view = new DataView(buffer);
+        const width = view.getUint8(1);
+        const height = view.getUint8(2);
+        const flags = view.getUint8(3);
+        const nextType = view.getUint8(10);
+        const ghostPiece = view.getUint8(11);
+        
+        // Cells are 3 bits each, packed from the low bit of each byte upwards
+        const grid = [];
+        let bit = BINARY_HEADER_BYTES * 8;
+        for (let row = 0; row < height; row++) {
+            const rowColors = [];
+            for (let col = 0; col < width; col++) {
+                const index = bit >> 3;
+                const shift = bit & 7;
+                let value = view.getUint8(index) >> shift;
+                if (shift > 5) {
+                    value |= view.getUint8(index + 1) << (8 - shift);
                 }
+                value &= 7;
+                rowColors.push(value === 0 ? 0 : colorValues[value - 1]);
+                bit += 3;
             }
+            grid.push(rowColors);
         }
+        
+        return {
+            keyframe: true,
+            grid: grid,
+            score: view.getInt32(4),
+            level: view.getUint16(8),
+            gameOver: (flags & 1) !== 0,
+            paused: (flags & 2) !== 0,
+            nextShape: nextType === 0xFF ? null : shapeBlocks[nextType].map(([x, y]) => ({
+                x: x, y: y, color: colorValues[nextType]
+            })),
+            ghost: ghostPiece === 0xFF ? null
+                : pieceBlocks(ghostPiece >> 2, ghostPiece & 3, view.getUint8(20), view.getUint8(21)),
+            version: view.getBigUint64(12).toString()
+        };
     }
     
+    // Read a state response in whichever encoding the server chose
+    function readState(response) {
+        const type = response.headers.get('Content-Type') || '';
+        if (type.indexOf('application/octet-stream') >= 0) {
+            return response.arrayBuffer().then(decodeBinaryState);
+        }
+        return response.json();
+    }
+    
+    // Ask for the compact binary state where DataView can decode it
+    const stateHeaders = typeof DataView.prototype.getBigUint64 === 'function'
+        ? { 'Accept': 'application/octet-stream, application/json' }
+        : { 'Accept': 'application/json' };
+    
     // Helper function to get color index from color value
     function getColorIndex(colorValue) {
         // This is a simple mapping based on the color values in the Shape class
@@ -135,28 +252,113 @@ document.addEventListener('DOMContentLoaded', function() {
         nextPieceContainer.appendChild(miniGrid);
     }
     
+    // Outline the cells where the falling piece would land
+    function updateGhost(blocks) {
+        ghostCells.forEach(cell => cell.classList.remove('ghost'));
+        ghostCells = (blocks || [])
+            .filter(block => block.y >= 0 && block.y < 20 && block.x >= 0 && block.x < 10)
+            .map(block => cells[block.y][block.x]);
+        ghostCells.forEach(cell => cell.classList.add('ghost'));
+    }
+    
+    // Apply a game state received by polling or from the push connection
+    function handleGameState(data) {
+        applyBoardUpdate(data);
+        updateGhost(data.ghost);
+        scoreElement.textContent = data.score;
+        levelElement.textContent = data.level;
+        
+        // Update the next piece if available
+        if (data.nextShape) {
+            updateNextPiece(data.nextShape);
+        }
+        
+        // A game that was parked while idle comes back paused
+        if (data.paused !== undefined && data.paused !== isPaused) {
+            isPaused = data.paused;
+            pauseBtn.textContent = isPaused ? 'Resume' : 'Pause';
+        }
+        
+        if (data.gameOver && !gameOver) {
+            gameOver = true;
+            showGameOver(data.score);
+        }
+    }
+    
     // Update the game state from the server
     function updateGameState() {
         if (gameOver) return;
         
-        fetch('tetris?action=getState')
-            .then(response => response.json())
+        const since = boardVersion === null ? '' : `&since=${boardVersion}`;
+        
+        fetch(`tetris?action=getState${since}`, { headers: stateHeaders })
+            .then(readState)
+            .then(handleGameState)
+            .catch(error => console.error('Error updating game state:', error));
+    }
+    
+    // Long poll: the server holds each request until the board changes
+    function pollLoop(generation) {
+        if (generation !== pollGeneration) return;
+        if (!polling || gameOver || socket) {
+            polling = false;
+            return;
+        }
+        
+        const since = boardVersion === null ? '' : `&since=${boardVersion}`;
+        
+        fetch(`tetris?action=getState&wait=1${since}`, { headers: stateHeaders })
+            .then(readState)
             .then(data => {
-                updateBoard(data.grid);
-                scoreElement.textContent = data.score;
-                levelElement.textContent = data.level;
-                
-                // Update the next piece if available
-                if (data.nextShape) {
-                    updateNextPiece(data.nextShape);
-                }
-                
-                if (data.gameOver && !gameOver) {
-                    gameOver = true;
-                    showGameOver(data.score);
+                if (generation === pollGeneration && polling && !socket) {
+                    handleGameState(data);
                 }
+                pollLoop(generation);
             })
-            .catch(error => console.error('Error updating game state:', error));
+            .catch(error => {
+                console.error('Error updating game state:', error);
+                setTimeout(() => pollLoop(generation), 1000);
+            });
+    }
+    
+    function startPolling() {
+        if (!polling && !socket) {
+            polling = true;
+            pollLoop(++pollGeneration);
+        }
+    }
+    
+    function stopPolling() {
+        polling = false;
+        pollGeneration++;
+    }
+    
+    // Open the push connection; polling stays as the fallback if it fails or closes
+    function connectSocket() {
+        if (!('WebSocket' in window)) return;
+        
+        const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+        const basePath = window.location.pathname.replace(/[^/]*$/, '');
+        const ws = new WebSocket(`${protocol}//${window.location.host}${basePath}tetris/socket`);
+        
+        ws.onopen = () => {
+            socket = ws;
+            stopPolling();
+        };
+        ws.onmessage = event => {
+            const data = JSON.parse(event.data);
+            if (!gameOver || !data.gameOver) {
+                handleGameState(data);
+            }
+        };
+        ws.onclose = () => {
+            if (socket === ws) {
+                socket = null;
+                if (!gameOver) {
+                    startPolling();
+                }
+            }
+        };
     }
     
     // Start a new game
@@ -165,16 +367,14 @@ document.addEventListener('DOMContentLoaded', function() {
             .then(response => response.json())
             .then(data => {
                 if (data.success) {
+                    boardVersion = null;
                     gameOver = false;
                     isPaused = false;
                     pauseBtn.textContent = 'Pause';
                     gameOverOverlay.style.display = 'none';
                     
-                    // Start the update interval
-                    if (updateInterval) {
-                        clearInterval(updateInterval);
-                    }
-                    updateInterval = setInterval(updateGameState, 100);
+                    // Restart long polling unless updates are pushed
+                    startPolling();
                 }
             })
             .catch(error => console.error('Error starting new game:', error));
@@ -202,10 +402,7 @@ document.addEventListener('DOMContentLoaded', function() {
         finalScoreElement.textContent = score;
         gameOverOverlay.style.display = 'flex';
         
-        if (updateInterval) {
-            clearInterval(updateInterval);
-            updateInterval = null;
-        }
+        stopPolling();
     }
     
     // Handle keyboard controls
@@ -238,24 +435,39 @@ document.addEventListener('DOMContentLoaded', function() {
         if (action) {
             event.preventDefault();
             
-            fetch('tetris', {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/x-www-form-urlencoded',
-                },
-                body: `action=${action}`
-            })
-            .then(response => response.json())
-            .then(data => {
-                if (data.success) {
-                    // Update the game state immediately after an action
-                    updateGameState();
-                }
-            })
-            .catch(error => console.error(`Error performing action ${action}:`, error));
+            // The push connection carries input as well as state
+            if (socket) {
+                socket.send(action);
+                return;
+            }
+            
+            postInput(action);
         }
     }
     
+    // Post the input together with every input still unacknowledged and apply
+    // the state the server returns
+    function postInput(action) {
+        pendingInputs.push({ seq: nextSequence++, action: action, t: Date.now() });
+        const since = boardVersion === null ? '' : `&since=${boardVersion}`;
+        fetch(`tetris?action=batch${since}`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+            },
+            body: JSON.stringify({ stream: inputStream, inputs: pendingInputs })
+        })
+        .then(response => response.json())
+        .then(data => {
+            // A reply overtaken by a newer one carries an older state
+            if (data.ack < lastAck) return;
+            lastAck = data.ack;
+            pendingInputs = pendingInputs.filter(input => input.seq > data.ack);
+            handleGameState(data);
+        })
+        .catch(error => console.error(`Error performing action ${action}:`, error));
+    }
+    
     // Initialize the game
     function init() {
         initializeBoard();
@@ -266,11 +478,9 @@ document.addEventListener('DOMContentLoaded', function() {
         restartBtn.addEventListener('click', startNewGame);
         document.addEventListener('keydown', handleKeyDown);
         
-        // Start the update interval
-        updateInterval = setInterval(updateGameState, 100);
-        
-        // Initial update
-        updateGameState();
+        // Start long polling, then try to switch to server push
+        startPolling();
+        connectSocket();
     }
     
     // Start the game
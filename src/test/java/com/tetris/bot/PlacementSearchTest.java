@@ -0,0 +1,67 @@
+package com.tetris.bot;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.concurrent.ForkJoinPool;
+import com.tetris.model.Board;
+import com.tetris.model.PieceGenerator;
+import com.tetris.model.Shape;
+import com.tetris.sim.Simulation;
+import com.tetris.sim.SimulationResult;
+
+public class PlacementSearchTest {
+
+    @Test
+    public void testFillsTheWellWithAnIPiece() {
+        // Four rows full apart from column 9, with a vertical I piece to place
+        Board board = new Board(10, 20, PieceGenerator.uniform(1));
+        for (int col = 0; col < 9; col++) {
+            board.setCurrentShape(Shape.at(Shape.I_SHAPE, 1, col, 1));
+            board.hardDrop();
+        }
+        board.setCurrentShape(new Shape(Shape.I_SHAPE));
+        
+        PlacementSearch search = new PlacementSearch(Heuristic.DEFAULT);
+        Placement placement = search.findBest(board);
+        
+        assertNotNull(placement);
+        for (int i = 0; i < placement.getDrops(); i++) {
+            board.moveShapeDown();
+        }
+        for (int i = 0; i < placement.getRotations(); i++) {
+            board.rotateShape();
+        }
+        for (int i = 0; i < Math.abs(placement.getShift()); i++) {
+            if (placement.getShift() < 0) {
+                board.moveShapeLeft();
+            } else {
+                board.moveShapeRight();
+            }
+        }
+        board.hardDrop();
+        assertEquals(4, board.getLinesCleared());
+        assertTrue(search.getPlacementsEvaluated() > 0);
+    }
+    
+    @Test
+    public void testBotSurvivesAndClearsLines() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            PlacementSearch search = new PlacementSearch(Heuristic.DEFAULT, pool);
+            Simulation simulation = new Simulation(10, 20, 3, PieceGenerator.Distribution.SEVEN_BAG, 60);
+            SimulationResult result = simulation.run(new BotPlayer(search), 3000);
+            
+            assertFalse("The bot should not top out", result.isGameOver());
+            assertTrue("Lines cleared: " + result.getLines(), result.getLines() >= 40);
+            assertTrue(search.getPlacementsPerSecond() > 0);
+            assertTrue("Boards reached twice should be cached", search.getCache().getHits() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testNoPlacementWithoutAPiece() {
+        assertNull(new PlacementSearch(Heuristic.DEFAULT).findBest(new Board(10, 20)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.tetris.bot;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TranspositionCacheTest {
+
+    @Test
+    public void testKeysIncludeThePiece() {
+        TranspositionCache<String> cache = new TranspositionCache<>(16);
+        cache.put(42, 1, "I");
+        cache.put(42, 2, "J");
+        
+        assertEquals("I", cache.get(42, 1));
+        assertEquals("J", cache.get(42, 2));
+        assertNull(cache.get(42, 3));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    }
+    
+    @Test
+    public void testStaysWithinCapacity() {
+        TranspositionCache<Long> cache = new TranspositionCache<>(1000);
+        assertEquals(1024, cache.getCapacity());
+        
+        for (long key = 0; key < 100_000; key++) {
+            cache.put(key, 0, key);
+        }
+        int held = 0;
+        for (long key = 0; key < 100_000; key++) {
+            Long value = cache.get(key, 0);
+            if (value != null) {
+                assertEquals(key, (long) value);
+                held++;
+            }
+        }
+        assertTrue("Held " + held, held > 0 && held <= cache.getCapacity());
+        assertTrue(cache.getEvictions() >= 100_000 - cache.getCapacity());
+    }
+    
+    @Test
+    public void testEntriesThatAreReadSurviveEviction() {
+        TranspositionCache<Long> cache = new TranspositionCache<>(1 << 10);
+        cache.put(7, 0, 7L);
+        for (long key = 100; key < 10_000; key++) {
+            // Keep reading the hot entry while cold keys stream through
+            assertEquals(Long.valueOf(7), cache.get(7, 0));
+            cache.put(key, 0, key);
+        }
+    }
+    
+    @Test
+    public void testConcurrentUseNeverReturnsAnotherKeysValue() throws InterruptedException {
+        final TranspositionCache<Long> cache = new TranspositionCache<>(256);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final long offset = t * 1000;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200_000; i++) {
+                            long key = (offset + i) % 3000;
+                            Long value = cache.get(key, (int) (key & 7));
+                            if (value != null && value != key * 3) {
+                                throw new AssertionError("Key " + key + " returned " + value);
+                            }
+                            cache.put(key, (int) (key & 7), key * 3);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(cache.getHits() > 0);
+    }
+}
@@ -0,0 +1,207 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class ClusterRouterTest {
+    
+    private static final int GAMES = 600;
+    
+    private TickScheduler scheduler;
+    // In-process nodes by name, each with its own registry
+    private final Map<String, GamePassivator> nodes = new LinkedHashMap<>();
+    
+    // Hands games straight to the other node's registry, in the wire format
+    private final ClusterRouter.Transport transport = new ClusterRouter.Transport() {
+        @Override
+        public boolean handOff(String node, String token, String playerName, byte[] snapshot) {
+            GamePassivator target = nodes.get(node);
+            if (target == null) {
+                return false;
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ClusterRouter.writeHandOff(new DataOutputStream(bytes), token, playerName, snapshot);
+                ClusterRouter.readHandOff(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), target);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    };
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 1024, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        for (GamePassivator passivator : nodes.values()) {
+            passivator.shutdown();
+        }
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testNewGamesAreOwnedByTheNodeThatCreatesThem() {
+        List<String> names = Arrays.asList("n1", "n2", "n3");
+        for (String name : names) {
+            join(name, names);
+        }
+        for (GamePassivator passivator : nodes.values()) {
+            GameHolder holder = passivator.hold(newGame(1));
+            assertTrue(passivator.getRouter().isLocal(holder.getId()));
+            for (GamePassivator other : nodes.values()) {
+                assertEquals(passivator.getRouter().getSelf(), other.getRouter().ownerOf(holder.getId()));
+            }
+        }
+    }
+    
+    @Test
+    public void testJoiningNodeTakesOnlyItsShare() {
+        List<String> names = Arrays.asList("n1", "n2", "n3");
+        for (String name : names) {
+            join(name, names);
+        }
+        Map<String, String> ownerByToken = new HashMap<>();
+        Map<String, Long> hashByToken = new HashMap<>();
+        for (int i = 0; i < GAMES; i++) {
+            GamePassivator passivator = nodes.get(names.get(i % names.size()));
+            Game game = newGame(i);
+            game.dropDown();
+            game.pause();
+            GameHolder holder = passivator.hold(game);
+            holder.setPlayerName("p" + i);
+            ownerByToken.put(holder.getToken(), passivator.getRouter().getSelf());
+            hashByToken.put(holder.getToken(), boardHash(game));
+        }
+        
+        List<String> grown = Arrays.asList("n1", "n2", "n3", "n4");
+        join("n4", grown);
+        int handedOff = 0;
+        for (String name : names) {
+            handedOff += nodes.get(name).getRouter().setNodes(grown);
+        }
+        
+        assertTrue("Moved " + handedOff, Math.abs(handedOff - GAMES / 4) < GAMES / 10);
+        assertEquals(handedOff, nodes.get("n4").getHeldCount());
+        for (Map.Entry<String, String> entry : ownerByToken.entrySet()) {
+            String token = entry.getKey();
+            GameHolder holder = nodes.get(entry.getValue()).findByToken(token);
+            if (holder == null) {
+                // Moved, and only to the new node
+                holder = nodes.get("n4").findByToken(token);
+                assertNotNull(holder);
+                assertTrue(holder.isPassivated());
+            }
+            assertEquals(hashByToken.get(token).longValue(), boardHash(holder.get()));
+            assertTrue(holder.get().isPaused());
+            assertTrue(holder.getPlayerName().startsWith("p"));
+        }
+    }
+    
+    @Test
+    public void testLeavingNodeHandsOverEveryGame() {
+        List<String> names = Arrays.asList("n1", "n2", "n3");
+        for (String name : names) {
+            join(name, names);
+        }
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < GAMES; i++) {
+            tokens.add(nodes.get(names.get(i % names.size())).hold(newGame(i)).getToken());
+        }
+        int keptByOthers = nodes.get("n1").getHeldCount() + nodes.get("n3").getHeldCount();
+        
+        List<String> shrunk = Arrays.asList("n1", "n3");
+        int handedOff = nodes.get("n2").getRouter().setNodes(shrunk);
+        for (String name : shrunk) {
+            assertEquals("Staying nodes keep their games", 0, nodes.get(name).getRouter().setNodes(shrunk));
+        }
+        
+        assertEquals(GAMES / 3, handedOff);
+        assertEquals(0, nodes.get("n2").getHeldCount());
+        assertEquals(keptByOthers + handedOff, nodes.get("n1").getHeldCount() + nodes.get("n3").getHeldCount());
+        for (String token : tokens) {
+            String owner = nodes.get("n1").getRouter().ownerOf(GameHolder.idOf(token));
+            assertNotNull(nodes.get(owner).findByToken(token));
+        }
+    }
+    
+    @Test
+    public void testFailedHandOffKeepsTheGame() {
+        List<String> names = Arrays.asList("n1", "n2");
+        join("n1", names);
+        GamePassivator passivator = nodes.get("n1");
+        GameHolder holder = passivator.hold(newGame(7));
+        String token = holder.getToken();
+        
+        // n9 is not running, so every game it would own stays here
+        int handedOff = passivator.getRouter().setNodes(Arrays.asList("n1", "n9"));
+        boolean moving = !passivator.getRouter().isLocal(holder.getId());
+        assertEquals(0, handedOff);
+        assertNotNull(passivator.findByToken(token));
+        assertEquals(moving, passivator.findByToken(token) != holder);
+    }
+    
+    @Test
+    public void testPinnedGameStaysUntilLetGo() {
+        join("n1", Arrays.asList("n1"));
+        GamePassivator passivator = nodes.get("n1");
+        GameHolder holder = passivator.hold(newGame(3));
+        Game game = holder.get();
+        holder.pin();
+        
+        // n1 leaves, but a socket still plays the game here
+        List<String> rest = Arrays.asList("n2");
+        join("n2", rest);
+        assertEquals(0, passivator.getRouter().setNodes(rest));
+        assertSame(holder, passivator.findByToken(holder.getToken()));
+        assertSame(game, holder.peek());
+        assertFalse(game.isPaused());
+        
+        holder.unpin();
+        assertEquals(1, passivator.getRouter().setNodes(rest));
+        assertNull(passivator.findByToken(holder.getToken()));
+        assertNotNull(nodes.get("n2").findByToken(holder.getToken()));
+    }
+    
+    private void join(String name, List<String> members) {
+        GamePassivator passivator = new GamePassivator(scheduler, 60_000, null);
+        passivator.setRouter(new ClusterRouter(name, members, passivator, transport));
+        nodes.put(name, passivator);
+    }
+    
+    private Game newGame(int seed) {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(seed));
+        game.start();
+        return game;
+    }
+    
+    // Read as the writer, after the commands already queued
+    private static long boardHash(final Game game) {
+        return game.query(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return game.getBoard().getHash();
+            }
+        });
+    }
+}
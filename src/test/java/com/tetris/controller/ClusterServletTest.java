@@ -0,0 +1,244 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+/**
+ * Runs three nodes in embedded servlet containers and talks to them over HTTP
+ */
+public class ClusterServletTest {
+    
+    private static final String SECRET = "s3cret";
+    private static final Pattern VERSION = Pattern.compile("\"version\":\"(\\d+)\"");
+    
+    // Contexts by node base URL
+    private final Map<String, ServletContextHandler> nodes = new LinkedHashMap<>();
+    private final List<Server> servers = new ArrayList<>();
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    
+    @Before
+    public void setUp() throws Exception {
+        List<Integer> ports = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports.add(socket.getLocalPort());
+            }
+        }
+        StringBuilder list = new StringBuilder();
+        for (int port : ports) {
+            list.append(list.length() == 0 ? "" : ",").append("http://127.0.0.1:").append(port);
+        }
+        for (int port : ports) {
+            String self = "http://127.0.0.1:" + port;
+            ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+            context.setContextPath("/");
+            context.setInitParameter(TetrisServlet.CLUSTER_SELF_PARAM, self);
+            context.setInitParameter(TetrisServlet.CLUSTER_NODES_PARAM, list.toString());
+            context.setInitParameter(TetrisServlet.CLUSTER_SECRET_PARAM, SECRET);
+            context.addEventListener(new GameLifecycleListener());
+            ServletHolder tetris = new ServletHolder(new TetrisServlet());
+            tetris.setAsyncSupported(true);
+            context.addServlet(tetris, "/tetris");
+            context.addServlet(new ServletHolder(new ClusterServlet()), ClusterRouter.CLUSTER_PATH);
+            
+            Server server = new Server(port);
+            server.setHandler(context);
+            server.start();
+            servers.add(server);
+            nodes.put(self, context);
+        }
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        clients.shutdownNow();
+        for (Server server : servers) {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void testRequestsReachTheOwnerThroughAnyNode() throws Exception {
+        List<String> urls = new ArrayList<>(nodes.keySet());
+        String owner = urls.get(0);
+        String other = urls.get(1);
+        
+        Response created = get(owner + "/tetris?action=getState", null);
+        assertEquals(200, created.status);
+        String token = created.token();
+        assertNotNull(token);
+        
+        // Another node answers from the owner's game and creates none of its own
+        assertEquals(200, get(other + "/tetris?action=pause", token).status);
+        assertTrue(get(other + "/tetris?action=getState", token).body.contains("\"paused\":true"));
+        assertTrue(get(owner + "/tetris?action=getState", token).body.contains("\"paused\":true"));
+        assertEquals(0, passivator(other).getHeldCount());
+        assertEquals(1, passivator(owner).getHeldCount());
+    }
+    
+    @Test
+    public void testForwardedLongPollWaitsOffTheContainer() throws Exception {
+        List<String> urls = new ArrayList<>(nodes.keySet());
+        String owner = urls.get(0);
+        String other = urls.get(1);
+        final String token = get(owner + "/tetris?action=getState", null).token();
+        get(owner + "/tetris?action=pause", token);
+        Matcher version = VERSION.matcher(get(owner + "/tetris?action=getState", token).body);
+        assertTrue(version.find());
+        
+        final String poll = other + "/tetris?action=getState&wait=1&since=" + version.group(1);
+        Future<Response> answer = clients.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws IOException {
+                return get(poll, token);
+            }
+        });
+        // The poll waits on the owner from a forwarding thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!hasForwardingThread() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("No forwarding thread", hasForwardingThread());
+        assertFalse(answer.isDone());
+        
+        get(owner + "/tetris?action=resume", token);
+        Response resumed = answer.get(5, TimeUnit.SECONDS);
+        assertEquals(200, resumed.status);
+        assertTrue(resumed.body.contains("\"paused\":false"));
+    }
+    
+    @Test
+    public void testLeavingNodeHandsItsGamesOver() throws Exception {
+        List<String> urls = new ArrayList<>(nodes.keySet());
+        String leaving = urls.get(2);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String token = get(leaving + "/tetris?action=getState", null).token();
+            get(leaving + "/tetris?action=pause", token);
+            tokens.add(token);
+        }
+        
+        assertEquals(403, post(leaving + ClusterRouter.CLUSTER_PATH + "?action=nodes&nodes=" + urls.get(0), null)
+                .status);
+        String remaining = urls.get(0) + "," + urls.get(1);
+        for (String node : urls) {
+            Response moved = post(node + ClusterRouter.CLUSTER_PATH + "?action=nodes&nodes=" + remaining, SECRET);
+            assertEquals(200, moved.status);
+            if (node.equals(leaving)) {
+                assertTrue(moved.body.contains("\"handedOff\":5"));
+            }
+        }
+        
+        assertEquals(0, passivator(leaving).getHeldCount());
+        for (String token : tokens) {
+            GamePassivator owner = passivator(passivator(urls.get(0)).getRouter().ownerOf(GameHolder.idOf(token)));
+            assertNotNull(owner.findByToken(token));
+            // Either remaining node serves the game, as it was left
+            for (int i = 0; i < 2; i++) {
+                Response state = get(urls.get(i) + "/tetris?action=getState", token);
+                assertEquals(200, state.status);
+                assertTrue(state.body.contains("\"paused\":true"));
+            }
+        }
+    }
+    
+    private GamePassivator passivator(String node) {
+        return GameLifecycleListener.passivator(nodes.get(node).getServletContext());
+    }
+    
+    // A forwarding thread waiting on the owner, rather than idle in its pool
+    private static boolean hasForwardingThread() {
+        for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+            if (thread.getKey().getName().startsWith("tetris-forward-")) {
+                for (StackTraceElement frame : thread.getValue()) {
+                    if (frame.getClassName().equals(ClusterRouter.class.getName())
+                            && frame.getMethodName().equals("forward")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static final class Response {
+        final int status;
+        final String body;
+        final List<String> cookies;
+        
+        Response(int status, String body, List<String> cookies) {
+            this.status = status;
+            this.body = body;
+            this.cookies = cookies;
+        }
+        
+        String token() {
+            for (String cookie : cookies) {
+                if (cookie.startsWith(GameLifecycleListener.TOKEN_COOKIE + "=")) {
+                    return cookie.substring(GameLifecycleListener.TOKEN_COOKIE.length() + 1).split(";")[0];
+                }
+            }
+            return null;
+        }
+    }
+    
+    private static Response get(String url, String token) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (token != null) {
+            connection.setRequestProperty("Cookie", GameLifecycleListener.TOKEN_COOKIE + "=" + token);
+        }
+        return read(connection);
+    }
+    
+    private static Response post(String url, String secret) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        if (secret != null) {
+            connection.setRequestProperty(ClusterRouter.SECRET_HEADER, secret);
+        }
+        return read(connection);
+    }
+    
+    private static Response read(HttpURLConnection connection) throws IOException {
+        connection.setReadTimeout(10_000);
+        int status = connection.getResponseCode();
+        List<String> cookies = connection.getHeaderFields().get("Set-Cookie");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        connection.disconnect();
+        return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8),
+                cookies == null ? new ArrayList<String>() : cookies);
+    }
+}
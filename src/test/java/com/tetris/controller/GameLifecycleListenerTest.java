@@ -0,0 +1,170 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import com.tetris.model.Game;
+
+public class GameLifecycleListenerTest {
+
+    private static final int SOAK_GAMES = 20_000;
+    
+    private GameLifecycleListener listener;
+    private ServletContext context;
+    private int tickingBefore;
+    private Set<Thread> tickThreadsBefore;
+    
+    @Before
+    public void setUp() {
+        tickThreadsBefore = tickThreads();
+        listener = new GameLifecycleListener();
+        context = stub(ServletContext.class);
+        listener.contextInitialized(new ServletContextEvent(context));
+        tickingBefore = Game.getTickingCount();
+    }
+    
+    @After
+    public void tearDown() {
+        listener.contextDestroyed(new ServletContextEvent(context));
+    }
+    
+    @Test
+    public void testReleasedGameIsShutDown() {
+        GameHolder holder = GameLifecycleListener.createHolder(context, null);
+        Game game = holder.get();
+        assertTrue(game.isTicking());
+        assertEquals(1, GameLifecycleListener.getStats(context).getLive());
+        
+        game.pause();
+        assertEquals(1, GameLifecycleListener.getStats(context).getPaused());
+        
+        GameLifecycleListener.passivator(context).release(holder);
+        
+        assertFalse(game.isTicking());
+        GameLifecycleListener.Stats stats = GameLifecycleListener.getStats(context);
+        assertEquals(0, stats.getLive());
+        assertEquals(0, stats.getPaused());
+        assertEquals(tickingBefore, Game.getTickingCount());
+    }
+    
+    @Test
+    public void testUndeployShutsDownEveryGame() {
+        for (int i = 0; i < 100; i++) {
+            GameLifecycleListener.createHolder(context, null);
+        }
+        assertEquals(tickingBefore + 100, Game.getTickingCount());
+        
+        listener.contextDestroyed(new ServletContextEvent(context));
+        
+        assertEquals(tickingBefore, Game.getTickingCount());
+    }
+    
+    @Test
+    public void testUndeployStopsTheTickThreads() throws InterruptedException {
+        GameLifecycleListener.createHolder(context, null).get().moveLeft();
+        Set<Thread> started = tickThreads();
+        started.removeAll(tickThreadsBefore);
+        assertFalse("The application should run its own tick threads", started.isEmpty());
+        
+        listener.contextDestroyed(new ServletContextEvent(context));
+        
+        for (Thread thread : started) {
+            thread.join(1000);
+            assertFalse(thread.getName() + " outlived the application", thread.isAlive());
+        }
+    }
+    
+    @Test
+    public void testUntrackedGameIsReportedAsLeaked() {
+        Game orphan = new Game(10, 20);
+        orphan.start();
+        try {
+            assertTrue(GameLifecycleListener.getStats(context).getLeaked() >= 1);
+        } finally {
+            orphan.shutdown();
+        }
+    }
+    
+    @Test
+    public void testSoakCreateAndReleaseGames() {
+        Runtime runtime = Runtime.getRuntime();
+        
+        // Warm up so that lazily created threads and classes are in place
+        churn(1000);
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = usedHeap(runtime);
+        
+        churn(SOAK_GAMES);
+        
+        int threadsAfter = Thread.activeCount();
+        long heapAfter = usedHeap(runtime);
+        assertTrue("Threads grew from " + threadsBefore + " to " + threadsAfter, threadsAfter <= threadsBefore + 2);
+        assertTrue("Heap grew by " + (heapAfter - heapBefore) + " bytes", heapAfter - heapBefore < 8L << 20);
+        assertEquals(tickingBefore, Game.getTickingCount());
+        assertEquals(0, GameLifecycleListener.passivator(context).getHeldCount());
+    }
+    
+    private void churn(int games) {
+        for (int i = 0; i < games; i++) {
+            GameHolder holder = GameLifecycleListener.createHolder(context, null);
+            Game game = holder.get();
+            game.moveLeft();
+            game.dropDown();
+            GameLifecycleListener.passivator(context).release(holder);
+        }
+    }
+    
+    private static Set<Thread> tickThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("tetris-tick")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+    
+    private static long usedHeap(Runtime runtime) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    // Attribute-only stand-in for a servlet context
+    private static <T> T stub(Class<T> type) {
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getAttribute":
+                                return attributes.get(args[0]);
+                            case "setAttribute":
+                                attributes.put((String) args[0], args[1]);
+                                return null;
+                            case "removeAttribute":
+                                attributes.remove(args[0]);
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return null;
+                        }
+                    }
+                }));
+    }
+}
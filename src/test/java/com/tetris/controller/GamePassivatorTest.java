@@ -0,0 +1,154 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.util.ArrayList;
+import java.util.List;
+import com.tetris.leaderboard.Leaderboard;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class GamePassivatorTest {
+
+    private static final int SESSIONS = 5000;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 512, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testAbandonedGamesCostKilobytesNotTicks() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 50, null);
+        
+        List<GameHolder> holders = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(i));
+            game.start();
+            holders.add(passivator.hold(game));
+        }
+        Thread.sleep(100);
+        passivator.sweep();
+        
+        assertEquals(SESSIONS, passivator.getPassivatedCount());
+        assertEquals("Only the sweep should still be scheduled", 1, scheduler.getScheduledCount());
+        long snapshotBytes = 0;
+        for (GameHolder holder : holders) {
+            snapshotBytes += holder.getSnapshotBytes();
+        }
+        assertTrue("Snapshots take " + snapshotBytes + " bytes", snapshotBytes <= SESSIONS * 129L);
+        
+        passivator.shutdown();
+        assertEquals(0, passivator.getHeldCount());
+    }
+    
+    @Test
+    public void testGameIsRestoredOnNextRequest() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 20, null);
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(9));
+        game.dropDown();
+        game.start();
+        GameHolder holder = passivator.hold(game);
+        
+        Thread.sleep(50);
+        passivator.sweep();
+        assertTrue(holder.isPassivated());
+        // The passivated game no longer ticks
+        int[][] grid = game.getBoard().getGrid();
+        
+        Game restored = holder.get();
+        assertNotSame(game, restored);
+        assertFalse(holder.isPassivated());
+        assertTrue("A restored game comes back paused", restored.isPaused());
+        assertArrayEquals(grid, restored.getBoard().getGrid());
+        
+        // Activity keeps the game live
+        assertEquals(0, passivator.sweep());
+        passivator.shutdown();
+    }
+    
+    @Test
+    public void testSnapshotsCanLiveOnDisk() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 20, folder.getRoot().toPath());
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.uniform(1)));
+        
+        Thread.sleep(50);
+        passivator.sweep();
+        assertTrue(holder.isPassivated());
+        assertEquals(0, holder.getSnapshotBytes());
+        assertEquals(1, folder.getRoot().list().length);
+        
+        assertNotNull(holder.get());
+        assertEquals("The snapshot file is removed once restored", 0, folder.getRoot().list().length);
+        passivator.shutdown();
+    }
+    
+    @Test
+    public void testPinnedGameStaysLive() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 20, null);
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.uniform(2)));
+        holder.pin();
+        
+        Thread.sleep(50);
+        passivator.sweep();
+        assertFalse(holder.isPassivated());
+        
+        holder.unpin();
+        passivator.shutdown();
+    }
+    
+    @Test
+    public void testFinalScoresReachTheLeaderboard() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 20, null);
+        Leaderboard leaderboard = new Leaderboard();
+        passivator.setLeaderboard(leaderboard);
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.uniform(3)));
+        assertTrue(holder.setPlayerName("ann"));
+        assertFalse(holder.setPlayerName("<script>"));
+        
+        // A restored game reports its end too
+        Thread.sleep(50);
+        passivator.sweep();
+        Game game = holder.get();
+        game.resume();
+        while (!game.isGameOver()) {
+            game.dropDown();
+        }
+        assertEquals(game.getBoard().getScore(), leaderboard.get("ann").getScore());
+        assertEquals(1, leaderboard.rankOf("ann"));
+        passivator.shutdown();
+    }
+    
+    @Test
+    public void testAbandonedGamesExpire() throws InterruptedException {
+        GamePassivator passivator = new GamePassivator(scheduler, 20, 60, null);
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.uniform(4)));
+        GameHolder pinned = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.uniform(5)));
+        pinned.pin();
+        assertSame(holder, passivator.findByToken(holder.getToken()));
+        assertNull("The public id is not a token", passivator.findByToken(holder.getId()));
+        
+        Thread.sleep(100);
+        passivator.sweep();
+        assertNull(passivator.findByToken(holder.getToken()));
+        assertSame(pinned, passivator.findByToken(pinned.getToken()));
+        
+        pinned.unpin();
+        passivator.shutdown();
+    }
+}
@@ -0,0 +1,94 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.tetris.model.Board;
+import com.tetris.model.Game;
+import java.util.List;
+import java.util.Map;
+
+public class GameStateEncoderTest {
+    
+    private Game game;
+    
+    @Before
+    public void setUp() {
+        game = new Game(10, 20);
+        for (int i = 0; i < 5; i++) {
+            game.dropDown();
+        }
+        game.pause();
+    }
+    
+    @After
+    public void tearDown() {
+        game.shutdown();
+    }
+    
+    @Test
+    public void testBinaryFrameFitsInHundredBytes() {
+        byte[] frame = GameStateEncoder.getBinaryState(game);
+        
+        assertEquals(97, frame.length);
+        assertTrue(frame.length < 100);
+    }
+    
+    @Test
+    public void testBinaryFrameRoundTrip() {
+        Board board = game.getBoard();
+        byte[] frame = GameStateEncoder.getBinaryState(game);
+        
+        assertEquals(GameStateEncoder.BINARY_FORMAT, frame[0]);
+        assertEquals(10, frame[1]);
+        assertEquals(20, frame[2]);
+        assertEquals(2, frame[3]); // paused, not over
+        assertEquals(board.getScore(), readInt(frame, 4));
+        assertEquals(game.getLevel(), ((frame[8] & 0xFF) << 8) | (frame[9] & 0xFF));
+        assertEquals(game.getNextShape().getShapeType(), frame[10]);
+        long version = ((long) readInt(frame, 12) << 32) | (readInt(frame, 16) & 0xFFFFFFFFL);
+        assertEquals(board.getVersion(), version);
+        assertEquals(board.getPieceType() * 4 + board.getPieceRotation(), frame[11]);
+        assertEquals(board.getPieceX(), frame[20]);
+        assertEquals(board.getGhostY(), frame[21]);
+        
+        byte[] types = new byte[200];
+        board.fillCellTypes(types);
+        int occupied = 0;
+        for (int cell = 0; cell < types.length; cell++) {
+            int bit = GameStateEncoder.BINARY_HEADER_BYTES * 8 + cell * GameStateEncoder.BITS_PER_CELL;
+            int word = (frame[bit >>> 3] & 0xFF) | (bit / 8 + 1 < frame.length ? (frame[bit / 8 + 1] & 0xFF) << 8 : 0);
+            int value = (word >>> (bit & 7)) & 0x7;
+            assertEquals("cell " + cell, types[cell], value);
+            if (value != 0) {
+                occupied++;
+            }
+        }
+        assertTrue("Dropped pieces should show up in the frame", occupied >= 20);
+    }
+    
+    @Test
+    public void testJsonGhostIsWhereTheDropLands() {
+        Board board = game.getBoard();
+        List<?> ghost = (List<?>) GameStateEncoder.getGameState(game, GameStateEncoder.NO_VERSION).get("ghost");
+        
+        game.resume();
+        game.dropDown();
+        game.pause();
+        byte[] types = new byte[200];
+        board.fillCellTypes(types);
+        assertEquals(4, ghost.size());
+        for (Object block : ghost) {
+            Map<?, ?> cell = (Map<?, ?>) block;
+            int x = (Integer) cell.get("x");
+            int y = (Integer) cell.get("y");
+            assertNotEquals("The drop should fill " + x + "," + y, 0, types[y * 10 + x]);
+        }
+    }
+    
+    private static int readInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+}
\ No newline at end of file
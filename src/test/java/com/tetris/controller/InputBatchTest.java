@@ -0,0 +1,113 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import com.google.gson.Gson;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.Histogram;
+import com.tetris.util.TickScheduler;
+
+public class InputBatchTest {
+
+    private TickScheduler scheduler;
+    private GamePassivator passivator;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 512, 1);
+        passivator = new GamePassivator(scheduler, GamePassivator.DEFAULT_IDLE_MILLIS, null);
+    }
+    
+    @After
+    public void tearDown() {
+        passivator.shutdown();
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testResentInputsAreAppliedOnce() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(4));
+        GameHolder holder = passivator.hold(game);
+        int startX = game.getBoard().getPieceX();
+        
+        // Each post resends the inputs not yet acknowledged, and the second
+        // post overlaps the first
+        assertEquals(2, holder.applyBatch(batch("page", 1, "moveLeft", "moveLeft")));
+        assertEquals(3, holder.applyBatch(batch("page", 1, "moveLeft", "moveLeft", "moveRight")));
+        assertEquals(3, holder.applyBatch(batch("page", 2, "moveLeft", "moveRight")));
+        
+        assertEquals(startX - 1, game.getBoard().getPieceX());
+    }
+    
+    @Test
+    public void testNewStreamStartsTheSequenceOver() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(4));
+        GameHolder holder = passivator.hold(game);
+        int startX = game.getBoard().getPieceX();
+        
+        assertEquals(5, holder.applyBatch(batch("first", 5, "moveRight")));
+        // A reloaded page numbers its inputs from 1 again
+        assertEquals(1, holder.applyBatch(batch("second", 1, "moveRight")));
+        
+        assertEquals(startX + 2, game.getBoard().getPieceX());
+    }
+    
+    @Test
+    public void testValidation() {
+        assertTrue(batch("page", 1, "rotate", "dropDown").isValid());
+        assertFalse("Restarting is not an input", batch("page", 1, "newGame").isValid());
+        assertFalse(batch(null, 1, "rotate").isValid());
+        assertFalse(batch("page", 0, "rotate").isValid());
+        
+        // Sequence numbers must strictly increase
+        InputBatch repeated = batch("page", 1, "rotate", "rotate");
+        repeated.inputs.get(1).seq = 1;
+        assertFalse(repeated.isValid());
+        InputBatch reordered = batch("page", 1, "rotate", "rotate", "rotate");
+        reordered.inputs.get(2).seq = 2;
+        reordered.inputs.get(1).seq = 3;
+        assertFalse(reordered.isValid());
+        
+        String[] actions = new String[InputBatch.MAX_INPUTS + 1];
+        Arrays.fill(actions, "rotate");
+        assertFalse(batch("page", 1, actions).isValid());
+    }
+    
+    @Test
+    public void testKeyTimesGiveTheDeliveryDelay() {
+        InputBatch batch = new Gson().fromJson("{\"stream\":\"page\",\"inputs\":["
+                + "{\"seq\":1,\"action\":\"moveLeft\",\"t\":1000},"
+                + "{\"seq\":2,\"action\":\"moveRight\",\"t\":1250}]}", InputBatch.class);
+        assertTrue(batch.isValid());
+        assertEquals(1000, batch.inputs.get(0).time);
+        assertEquals(1250, batch.latestTime());
+        
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(4));
+        GameHolder holder = passivator.hold(game);
+        long before = RequestMetrics.INPUT_DELAY_NANOS.snapshot().getCount();
+        holder.applyBatch(batch);
+        Histogram.Snapshot delays = RequestMetrics.INPUT_DELAY_NANOS.snapshot();
+        // Both inputs were new; the first waited 250 ms for the second
+        assertEquals(before + 2, delays.getCount());
+        assertTrue(delays.getMax() >= TimeUnit.MILLISECONDS.toNanos(250) * 99 / 100);
+    }
+    
+    private static InputBatch batch(String stream, long firstSeq, String... actions) {
+        InputBatch batch = new InputBatch();
+        batch.stream = stream;
+        batch.inputs = new ArrayList<>();
+        for (int i = 0; i < actions.length; i++) {
+            InputBatch.Input input = new InputBatch.Input();
+            input.seq = firstSeq + i;
+            input.action = actions[i];
+            batch.inputs.add(input);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,123 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class LongPollHubTest {
+    
+    private TickScheduler scheduler;
+    private GamePassivator passivator;
+    // Tasks handed to the container by AsyncContext.start, run by the test
+    private final List<Runnable> started = new ArrayList<>();
+    private final StringWriter body = new StringWriter();
+    private boolean completed;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 64, 1);
+        passivator = new GamePassivator(scheduler, 60_000, null);
+    }
+    
+    @After
+    public void tearDown() {
+        passivator.shutdown();
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testWriterOnlyHandsTheAnswerToTheContainer() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(1));
+        LongPollHub hub = LongPollHub.forGame(passivator.hold(game), game);
+        assertTrue(hub.park(request(), version(game), false));
+        
+        // Applied inline, so this thread is the writer when the hub is told
+        game.moveLeft();
+        assertEquals(1, started.size());
+        assertEquals("", body.toString());
+        assertFalse(completed);
+        
+        started.get(0).run();
+        assertTrue(body.toString().contains("\"version\""));
+        assertTrue(completed);
+    }
+    
+    @Test
+    public void testPauseAndResumeWakeWaiters() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(2));
+        LongPollHub hub = LongPollHub.forGame(passivator.hold(game), game);
+        assertTrue(hub.park(request(), version(game), false));
+        
+        game.pause();
+        assertEquals(1, started.size());
+        started.get(0).run();
+        assertTrue(body.toString().contains("\"paused\":true"));
+        
+        // A poll parked while paused hears about the resume
+        assertTrue(hub.park(request(), version(game), false));
+        game.resume();
+        assertEquals(2, started.size());
+    }
+    
+    private static long version(final Game game) {
+        return game.query(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return game.getBoard().getVersion();
+            }
+        });
+    }
+    
+    // A request whose async context records what the hub does with it
+    private HttpServletRequest request() {
+        final PrintWriter writer = new PrintWriter(body, true);
+        final HttpServletResponse response = stub(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "getWriter".equals(method.getName()) ? writer : null;
+            }
+        });
+        final AsyncContext context = stub(AsyncContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "start":
+                        started.add((Runnable) args[0]);
+                        return null;
+                    case "getResponse":
+                        return response;
+                    case "complete":
+                        completed = true;
+                        return null;
+                    default:
+                        return null;
+                }
+            }
+        });
+        return stub(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "startAsync".equals(method.getName()) ? context : null;
+            }
+        });
+    }
+    
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+}
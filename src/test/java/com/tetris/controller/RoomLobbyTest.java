@@ -0,0 +1,95 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+import java.util.Map;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class RoomLobbyTest {
+    
+    private TickScheduler scheduler;
+    private GamePassivator passivator;
+    private RoomLobby lobby;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 64, 1);
+        passivator = new GamePassivator(scheduler, 20, null);
+        lobby = passivator.getRooms();
+    }
+    
+    @After
+    public void tearDown() {
+        passivator.shutdown();
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testMatchStartsWhenEverySeatIsTaken() throws InterruptedException {
+        GameHolder ann = hold(1);
+        GameHolder bob = hold(2);
+        GameHolder cat = hold(3);
+        assertNull("Too few seats", lobby.open(ann, 1));
+        
+        RoomLobby.Table table = lobby.open(ann, 2);
+        assertNotNull(table);
+        assertFalse(ann.isInMatch());
+        assertNull("Already seated", lobby.open(ann, 2));
+        assertNull(lobby.join(bob, "NOSUCH"));
+        
+        assertSame(table, lobby.join(bob, table.getCode().toLowerCase()));
+        assertTrue(ann.isInMatch());
+        assertTrue(bob.isInMatch());
+        // Dealt the same pieces, whatever their games were dealt before
+        assertEquals(ann.get().getPieceGenerator().getSeed(), bob.get().getPieceGenerator().getSeed());
+        assertEquals(PieceGenerator.Distribution.SEVEN_BAG, bob.get().getPieceGenerator().getDistribution());
+        assertEquals(true, table.describe().get("started"));
+        assertNull("The table is full", lobby.join(cat, table.getCode()));
+        assertNull(lobby.tableOf(cat));
+        
+        // Games in a match are not parked however long they sit
+        Thread.sleep(50);
+        passivator.sweep();
+        assertFalse(ann.isPassivated());
+        assertFalse(bob.isPassivated());
+    }
+    
+    @Test
+    public void testFinishedMatchReleasesItsGames() throws InterruptedException {
+        GameHolder ann = hold(4);
+        GameHolder bob = hold(5);
+        RoomLobby.Table table = lobby.open(ann, 2);
+        lobby.join(bob, table.getCode());
+        
+        Game loser = bob.get();
+        while (!loser.isGameOver()) {
+            loser.dropDown();
+        }
+        Map<String, Object> state = table.describe();
+        assertEquals(true, state.get("finished"));
+        assertEquals(0, state.get("winner"));
+        assertEquals(2, ((List<?>) state.get("players")).size());
+        
+        assertEquals(1, lobby.sweep());
+        assertEquals(0, lobby.getTableCount());
+        assertFalse(ann.isInMatch());
+        assertNull(lobby.tableOf(bob));
+        assertTrue("The winner plays on", ann.get().isTicking());
+        
+        // Unpinned again, so idle games are parked as usual
+        Thread.sleep(50);
+        passivator.sweep();
+        assertTrue(ann.isPassivated());
+    }
+    
+    private GameHolder hold(int seed) {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(seed));
+        game.start();
+        return passivator.hold(game);
+    }
+}
@@ -0,0 +1,150 @@
+package com.tetris.controller;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class SpectatorHubTest {
+    
+    private TickScheduler scheduler;
+    private GamePassivator passivator;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(10, 64, 1);
+        passivator = new GamePassivator(scheduler, 60_000, null);
+    }
+    
+    @After
+    public void tearDown() {
+        passivator.shutdown();
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testEachChangeIsEncodedOnceForEverySpectator() {
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.sevenBag(1)));
+        SpectatorHub hub = holder.getSpectators();
+        List<RecordingSink> sinks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            RecordingSink sink = new RecordingSink(true);
+            sinks.add(sink);
+            hub.join(sink);
+        }
+        assertEquals("Joining should reuse the current frame", 1, hub.getFramesEncoded());
+        
+        Game game = holder.get();
+        for (int i = 0; i < 10; i++) {
+            game.moveLeft();
+            game.rotate();
+        }
+        game.dropDown();
+        
+        long frames = hub.getFramesEncoded();
+        assertTrue("Moves should have been encoded", frames > 1);
+        for (RecordingSink sink : sinks) {
+            assertEquals(frames, sink.frames.size());
+        }
+        assertEquals(frames * sinks.size(), hub.getFramesSent());
+        assertEquals(0, hub.getFramesSkipped());
+        
+        // Every spectator saw the same bytes, each frame a new board version
+        long previous = -1;
+        for (int f = 0; f < frames; f++) {
+            ByteBuffer first = sinks.get(0).frames.get(f);
+            assertTrue(first.isReadOnly());
+            assertTrue(versionOf(first) > previous);
+            previous = versionOf(first);
+            assertEquals(first, sinks.get(sinks.size() - 1).frames.get(f));
+        }
+        assertArrayEquals(GameStateEncoder.getBinaryState(game), bytesOf(sinks.get(0).frames.get((int) frames - 1)));
+    }
+    
+    @Test
+    public void testSlowSpectatorSkipsToTheLatestFrame() {
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.sevenBag(2)));
+        SpectatorHub hub = holder.getSpectators();
+        RecordingSink fast = new RecordingSink(true);
+        RecordingSink slow = new RecordingSink(false);
+        hub.join(fast);
+        hub.join(slow);
+        
+        Game game = holder.get();
+        for (int i = 0; i < 3; i++) {
+            game.moveRight();
+            game.rotate();
+        }
+        assertEquals("The first frame is still being written", 1, slow.frames.size());
+        assertEquals(hub.getFramesEncoded(), fast.frames.size());
+        
+        // Once the write completes only the newest frame follows
+        slow.complete();
+        assertEquals(2, slow.frames.size());
+        assertArrayEquals(bytesOf(fast.frames.get(fast.frames.size() - 1)), bytesOf(slow.frames.get(1)));
+        assertEquals(hub.getFramesEncoded() - 2, hub.getFramesSkipped());
+    }
+    
+    @Test
+    public void testWatchedGameIsNotPassivated() {
+        GameHolder holder = passivator.hold(new Game(10, 20, scheduler, PieceGenerator.sevenBag(3)));
+        SpectatorHub hub = holder.getSpectators();
+        SpectatorHub.Spectator first = hub.join(new RecordingSink(true));
+        SpectatorHub.Spectator second = hub.join(new RecordingSink(true));
+        long later = System.nanoTime() + 1_000_000_000L;
+        
+        hub.leave(first);
+        assertFalse(holder.passivateIfIdle(later, 0));
+        assertEquals(1, hub.getSpectatorCount());
+        
+        hub.leave(second);
+        assertTrue(first.isClosed());
+        assertTrue(holder.passivateIfIdle(later, 0));
+        assertSame(holder, passivator.find(holder.getId()));
+    }
+    
+    private static long versionOf(ByteBuffer frame) {
+        return frame.getLong(12);
+    }
+    
+    private static byte[] bytesOf(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    // Keeps every frame; a slow sink finishes its write only when told to
+    private static final class RecordingSink implements SpectatorHub.Sink {
+        final List<ByteBuffer> frames = new ArrayList<>();
+        private final boolean fast;
+        private SendHandler pending;
+        
+        RecordingSink(boolean fast) {
+            this.fast = fast;
+        }
+        
+        @Override
+        public void send(ByteBuffer frame, SendHandler handler) {
+            frames.add(frame);
+            if (fast) {
+                handler.onResult(new SendResult());
+            } else {
+                pending = handler;
+            }
+        }
+        
+        void complete() {
+            SendHandler handler = pending;
+            pending = null;
+            handler.onResult(new SendResult());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.tetris.journal;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import com.tetris.model.Board;
+import com.tetris.model.Game;
+import com.tetris.model.PieceGenerator;
+import com.tetris.util.TickScheduler;
+
+public class InputJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        // Ticks a minute apart, so gravity never races the inputs of a test
+        scheduler = new TickScheduler(60_000, 64, 1);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testRecordedGameReplaysToSameBoard() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(2024));
+        
+        try (InputJournal journal = new InputJournal(directory)) {
+            journal.record(game);
+            play(game, 30);
+            game.restart();
+            play(game, 10);
+        }
+        game.shutdown();
+        
+        List<JournalReader.GameLog> games = JournalReader.read(directory);
+        assertEquals(1, games.size());
+        JournalReader.GameLog log = games.get(0);
+        assertEquals(2024, log.getSeed());
+        assertEquals(PieceGenerator.Distribution.SEVEN_BAG, log.getDistribution());
+        
+        Board replayed = log.replay();
+        assertArrayEquals(game.getBoard().getGrid(), replayed.getGrid());
+        assertEquals(game.getBoard().getScore(), replayed.getScore());
+    }
+    
+    @Test
+    public void testConcurrentGamesAcrossSegments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final int threads = 4;
+        final int inputsPerGame = 5000;
+        List<Game> games = new ArrayList<>();
+        
+        // Small segments force many roll-overs while the threads are writing
+        try (final InputJournal journal = new InputJournal(directory, 4096, 5)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(i));
+                games.add(game);
+                journal.record(game);
+                workers.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int n = 0; n < inputsPerGame; n++) {
+                            if (n % 3 == 0) {
+                                game.rotate();
+                            } else if (n % 3 == 1) {
+                                game.moveLeft();
+                            } else {
+                                game.moveRight();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        
+        assertTrue("Expected several segments", folder.getRoot().list().length > 4);
+        List<JournalReader.GameLog> logs = JournalReader.read(directory);
+        assertEquals(threads, logs.size());
+        for (int i = 0; i < threads; i++) {
+            assertEquals(inputsPerGame, logs.get(i).getInputs().length);
+            assertArrayEquals(games.get(i).getBoard().getGrid(), logs.get(i).replay().getGrid());
+        }
+    }
+    
+    private static void play(Game game, int pieces) {
+        for (int i = 0; i < pieces; i++) {
+            for (int turns = i % 4; turns > 0; turns--) {
+                game.rotate();
+            }
+            for (int moves = i % 5; moves > 0; moves--) {
+                if (i % 2 == 0) {
+                    game.moveLeft();
+                } else {
+                    game.moveRight();
+                }
+            }
+            game.dropDown();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.tetris.leaderboard;
+
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class LeaderboardTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testOnlyAPlayersBestCounts() {
+        Leaderboard leaderboard = new Leaderboard();
+        assertTrue(leaderboard.submit("ann", 500));
+        assertTrue(leaderboard.submit("bob", 800));
+        assertFalse(leaderboard.submit("ann", 300));
+        assertTrue(leaderboard.submit("ann", 900));
+        
+        assertEquals(2, leaderboard.size());
+        assertEquals(900, leaderboard.get("ann").getScore());
+        assertEquals(1, leaderboard.rankOf("ann"));
+        assertEquals(2, leaderboard.rankOf("bob"));
+        assertEquals(0, leaderboard.rankOf("cat"));
+    }
+    
+    @Test
+    public void testEqualScoresRankByWhoGotThereFirst() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.submit("late", 100);
+        leaderboard.submit("early", 50);
+        leaderboard.submit("early", 100);
+        assertEquals("[late=100, early=100]", leaderboard.top(5).toString());
+        assertEquals(2, leaderboard.rankOf("early"));
+    }
+    
+    @Test
+    public void testRanksAndTopMatchASortedList() {
+        Leaderboard leaderboard = new Leaderboard();
+        Map<String, Integer> best = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 20_000; i++) {
+            String player = "p" + random.nextInt(3000);
+            int score = random.nextInt(5000);
+            leaderboard.submit(player, score);
+            Integer current = best.get(player);
+            if (current == null || score > current) {
+                best.put(player, score);
+            }
+        }
+        
+        List<Integer> scores = new ArrayList<>(best.values());
+        Collections.sort(scores, Collections.reverseOrder());
+        List<Leaderboard.Entry> top = leaderboard.top(50);
+        assertEquals(50, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(scores.get(i).intValue(), top.get(i).getScore());
+        }
+        for (Map.Entry<String, Integer> entry : best.entrySet()) {
+            int rank = leaderboard.rankOf(entry.getKey());
+            // Ties fall in submission order, so the rank lands among the equal scores
+            assertEquals(entry.getValue(), scores.get(rank - 1));
+            assertTrue(rank == 1 || scores.get(rank - 2) >= entry.getValue());
+        }
+        assertEquals(best.size(), leaderboard.size());
+    }
+    
+    @Test
+    public void testConcurrentSubmissionsKeepEveryBest() throws InterruptedException {
+        final Leaderboard leaderboard = new Leaderboard();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50_000; i++) {
+                        leaderboard.submit("p" + (i % 1000), i + offset);
+                        if (i % 100 == 0) {
+                            leaderboard.top(10);
+                            leaderboard.rankOf("p" + i % 1000);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1000, leaderboard.size());
+        // Each player's last submission from the last thread is the best
+        assertEquals(49_999 + 3, leaderboard.get("p999").getScore());
+        assertEquals(1, leaderboard.rankOf("p999"));
+        assertEquals(1000, leaderboard.rankOf("p0"));
+    }
+    
+    @Test
+    public void testReopeningReplaysTheLog() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            leaderboard.submit("ann", 500);
+            leaderboard.submit("bob", 500);
+            leaderboard.submit("ann", 700);
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            assertEquals("[ann=700, bob=500]", leaderboard.top(10).toString());
+            // Ties still rank by the original order after a restart
+            leaderboard.submit("cat", 500);
+            assertEquals(3, leaderboard.rankOf("cat"));
+        }
+    }
+    
+    @Test
+    public void testCompactionKeepsOnlyTheBests() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        List<Leaderboard.Entry> top;
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            for (int score = 0; score < 5000; score++) {
+                leaderboard.submit("p" + score % 10, score);
+            }
+            leaderboard.flush();
+            long before = logBytes(directory);
+            leaderboard.compact();
+            assertTrue("Log should shrink from " + before, logBytes(directory) < before / 100);
+            leaderboard.submit("p0", 10_000);
+            top = leaderboard.top(10);
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            assertEquals(top.toString(), leaderboard.top(10).toString());
+        }
+    }
+    
+    @Test
+    public void testTornRecordEndsTheReplay() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            leaderboard.submit("ann", 500);
+        }
+        // Half a record, as a crash mid-write would leave it
+        Path segment = onlyFile(directory);
+        try (OutputStream out = Files.newOutputStream(segment, StandardOpenOption.APPEND)) {
+            out.write(new byte[] {0, 3, 'b', 'o'});
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            assertEquals("[ann=500]", leaderboard.top(10).toString());
+            leaderboard.submit("bob", 600);
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(directory)) {
+            assertEquals("[bob=600, ann=500]", leaderboard.top(10).toString());
+        }
+    }
+    
+    private static long logBytes(Path directory) throws IOException {
+        long bytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                bytes += Files.size(path);
+            }
+        }
+        return bytes;
+    }
+    
+    private static Path onlyFile(Path directory) throws IOException {
+        Path found = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (Files.size(path) > 0) {
+                    assertNull("Expected one non-empty file", found);
+                    found = path;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -1,7 +1,10 @@
 package com.tetris.model;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
 
 public class BoardTest {
     
@@ -153,4 +156,410 @@ public class BoardTest {
         // Check that the position is invalid
         assertFalse(board.isValidPosition(shape));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testDefaultModeIsBitboard() {
+        assertEquals(Board.Mode.BITBOARD, new Board(10, 20).getMode());
+        assertEquals(Board.Mode.GRID, new Board(65, 20).getMode());
+    }
+    
+    @Test
+    public void testFullRowIsClearedInBothModes() {
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board board = new Board(4, 4, mode);
+            
+            // A horizontal I piece fills the bottom row of a 4-wide board
+            Shape shape = new Shape(Shape.I_SHAPE);
+            board.setCurrentShape(shape);
+            while (board.moveShapeDown()) {
+                // Drop to the bottom
+            }
+            
+            assertEquals(mode + " should score a single line", 100, board.getScore());
+            int[][] grid = board.getGrid();
+            for (int col = 0; col < 4; col++) {
+                assertEquals(0, grid[3][col]);
+            }
+        }
+    }
+    
+    @Test
+    public void testSplitClearKeepsTheRowBetween() {
+        for (Board.Mode mode : Board.Mode.values()) {
+            // Rows 2, 4 and 5 lack only column 0; row 3 also lacks column 2,
+            // and row 1 holds a single marker block
+            Board board = new Board(4, 6, mode);
+            byte[] cells = new byte[4 * 6];
+            cells[1 * 4 + 3] = 1 + Shape.T_SHAPE;
+            for (int row = 2; row < 6; row++) {
+                for (int col = 1; col < 4; col++) {
+                    cells[row * 4 + col] = row == 3 && col == 2 ? 0 : (byte) (1 + Shape.O_SHAPE);
+                }
+            }
+            board.restore(cells, Board.NO_PIECE, 0, 0, 0, Shape.I_SHAPE, 0, 0, 0, false);
+            
+            // A vertical I piece fills column 0 of rows 2 to 5
+            board.setCurrentShape(Shape.at(Shape.I_SHAPE, 1, 0, 3));
+            assertFalse(board.moveShapeDown());
+            
+            assertEquals(mode + " should clear three lines", 3, board.getLinesCleared());
+            int[][] grid = lockedCells(board);
+            int i = Tetromino.color(Shape.I_SHAPE);
+            int o = Tetromino.color(Shape.O_SHAPE);
+            assertArrayEquals(new int[] {i, o, 0, o}, grid[5]);
+            assertArrayEquals(new int[] {0, 0, 0, Tetromino.color(Shape.T_SHAPE)}, grid[4]);
+            for (int row = 0; row < 4; row++) {
+                assertArrayEquals(mode + " row " + row, new int[4], grid[row]);
+            }
+        }
+    }
+    
+    @Test
+    public void testTallBoardsMatchAcrossModes() {
+        Random random = new Random(5);
+        Board grid = new Board(6, 400, Board.Mode.GRID);
+        Board bitboard = new Board(6, 400, Board.Mode.BITBOARD);
+        
+        for (int piece = 0; piece < 2000 && !grid.isGameOver(); piece++) {
+            Shape shape = Shape.at(random.nextInt(7), random.nextInt(4), 0, 2);
+            shape.setPosition(random.nextInt(6 - shape.getWidth() + 1), 0);
+            grid.setCurrentShape(shape.getCopy());
+            bitboard.setCurrentShape(shape.getCopy());
+            while (grid.moveShapeDown()) {
+                assertTrue(bitboard.moveShapeDown());
+            }
+            assertFalse(bitboard.moveShapeDown());
+        }
+        
+        assertTrue("Lines should have been cleared", grid.getLinesCleared() > 0);
+        assertEquals(grid.getLinesCleared(), bitboard.getLinesCleared());
+        assertArrayEquals(lockedCells(grid), lockedCells(bitboard));
+    }
+    
+    @Test
+    public void testDropDistanceMatchesStepping() {
+        Random random = new Random(8);
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board skyline = new Board(10, 20, mode, PieceGenerator.sevenBag(8));
+            Board stepped = new Board(10, 20, mode, PieceGenerator.sevenBag(8));
+            skyline.createNewShape();
+            stepped.createNewShape();
+            
+            for (int piece = 0; piece < 2000; piece++) {
+                if (skyline.isGameOver()) {
+                    skyline = new Board(10, 20, mode, PieceGenerator.sevenBag(piece));
+                    stepped = new Board(10, 20, mode, PieceGenerator.sevenBag(piece));
+                    skyline.createNewShape();
+                    stepped.createNewShape();
+                }
+                // Turn and shift the piece, and sometimes let it fall part of
+                // the way and slide it sideways under an overhang
+                int turns = random.nextInt(4);
+                int shift = random.nextInt(9) - 4;
+                int fall = random.nextInt(3) == 0 ? random.nextInt(20) : 0;
+                for (Board board : new Board[] {skyline, stepped}) {
+                    for (int i = 0; i < turns; i++) {
+                        board.rotateShape();
+                    }
+                    for (int i = 0; i < Math.abs(shift); i++) {
+                        if (shift < 0) {
+                            board.moveShapeLeft();
+                        } else {
+                            board.moveShapeRight();
+                        }
+                    }
+                    for (int i = 0; i < fall && board.getDropDistance() > 0; i++) {
+                        board.moveShapeDown();
+                    }
+                    board.moveShapeLeft();
+                }
+                
+                int expected = 0;
+                int startY = stepped.getPieceY();
+                while (stepped.moveShapeDown()) {
+                    expected++;
+                }
+                assertEquals("Ghost row", startY + expected, skyline.getGhostY());
+                assertEquals(expected, skyline.hardDrop());
+                assertArrayEquals(stepped.getGrid(), skyline.getGrid());
+            }
+        }
+    }
+    
+    @Test
+    public void testHashFollowsLockedCells() {
+        Random random = new Random(12);
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board board = new Board(10, 20, mode, PieceGenerator.sevenBag(12));
+            board.createNewShape();
+            assertEquals("An empty board hashes to 0", 0, board.getHash());
+            
+            java.util.Set<Long> hashes = new java.util.HashSet<>();
+            int placed = 0;
+            for (int piece = 0; piece < 300 && !board.isGameOver(); piece++) {
+                for (int turns = random.nextInt(4); turns > 0; turns--) {
+                    board.rotateShape();
+                }
+                for (int shift = random.nextInt(10) - 5; shift != 0; shift -= Integer.signum(shift)) {
+                    if (shift < 0) {
+                        board.moveShapeLeft();
+                    } else {
+                        board.moveShapeRight();
+                    }
+                }
+                board.hardDrop();
+                placed++;
+                hashes.add(board.getHash());
+                
+                // Rebuilding the same cells from scratch gives the same hash
+                byte[] cells = new byte[200];
+                for (int row = 0; row < 20; row++) {
+                    for (int col = 0; col < 10; col++) {
+                        cells[row * 10 + col] = (byte) (board.lockedTypeAt(col, row) + 1);
+                    }
+                }
+                Board rebuilt = new Board(10, 20, mode, PieceGenerator.uniform(0));
+                rebuilt.restore(cells, Board.NO_PIECE, 0, 0, 0, Board.NO_PIECE, 0, 0, 0, false);
+                assertEquals(mode + " piece " + piece, rebuilt.getHash(), board.getHash());
+            }
+            assertTrue("Different boards should hash apart", hashes.size() > placed * 9 / 10);
+            
+            // Clearing every locked cell brings the hash back to that of an empty board
+            Board cleared = new Board(10, 20, mode, PieceGenerator.uniform(0));
+            for (int col = 0; col < 10; col++) {
+                cleared.setCurrentShape(Shape.at(Shape.I_SHAPE, 1, col, 1));
+                cleared.hardDrop();
+            }
+            assertEquals(4, cleared.getLinesCleared());
+            assertEquals(0, cleared.getHash());
+        }
+    }
+    
+    @Test
+    public void testHashTellsRowsApart() {
+        for (Board.Mode mode : Board.Mode.values()) {
+            // The same piece locked on the floor and on a row of garbage
+            Board low = new Board(10, 20, mode, PieceGenerator.uniform(0));
+            low.setCurrentShape(Shape.at(Shape.O_SHAPE, 0, 4, 1));
+            low.hardDrop();
+            Board high = new Board(10, 20, mode, PieceGenerator.uniform(0));
+            high.addGarbage(1, 0);
+            long garbage = high.getHash();
+            high.setCurrentShape(Shape.at(Shape.O_SHAPE, 0, 4, 1));
+            high.hardDrop();
+            // Rows add up in the hash, but not at the same weight one row higher
+            assertNotEquals(mode.toString(), low.getHash(), high.getHash() - garbage);
+        }
+    }
+    
+    @Test
+    public void testBitboardMatchesGrid() {
+        Random random = new Random(42);
+        Board grid = new Board(10, 20, Board.Mode.GRID);
+        Board bitboard = new Board(10, 20, Board.Mode.BITBOARD);
+        
+        for (int piece = 0; piece < 500 && !grid.isGameOver(); piece++) {
+            Shape shape = new Shape(random.nextInt(7));
+            for (int turns = random.nextInt(4); turns > 0; turns--) {
+                shape.rotate();
+            }
+            shape.setPosition(random.nextInt(10 - shape.getWidth() + 1), 0);
+            
+            assertEquals(grid.isValidPosition(shape), bitboard.isValidPosition(shape));
+            if (!grid.isValidPosition(shape)) {
+                break;
+            }
+            
+            grid.setCurrentShape(shape.getCopy());
+            bitboard.setCurrentShape(shape.getCopy());
+            while (grid.moveShapeDown()) {
+                assertTrue(bitboard.moveShapeDown());
+            }
+            assertFalse(bitboard.moveShapeDown());
+            
+            assertEquals(grid.getScore(), bitboard.getScore());
+            assertArrayEquals(lockedCells(grid), lockedCells(bitboard));
+        }
+    }
+    
+    // Grid without the falling piece so that randomly spawned shapes do not differ
+    private static int[][] lockedCells(Board board) {
+        board.setCurrentShape(null);
+        return board.getGrid();
+    }
+    
+    @Test
+    public void testMovesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board board = new Board(10, 20, mode);
+            board.setCurrentShape(Shape.at(Shape.T_SHAPE, 0, 5, 1));
+            
+            // Warm up, then measure the same sequence of moves
+            runMoves(board, 10_000);
+            board.setCurrentShape(Shape.at(Shape.T_SHAPE, 0, 5, 1));
+            
+            long overhead = threads.getThreadAllocatedBytes(threadId);
+            overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+            
+            long before = threads.getThreadAllocatedBytes(threadId);
+            runMoves(board, 10_000);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+            
+            assertEquals(mode + " moves should not allocate", 0, allocated);
+        }
+    }
+    
+    // Moves and rotations that never lock the piece, so no new shape is drawn
+    private static void runMoves(Board board, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            board.moveShapeLeft();
+            board.rotateShape();
+            board.moveShapeRight();
+            board.rotateShape();
+            board.moveShapeRight();
+            board.moveShapeLeft();
+            if (board.getPieceY() < 10) {
+                board.moveShapeDown();
+            }
+        }
+    }
+    
+    @Test
+    public void testMoveMarksOnlyPieceRows() {
+        Board board = new Board(10, 20);
+        board.setCurrentShape(Shape.at(Shape.T_SHAPE, 0, 5, 5));
+        long version = board.getVersion();
+        
+        assertEquals(0, board.getChangedRows(version).length);
+        
+        board.moveShapeLeft();
+        assertTrue(board.getVersion() > version);
+        assertArrayEquals(new int[] {4, 5}, board.getChangedRows(version));
+        
+        version = board.getVersion();
+        board.moveShapeDown();
+        assertArrayEquals(new int[] {4, 5, 6}, board.getChangedRows(version));
+        
+        // Changed rows carry the new display
+        int[] row = board.getRow(6);
+        assertArrayEquals(board.getGrid()[6], row);
+    }
+    
+    @Test
+    public void testClearMarksOnlyTheStack() {
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board board = new Board(10, 20, mode, PieceGenerator.uniform(0));
+            // Two rows full but for columns 8 and 9, and an O on top at the left
+            for (int col = 0; col < 8; col += 2) {
+                board.setCurrentShape(Shape.at(Shape.O_SHAPE, 0, col + 1, 0));
+                board.hardDrop();
+            }
+            board.setCurrentShape(Shape.at(Shape.O_SHAPE, 0, 1, 0));
+            board.hardDrop();
+            board.setCurrentShape(Shape.at(Shape.O_SHAPE, 0, 9, 0));
+            long version = board.getVersion();
+            board.hardDrop();
+            assertEquals(2, board.getLinesCleared());
+            
+            java.util.List<Integer> changed = new java.util.ArrayList<>();
+            for (int row : board.getChangedRows(version)) {
+                changed.add(row);
+            }
+            // The stack from its old top down, not the empty rows above it
+            for (int row = 16; row < 20; row++) {
+                assertTrue(mode + " row " + row, changed.contains(row));
+            }
+            for (int row = 4; row < 16; row++) {
+                assertFalse(mode + " row " + row, changed.contains(row));
+            }
+            
+            version = board.getVersion();
+            board.addGarbage(2, 3);
+            changed.clear();
+            for (int row : board.getChangedRows(version)) {
+                changed.add(row);
+            }
+            for (int row = 16; row < 20; row++) {
+                assertTrue(mode + " row " + row, changed.contains(row));
+            }
+            for (int row = 4; row < 16; row++) {
+                assertFalse(mode + " row " + row, changed.contains(row));
+            }
+        }
+    }
+    
+    @Test
+    public void testForeignVersionNeedsKeyframe() {
+        Board first = new Board(10, 20);
+        Board second = new Board(10, 20);
+        
+        assertNull(second.getChangedRows(first.getVersion()));
+        assertNull(first.getChangedRows(first.getVersion() + 1));
+        assertNull(first.getChangedRows(-1));
+    }
+    
+    @Test
+    public void testGarbagePushesTheStackUp() {
+        for (Board.Mode mode : Board.Mode.values()) {
+            Board board = new Board(10, 20, mode, PieceGenerator.sevenBag(5));
+            board.createNewShape();
+            for (int piece = 0; piece < 6; piece++) {
+                for (int shift = piece % 5; shift > 0; shift--) {
+                    board.moveShapeLeft();
+                }
+                board.hardDrop();
+            }
+            int[][] before = lockedTypes(board);
+            
+            board.addGarbage(3, 4);
+            
+            int[][] after = lockedTypes(board);
+            for (int row = 0; row < 17; row++) {
+                assertArrayEquals(mode + " row " + row, before[row + 3], after[row]);
+            }
+            for (int row = 17; row < 20; row++) {
+                for (int col = 0; col < 10; col++) {
+                    assertEquals(col == 4 ? Board.NO_PIECE : Board.GARBAGE_TYPE, after[row][col]);
+                }
+            }
+            
+            // Column tops and the hash agree with the cells
+            byte[] cells = new byte[200];
+            for (int col = 0; col < 10; col++) {
+                int height = 0;
+                for (int row = 0; row < 20; row++) {
+                    cells[row * 10 + col] = (byte) (after[row][col] + 1);
+                    if (height == 0 && after[row][col] != Board.NO_PIECE) {
+                        height = 20 - row;
+                    }
+                }
+                assertEquals(mode + " column " + col, height, board.getColumnHeight(col));
+            }
+            Board rebuilt = new Board(10, 20, mode, PieceGenerator.uniform(0));
+            rebuilt.restore(cells, Board.NO_PIECE, 0, 0, 0, Board.NO_PIECE, 0, 0, 0, false);
+            assertEquals(mode + " hash", rebuilt.getHash(), board.getHash());
+            assertTrue(board.isValidPosition(board.getCurrentShape()));
+            assertFalse(board.isGameOver());
+            
+            // Pushing cells off the top ends the game
+            board.addGarbage(20, 0);
+            assertTrue(mode + " should top out", board.isGameOver());
+        }
+    }
+    
+    private static int[][] lockedTypes(Board board) {
+        int[][] types = new int[board.getHeight()][board.getWidth()];
+        for (int row = 0; row < board.getHeight(); row++) {
+            for (int col = 0; col < board.getWidth(); col++) {
+                types[row][col] = board.lockedTypeAt(col, row);
+            }
+        }
+        return types;
+    }
+}
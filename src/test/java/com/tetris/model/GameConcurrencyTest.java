@@ -0,0 +1,194 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import com.tetris.journal.JournalReader;
+import com.tetris.util.TickScheduler;
+
+public class GameConcurrencyTest {
+
+    private static final int WRITER_THREADS = 8;
+    private static final int READER_THREADS = 2;
+    private static final int INPUTS_PER_THREAD = 20_000;
+    
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(1, 64, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    /**
+     * Records the applied inputs and fails if two threads ever apply inputs
+     * at the same time
+     */
+    private static final class SingleWriterRecorder implements Game.InputRecorder {
+        final ByteArrayOutputStream inputs = new ByteArrayOutputStream();
+        final AtomicBoolean inside = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        
+        @Override
+        public void record(int input) {
+            if (!inside.compareAndSet(false, true)) {
+                failure.compareAndSet(null, "Two threads applied inputs at once");
+            }
+            inputs.write(input);
+            inside.set(false);
+        }
+    }
+    
+    @Test
+    public void testManyThreadsHammerOneGame() throws InterruptedException {
+        final Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(31));
+        final SingleWriterRecorder recorder = new SingleWriterRecorder();
+        game.setInputRecorder(recorder);
+        game.start();
+        // Fast gravity, so ticks interleave with the inputs without the
+        // stack topping out at once
+        game.updateLevel(90);
+        
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        
+        for (int t = 0; t < WRITER_THREADS; t++) {
+            final long seed = t;
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                        for (int i = 0; i < INPUTS_PER_THREAD; i++) {
+                            int choice = random.nextInt(100);
+                            if (choice < 30) {
+                                game.moveLeft();
+                            } else if (choice < 60) {
+                                game.moveRight();
+                            } else if (choice < 90) {
+                                game.rotate();
+                            } else if (choice < 97) {
+                                game.dropDown();
+                            } else if (choice < 98) {
+                                game.pause();
+                            } else if (choice < 99) {
+                                game.resume();
+                            } else if (game.isGameOver()) {
+                                game.restart();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        for (int t = 0; t < READER_THREADS; t++) {
+            readers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        while (running.get()) {
+                            String problem = game.query(new Supplier<String>() {
+                                @Override
+                                public String get() {
+                                    return checkBoard(game.getBoard());
+                                }
+                            });
+                            if (problem != null) {
+                                error.compareAndSet(null, new AssertionError(problem));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        running.set(false);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        game.shutdown();
+        
+        // Let a tick that was already handed to a worker finish
+        int[][] grid = game.query(new Supplier<int[][]>() {
+            @Override
+            public int[][] get() {
+                return game.getBoard().getGrid();
+            }
+        });
+        
+        if (error.get() != null) {
+            throw new AssertionError("Concurrent use failed", error.get());
+        }
+        assertNull(recorder.failure.get());
+        
+        // Applying the recorded order on one thread gives exactly the same board
+        byte[] inputs = recorder.inputs.toByteArray();
+        assertTrue(inputs.length > WRITER_THREADS * INPUTS_PER_THREAD / 10);
+        Board replayed = JournalReader.replay(10, 20, PieceGenerator.sevenBag(31), inputs);
+        assertArrayEquals(grid, replayed.getGrid());
+    }
+    
+    @Test
+    public void testUncontendedCallsApplyImmediately() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(8));
+        int x = game.getBoard().getPieceX();
+        
+        game.moveLeft();
+        
+        assertEquals(x - 1, game.getBoard().getPieceX());
+    }
+    
+    // Null when the board is consistent, otherwise a description of the problem
+    private static String checkBoard(Board board) {
+        int width = board.getWidth();
+        int locked = 0;
+        for (int row = 0; row < board.getHeight(); row++) {
+            for (int col = 0; col < width; col++) {
+                if (board.lockedTypeAt(col, row) != Board.NO_PIECE) {
+                    locked++;
+                }
+            }
+        }
+        long expected = board.getPiecesPlaced() * Tetromino.CELLS - (long) board.getLinesCleared() * width;
+        if (locked != expected) {
+            return "Locked cells " + locked + " but expected " + expected;
+        }
+        if (!board.isGameOver() && board.getPieceType() != Board.NO_PIECE
+                && !board.isValidPosition(board.getCurrentShape())) {
+            return "Falling piece overlaps the stack";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.tetris.util.TickScheduler;
+
+public class GameSnapshotTest {
+
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        // Ticks a minute apart, so gravity never races the test
+        scheduler = new TickScheduler(60_000, 64, 1);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testRestoredGameMatchesOriginal() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.sevenBag(77));
+        play(game, 25);
+        game.rotate();
+        game.moveLeft();
+        
+        byte[] snapshot = GameSnapshot.capture(game);
+        Game restored = GameSnapshot.restore(snapshot, scheduler);
+        
+        assertEquals(129, snapshot.length);
+        assertArrayEquals(game.getBoard().getGrid(), restored.getBoard().getGrid());
+        assertEquals(game.getBoard().getScore(), restored.getBoard().getScore());
+        assertEquals(game.getBoard().getLinesCleared(), restored.getBoard().getLinesCleared());
+        assertEquals(game.getLevel(), restored.getLevel());
+        assertEquals(game.getNextShape().getShapeType(), restored.getNextShape().getShapeType());
+        
+        // The restored generator deals the same pieces as the original
+        play(game, 40);
+        play(restored, 40);
+        assertArrayEquals(game.getBoard().getGrid(), restored.getBoard().getGrid());
+        assertEquals(game.getBoard().getScore(), restored.getBoard().getScore());
+    }
+    
+    @Test
+    public void testPausedAndGameOverAreKept() {
+        Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(4));
+        while (!game.isGameOver()) {
+            game.dropDown();
+        }
+        game.pause();
+        
+        Game restored = GameSnapshot.restore(GameSnapshot.capture(game), scheduler);
+        
+        assertTrue(restored.isPaused());
+        assertTrue(restored.isGameOver());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testCorruptSnapshotIsRejected() {
+        GameSnapshot.restore(new byte[] { (byte) GameSnapshot.FORMAT, 0, 0 }, scheduler);
+    }
+    
+    private static void play(Game game, int pieces) {
+        for (int i = 0; i < pieces; i++) {
+            for (int turns = i % 4; turns > 0; turns--) {
+                game.rotate();
+            }
+            for (int moves = i % 5; moves > 0; moves--) {
+                if (i % 2 == 0) {
+                    game.moveLeft();
+                } else {
+                    game.moveRight();
+                }
+            }
+            game.dropDown();
+        }
+    }
+}
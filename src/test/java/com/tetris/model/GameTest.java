@@ -4,6 +4,10 @@ import org.junit.Test;
 import org.junit.Before;
 import org.junit.After;
 import static org.junit.Assert.*;
+import com.tetris.util.TickScheduler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -117,4 +121,122 @@ public class GameTest {
         game.updateLevel(25);
         assertEquals(3, game.getLevel());
     }
+    
+    @Test
+    public void testClearedLinesRaiseTheLevel() {
+        // Rows 16 to 19 lack only column 0, and two more lines finish level 1
+        PieceGenerator pieces = PieceGenerator.uniform(1);
+        Board board = new Board(10, 20, pieces);
+        byte[] cells = new byte[10 * 20];
+        for (int row = 16; row < 20; row++) {
+            for (int col = 1; col < 10; col++) {
+                cells[row * 10 + col] = 1 + Shape.O_SHAPE;
+            }
+        }
+        board.restore(cells, Board.NO_PIECE, 0, 0, 0, Shape.I_SHAPE, 0, 8, 0, false);
+        board.setCurrentShape(Shape.at(Shape.I_SHAPE, 1, 0, 3));
+        Game restored = new Game(board, pieces, TickScheduler.shared(), 1, 8, false);
+        final AtomicInteger levelUpdated = new AtomicInteger();
+        restored.setGameListener(new CountingListener(new AtomicInteger()) {
+            @Override
+            public void onLevelUpdated(int level) {
+                levelUpdated.set(level);
+            }
+        });
+        
+        restored.dropDown();
+        
+        assertEquals(12, restored.getLinesCleared());
+        assertEquals(2, restored.getLevel());
+        assertEquals(2, levelUpdated.get());
+    }
+    
+    @Test
+    public void testGravityKeepsTimeWithoutDrift() throws InterruptedException {
+        // Tall enough that the first piece is still falling at the end
+        Game falling = new Game(10, 200);
+        final List<Long> rowTimes = Collections.synchronizedList(new ArrayList<Long>());
+        falling.setInputRecorder(new Game.InputRecorder() {
+            @Override
+            public void record(int input) {
+                if (input == TICK) {
+                    rowTimes.add(System.nanoTime());
+                }
+            }
+        });
+        int level = 10;
+        falling.updateLevel((level - 1) * 10);
+        long started = System.nanoTime();
+        falling.start();
+        try {
+            Thread.sleep(3000);
+        } finally {
+            falling.shutdown();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        List<Long> times = new ArrayList<>(rowTimes);
+        
+        double expectedRows = Game.rowsPerSecond(level) * seconds;
+        assertEquals("Rows fallen in " + seconds + " s", expectedRows, times.size(), expectedRows * 0.1);
+        
+        // Each row falls within a few frames of its slot on the ideal
+        // timeline through the first row, however long the run
+        double interval = 1e9 / Game.rowsPerSecond(level);
+        long first = times.get(0);
+        long worst = 0;
+        for (int row = 1; row < times.size(); row++) {
+            long ideal = first + (long) (row * interval);
+            worst = Math.max(worst, Math.abs(times.get(row) - ideal));
+        }
+        assertTrue("Worst row jitter " + worst / 1_000_000 + " ms",
+                worst < 4 * Gravity.FRAME_NANOS + 50_000_000L);
+    }
+    
+    @Test
+    public void testAdditionalListeners() {
+        final AtomicInteger first = new AtomicInteger();
+        final AtomicInteger second = new AtomicInteger();
+        Game.GameListener secondListener = new CountingListener(second);
+        
+        game.setGameListener(new CountingListener(first));
+        game.addGameListener(secondListener);
+        game.moveLeft();
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+        
+        // Replacing the main listener keeps the additional one
+        game.setGameListener(null);
+        game.moveRight();
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+        
+        game.removeGameListener(secondListener);
+        game.rotate();
+        assertEquals(2, second.get());
+    }
+    
+    private static class CountingListener implements Game.GameListener {
+        private final AtomicInteger updates;
+        
+        CountingListener(AtomicInteger updates) {
+            this.updates = updates;
+        }
+        
+        @Override
+        public void onBoardUpdated() {
+            updates.incrementAndGet();
+        }
+        
+        @Override
+        public void onGameOver() {
+        }
+        
+        @Override
+        public void onScoreUpdated(int score) {
+        }
+        
+        @Override
+        public void onLevelUpdated(int level) {
+        }
+    }
 }
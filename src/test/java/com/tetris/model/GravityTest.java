@@ -0,0 +1,81 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class GravityTest {
+    
+    @Test
+    public void testSpeedRisesToTwentyG() {
+        assertEquals(1.0, Gravity.rowsPerSecond(1), 0.001);
+        for (int level = 2; level <= 30; level++) {
+            assertTrue("Level " + level + " should not be slower than the one before",
+                    Gravity.speedOf(level) >= Gravity.speedOf(level - 1));
+        }
+        int twentyG = Gravity.MAX_ROWS_PER_FRAME * Gravity.UNITS_PER_ROW;
+        assertEquals(twentyG, Gravity.speedOf(20));
+        assertEquals(twentyG, Gravity.speedOf(1000));
+        assertTrue("Level 10 should fall less than a row per frame", Gravity.speedOf(10) < Gravity.UNITS_PER_ROW);
+    }
+    
+    @Test
+    public void testJitteryCallsDoNotDrift() {
+        Random random = new Random(7);
+        for (int level : new int[] {1, 5, 10, 15}) {
+            long now = 0;
+            Gravity gravity = new Gravity(level, now);
+            long rows = 0;
+            // A minute of calls arriving every 5 to 35 ms
+            long end = TimeUnit.SECONDS.toNanos(60);
+            while (now < end) {
+                now += TimeUnit.MILLISECONDS.toNanos(5 + random.nextInt(31));
+                rows += gravity.advance(now);
+            }
+            double expected = Gravity.rowsPerSecond(level) * now / 1e9;
+            assertEquals("Level " + level + " rows", expected, rows, 1.0);
+        }
+    }
+    
+    @Test
+    public void testSubRowSpeedAccumulates() {
+        Gravity gravity = new Gravity(1, 0);
+        long rows = 0;
+        // Level 1 falls one row a second, so 59 frames are not enough
+        for (int frame = 1; frame < 60; frame++) {
+            rows += gravity.advance(frame * Gravity.FRAME_NANOS);
+        }
+        assertEquals(0, rows);
+        rows += gravity.advance(61 * Gravity.FRAME_NANOS);
+        assertEquals(1, rows);
+    }
+    
+    @Test
+    public void testStallIsNotCaughtUp() {
+        Gravity gravity = new Gravity(10, 0);
+        gravity.advance(Gravity.FRAME_NANOS);
+        
+        // A two second pause yields at most the catch-up allowance
+        int rows = gravity.advance(Gravity.FRAME_NANOS + TimeUnit.SECONDS.toNanos(2));
+        long allowed = (long) Gravity.MAX_CATCH_UP_FRAMES * Gravity.speedOf(10) / Gravity.UNITS_PER_ROW + 1;
+        assertTrue("Fell " + rows + " rows after a stall", rows <= allowed);
+    }
+    
+    @Test
+    public void testTwentyGFallsTheBoardInOneFrame() {
+        Gravity gravity = new Gravity(20, 0);
+        assertEquals(Gravity.MAX_ROWS_PER_FRAME, gravity.advance(Gravity.FRAME_NANOS));
+        
+        // Settling drops only the fraction carried over, never whole rows
+        gravity.settle();
+        assertEquals(Gravity.MAX_ROWS_PER_FRAME, gravity.advance(2 * Gravity.FRAME_NANOS));
+    }
+    
+    @Test
+    public void testRestartForgetsPausedTime() {
+        Gravity gravity = new Gravity(10, 0);
+        gravity.restart(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, gravity.advance(TimeUnit.SECONDS.toNanos(10) + Gravity.FRAME_NANOS / 2));
+    }
+}
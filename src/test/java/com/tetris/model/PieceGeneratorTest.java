@@ -0,0 +1,79 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import com.tetris.util.TickScheduler;
+
+public class PieceGeneratorTest {
+
+    @Test
+    public void testSameSeedGivesSameSequence() {
+        for (PieceGenerator.Distribution distribution : PieceGenerator.Distribution.values()) {
+            PieceGenerator first = PieceGenerator.create(distribution, 1234);
+            PieceGenerator second = PieceGenerator.create(distribution, 1234);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(distribution + " piece " + i, first.next(), second.next());
+            }
+        }
+    }
+    
+    @Test
+    public void testSevenBagDealsEveryTypeOncePerBag() {
+        PieceGenerator generator = PieceGenerator.sevenBag(99);
+        for (int bag = 0; bag < 100; bag++) {
+            boolean[] seen = new boolean[Tetromino.TYPES];
+            for (int i = 0; i < Tetromino.TYPES; i++) {
+                int type = generator.next();
+                assertFalse("Type dealt twice in bag " + bag, seen[type]);
+                seen[type] = true;
+            }
+        }
+    }
+    
+    @Test
+    public void testUniformCoversAllTypes() {
+        PieceGenerator generator = PieceGenerator.uniform(7);
+        int[] counts = new int[Tetromino.TYPES];
+        for (int i = 0; i < 70000; i++) {
+            counts[generator.next()]++;
+        }
+        for (int type = 0; type < Tetromino.TYPES; type++) {
+            assertTrue("Type " + type + " dealt " + counts[type] + " times",
+                    counts[type] > 9000 && counts[type] < 11000);
+        }
+    }
+    
+    @Test
+    public void testGameIsDeterminedBySeedAndInputs() {
+        TickScheduler scheduler = new TickScheduler(10, 64, 1);
+        try {
+            Game first = new Game(10, 20, scheduler, PieceGenerator.sevenBag(5));
+            Game second = new Game(10, 20, scheduler, PieceGenerator.sevenBag(5));
+            for (int i = 0; i < 20; i++) {
+                for (Game game : new Game[] { first, second }) {
+                    game.rotate();
+                    game.moveLeft();
+                    game.dropDown();
+                }
+                assertArrayEquals(first.getBoard().getGrid(), second.getBoard().getGrid());
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    
+    @Test
+    public void testNextShapeIsThePieceThatSpawns() {
+        TickScheduler scheduler = new TickScheduler(10, 64, 1);
+        try {
+            Game game = new Game(10, 20, scheduler, PieceGenerator.uniform(3));
+            for (int i = 0; i < 10; i++) {
+                int next = game.getNextShape().getShapeType();
+                game.dropDown();
+                assertEquals(next, game.getCurrentShape().getShapeType());
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.tetris.bot.Heuristic;
+import com.tetris.bot.Placement;
+import com.tetris.bot.PlacementSearch;
+import com.tetris.util.TickScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class RoomTest {
+    
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(5, 64, 1);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testTetrisSendsFourRows() {
+        Room room = new Room(Arrays.asList(tetrisReady(), tetrisReady()), 3);
+        Room.Player attacker = room.getPlayers().get(0);
+        Room.Player defender = room.getPlayers().get(1);
+        
+        attacker.getGame().dropDown();
+        assertEquals(4, attacker.getSent());
+        assertEquals(4, defender.getIncoming());
+        
+        // The defender's own tetris cancels the garbage instead of sending more
+        defender.getGame().dropDown();
+        assertEquals(0, defender.getIncoming());
+        assertEquals(0, defender.getSent());
+        assertEquals(0, attacker.getIncoming());
+    }
+    
+    @Test
+    public void testGarbageRisesWhenAPieceLocksWithoutClearing() {
+        Room room = new Room(Arrays.asList(tetrisReady(), tetrisReady()), 3);
+        Room.Player attacker = room.getPlayers().get(0);
+        Room.Player defender = room.getPlayers().get(1);
+        attacker.getGame().dropDown();
+        
+        // Drop the defender's I piece flat on the right, clearing nothing
+        Game game = defender.getGame();
+        for (int i = 0; i < 4; i++) {
+            game.moveRight();
+        }
+        for (int i = 0; i < 3; i++) {
+            game.rotate();
+        }
+        for (int i = 0; i < 10; i++) {
+            game.moveRight();
+        }
+        assertEquals(0, game.getBoard().getPieceRotation());
+        int heightBefore = game.getBoard().getColumnHeight(9);
+        game.dropDown();
+        
+        assertEquals(4, defender.getReceived());
+        assertEquals(0, defender.getIncoming());
+        assertEquals(heightBefore + 1 + 4, game.getBoard().getColumnHeight(9));
+    }
+    
+    @Test
+    public void testBotRoomsPlayHeadless() throws InterruptedException {
+        final int rooms = 3;
+        final int seats = 3;
+        final int maxPieces = 400;
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Room> played = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        
+        for (int r = 0; r < rooms; r++) {
+            final Room room = Room.create(seats, 10, 20, scheduler, 100 + r);
+            played.add(room);
+            for (final Room.Player player : room.getPlayers()) {
+                // Weaker bots that build up for multi-line clears, so garbage flows
+                final Heuristic heuristic = new Heuristic(-0.2, -0.51, -0.36, -0.18);
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            play(player, room, new PlacementSearch(heuristic, pool), maxPieces);
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        }
+                    }
+                }));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        pool.shutdown();
+        assertNull("Bot failed: " + error.get(), error.get());
+        
+        int sent = 0;
+        int arrived = 0;
+        for (Room room : played) {
+            for (Room.Player player : room.getPlayers()) {
+                Board board = player.getGame().getBoard();
+                sent += player.getSent();
+                arrived += player.getReceived() + player.getIncoming();
+                assertBoardConsistent(board);
+                // A player drops out or plays to the piece limit, unless the room ended first
+                assertTrue("Player should be out or at the piece limit", room.isFinished() || player.isOut()
+                        || board.isGameOver() || board.getPiecesPlaced() >= maxPieces);
+            }
+        }
+        assertTrue("Garbage should have been exchanged", sent > 0);
+        assertTrue("No more garbage can arrive than was sent", arrived <= sent);
+    }
+    
+    private static void play(final Room.Player player, Room room, PlacementSearch search, int maxPieces) {
+        final Game game = player.getGame();
+        while (!room.isFinished() && !player.isOut()) {
+            Board board = game.query(new Supplier<Board>() {
+                @Override
+                public Board get() {
+                    return game.getBoard().copy(PieceGenerator.uniform(0));
+                }
+            });
+            if (board.isGameOver() || board.getPiecesPlaced() >= maxPieces) {
+                return;
+            }
+            Placement placement = search.findBest(board);
+            if (placement == null) {
+                // Nowhere left to go: drop the piece where it is
+                game.dropDown();
+                continue;
+            }
+            for (int i = 0; i < placement.getDrops(); i++) {
+                game.softDrop();
+            }
+            for (int i = 0; i < placement.getRotations(); i++) {
+                game.rotate();
+            }
+            for (int i = placement.getShift(); i != 0; i -= Integer.signum(i)) {
+                if (i < 0) {
+                    game.moveLeft();
+                } else {
+                    game.moveRight();
+                }
+            }
+            game.dropDown();
+        }
+    }
+    
+    // Column heights and the hash must match the cells after garbage
+    private static void assertBoardConsistent(Board board) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        byte[] cells = new byte[width * height];
+        for (int col = 0; col < width; col++) {
+            int columnHeight = 0;
+            for (int row = 0; row < height; row++) {
+                int type = board.lockedTypeAt(col, row);
+                cells[row * width + col] = (byte) (type + 1);
+                if (columnHeight == 0 && type != Board.NO_PIECE) {
+                    columnHeight = height - row;
+                }
+            }
+            assertEquals("Column " + col, columnHeight, board.getColumnHeight(col));
+        }
+        Board rebuilt = new Board(width, height, board.getMode(), PieceGenerator.uniform(0));
+        rebuilt.restore(cells, Board.NO_PIECE, 0, 0, 0, Board.NO_PIECE, 0, 0, 0, false);
+        assertEquals(rebuilt.getHash(), board.getHash());
+    }
+    
+    // A game whose vertical I piece completes the four bottom rows
+    private Game tetrisReady() {
+        PieceGenerator pieces = PieceGenerator.sevenBag(9);
+        Board board = new Board(10, 20, pieces);
+        byte[] cells = new byte[10 * 20];
+        for (int row = 16; row < 20; row++) {
+            for (int col = 1; col < 10; col++) {
+                cells[row * 10 + col] = 1 + Shape.O_SHAPE;
+            }
+        }
+        board.restore(cells, Board.NO_PIECE, 0, 0, 0, Shape.I_SHAPE, 0, 0, 0, false);
+        board.setCurrentShape(Shape.at(Shape.I_SHAPE, 1, 0, 3));
+        return new Game(board, pieces, scheduler, 1, 0, false);
+    }
+}
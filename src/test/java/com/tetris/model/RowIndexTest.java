@@ -0,0 +1,75 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RowIndexTest {
+
+    @Test
+    public void testRemovalMatchesMovingRowsOneByOne() {
+        Random random = new Random(3);
+        for (int rows : new int[] {1, 4, 7, 20, 100}) {
+            RowIndex index = new RowIndex(rows);
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                expected.add(row);
+            }
+            
+            for (int round = 0; round < 1000; round++) {
+                int top = random.nextInt(rows);
+                int bottom = Math.min(rows - 1, top + random.nextInt(4));
+                long removed = random.nextLong() & ((1L << (bottom - top + 1)) - 1);
+                
+                List<Integer> freed = new ArrayList<>();
+                for (int row = bottom; row >= top; row--) {
+                    if ((removed & (1L << (row - top))) != 0) {
+                        freed.add(0, expected.remove(row));
+                    }
+                }
+                expected.addAll(0, freed);
+                
+                assertEquals(freed.size(), index.remove(top, bottom, removed));
+                for (int row = 0; row < rows; row++) {
+                    assertEquals("Row " + row + " of " + rows, (int) expected.get(row), index.slot(row));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testRaisingMovesTopSlotsToTheBottom() {
+        Random random = new Random(5);
+        for (int rows : new int[] {1, 4, 20}) {
+            RowIndex index = new RowIndex(rows);
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                expected.add(row);
+            }
+            
+            for (int round = 0; round < 1000; round++) {
+                if (random.nextBoolean()) {
+                    int count = random.nextInt(rows + 1);
+                    for (int i = 0; i < count; i++) {
+                        expected.add(expected.remove(0));
+                    }
+                    index.raise(count);
+                } else {
+                    int row = random.nextInt(rows);
+                    expected.add(0, expected.remove(row));
+                    index.remove(row, row, 1);
+                }
+                for (int row = 0; row < rows; row++) {
+                    assertEquals("Row " + row + " of " + rows, (int) expected.get(row), index.slot(row));
+                }
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSpanMustFitTheMask() {
+        new RowIndex(100).remove(0, RowIndex.MAX_SPAN, 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.tetris.model;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TetrominoTest {
+
+    @Test
+    public void testOffsetsMatchShapeRotation() {
+        for (int type = 0; type < Tetromino.TYPES; type++) {
+            Shape shape = new Shape(type);
+            shape.setPosition(5, 5);
+            
+            for (int rotation = 0; rotation < Tetromino.ROTATIONS; rotation++) {
+                Block[] blocks = shape.getBlocks();
+                Block pivot = blocks[1];
+                for (int cell = 0; cell < Tetromino.CELLS; cell++) {
+                    assertEquals(blocks[cell].getX(), pivot.getX() + Tetromino.dx(type, shape.getRotation(), cell));
+                    assertEquals(blocks[cell].getY(), pivot.getY() + Tetromino.dy(type, shape.getRotation(), cell));
+                }
+                shape.rotate();
+            }
+        }
+    }
+    
+    @Test
+    public void testRowMasksCoverEveryCell() {
+        for (int type = 0; type < Tetromino.TYPES; type++) {
+            for (int rotation = 0; rotation < Tetromino.ROTATIONS; rotation++) {
+                int rows = Tetromino.maxDy(type, rotation) - Tetromino.minDy(type, rotation) + 1;
+                int bits = 0;
+                for (int row = 0; row < rows; row++) {
+                    bits += Long.bitCount(Tetromino.rowMask(type, rotation, row));
+                }
+                assertEquals(Tetromino.CELLS, bits);
+            }
+        }
+    }
+    
+    @Test
+    public void testColorLookup() {
+        for (int type = 0; type < Tetromino.TYPES; type++) {
+            assertEquals(type, Tetromino.typeOfColor(Tetromino.color(type)));
+        }
+        assertEquals(-1, Tetromino.typeOfColor(0x123456));
+    }
+}
\ No newline at end of file
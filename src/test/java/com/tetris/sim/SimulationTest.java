@@ -0,0 +1,90 @@
+package com.tetris.sim;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+import com.tetris.model.Board;
+
+public class SimulationTest {
+
+    private static final LongFunction<InputSource> RANDOM_INPUTS = new LongFunction<InputSource>() {
+        @Override
+        public InputSource apply(long seed) {
+            return new RandomInputs(seed);
+        }
+    };
+    
+    @Test
+    public void testSameSeedAndInputsGiveSameGame() {
+        SimulationResult first = new Simulation(10, 20, 42).run(new RandomInputs(7), 1_000_000);
+        SimulationResult second = new Simulation(10, 20, 42).run(new RandomInputs(7), 1_000_000);
+        
+        assertTrue("Random play should end the game", first.isGameOver());
+        assertTrue(first.getPieces() > 0);
+        assertEquals(first, second);
+    }
+    
+    @Test
+    public void testRecordedInputsReplayTheGame() {
+        final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+        final RandomInputs bot = new RandomInputs(3);
+        Simulation original = new Simulation(10, 20, 99);
+        SimulationResult expected = original.run(new InputSource() {
+            @Override
+            public int nextInput(Board board) {
+                int input = bot.nextInput(board);
+                recorded.write(input);
+                return input;
+            }
+        }, 1_000_000);
+        
+        Simulation replay = new Simulation(10, 20, 99);
+        SimulationResult actual = replay.run(InputSource.of(recorded.toByteArray()), 1_000_000);
+        
+        assertEquals(expected, actual);
+        assertArrayEquals(original.getBoard().getGrid(), replay.getBoard().getGrid());
+    }
+    
+    @Test
+    public void testGravityRunsInLogicalFrames() {
+        Simulation simulation = new Simulation(10, 20, 1, 5);
+        int startY = simulation.getBoard().getPieceY();
+        
+        for (int frame = 0; frame < 4; frame++) {
+            simulation.step(Input.NONE);
+        }
+        assertEquals(startY, simulation.getBoard().getPieceY());
+        
+        simulation.step(Input.NONE);
+        assertEquals(startY + 1, simulation.getBoard().getPieceY());
+        assertEquals(5, simulation.getFrames());
+    }
+    
+    @Test
+    public void testBatchTotalsDoNotDependOnParallelism() {
+        BatchSimulator parallel = new BatchSimulator(new ForkJoinPool(4), 10, 20, 100_000, RANDOM_INPUTS);
+        BatchSimulator sequential = new BatchSimulator(new ForkJoinPool(1), 10, 20, 100_000, RANDOM_INPUTS);
+        
+        BatchSimulator.Totals expected = sequential.run(5, 500);
+        BatchSimulator.Totals actual = parallel.run(5, 500);
+        
+        assertEquals(500, actual.getGames());
+        assertEquals(expected.getFrames(), actual.getFrames());
+        assertEquals(expected.getPieces(), actual.getPieces());
+        assertEquals(expected.getLines(), actual.getLines());
+        assertEquals(expected.getScore(), actual.getScore());
+        assertTrue(actual.getPiecesPerSecond() > 0);
+    }
+    
+    @Test
+    public void testSingleGameOfBatchCanBeReplayed() {
+        BatchSimulator batch = new BatchSimulator(10, 20, 100_000, RANDOM_INPUTS);
+        long seed = BatchSimulator.gameSeed(8, 17);
+        
+        SimulationResult replayed = new Simulation(10, 20, seed).run(new RandomInputs(seed), 100_000);
+        
+        assertEquals(batch.play(8, 17), replayed);
+    }
+}
@@ -0,0 +1,68 @@
+package com.tetris.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HashRingTest {
+    
+    private static final int KEYS = 100_000;
+    
+    @Test
+    public void testKeysSpreadEvenlyOverNodes() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c", "d"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String owner = ring.owner("game-" + i);
+            Integer count = counts.get(owner);
+            counts.put(owner, count == null ? 1 : count + 1);
+        }
+        assertEquals(4, counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            // Within a fifth of an even share
+            assertTrue(entry.getKey() + " owns " + entry.getValue(), Math.abs(entry.getValue() - KEYS / 4) < KEYS / 20);
+        }
+    }
+    
+    @Test
+    public void testAddingANodeMovesKeysOnlyToIt() {
+        HashRing before = new HashRing(Arrays.asList("a", "b", "c"));
+        HashRing after = before.with("d");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "game-" + i;
+            String owner = after.owner(key);
+            if (!owner.equals(before.owner(key))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue("Moved " + moved, Math.abs(moved - KEYS / 4) < KEYS / 20);
+    }
+    
+    @Test
+    public void testRemovingANodeMovesOnlyItsKeys() {
+        HashRing before = new HashRing(Arrays.asList("a", "b", "c", "d"));
+        HashRing after = before.without("b");
+        for (int i = 0; i < KEYS; i++) {
+            String key = "game-" + i;
+            String owner = before.owner(key);
+            if (owner.equals("b")) {
+                assertNotEquals("b", after.owner(key));
+            } else {
+                assertEquals(owner, after.owner(key));
+            }
+        }
+    }
+    
+    @Test
+    public void testOwnersDependOnlyOnTheNodeNames() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c"));
+        HashRing reordered = new HashRing(Arrays.asList("c", "a", "b"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.owner("game-" + i), reordered.owner("game-" + i));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.tetris.util;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class HistogramTest {
+    
+    @Test
+    public void testBucketsCoverEveryValueInOrder() {
+        long previousHighest = -1;
+        for (int bucket = 0; Histogram.lowestValue(bucket) != Long.MAX_VALUE
+                && previousHighest != Long.MAX_VALUE; bucket++) {
+            assertEquals("Buckets should be contiguous", previousHighest + 1, Histogram.lowestValue(bucket));
+            assertEquals(bucket, Histogram.bucket(Histogram.lowestValue(bucket)));
+            assertEquals(bucket, Histogram.bucket(Histogram.highestValue(bucket)));
+            previousHighest = Histogram.highestValue(bucket);
+        }
+        assertEquals(Long.MAX_VALUE, previousHighest);
+    }
+    
+    @Test
+    public void testQuantilesWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000L * 100_001 / 2, snapshot.getSum());
+        assertEquals(100_000, snapshot.getMax());
+        
+        double tolerance = 1.0 / Histogram.SUB_BUCKETS;
+        assertEquals(50_000, snapshot.getValueAtQuantile(0.5), 50_000 * tolerance);
+        assertEquals(99_000, snapshot.getValueAtQuantile(0.99), 99_000 * tolerance);
+        assertEquals(100_000, snapshot.getValueAtQuantile(1.0));
+        assertEquals(1, snapshot.getValueAtQuantile(0.0));
+    }
+    
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(-5);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtQuantile(0.5));
+        assertEquals(3, snapshot.getValueAtQuantile(1.0));
+        assertEquals(0, new Histogram().snapshot().getValueAtQuantile(0.5));
+    }
+    
+    @Test
+    public void testConcurrentRecordsAreAllCounted() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50_000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads.length * 50_000L, snapshot.getCount());
+        assertEquals(49_999, snapshot.getMax());
+    }
+    
+    @Test
+    public void testRecordDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        
+        Histogram histogram = new Histogram();
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong() >>> random.nextInt(64);
+        }
+        
+        // Warm up, then measure the same values again
+        recordAll(histogram, values);
+        
+        long overhead = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+        
+        long before = threads.getThreadAllocatedBytes(threadId);
+        recordAll(histogram, values);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+        
+        assertEquals("Recording should not allocate", 0, allocated);
+    }
+    
+    private static void recordAll(Histogram histogram, long[] values) {
+        for (int round = 0; round < 10; round++) {
+            for (long value : values) {
+                histogram.record(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tetris.util;
+
+import com.tetris.model.Game;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many concurrent games one node can keep ticking on the shared
+ * {@link TickScheduler}. Games are added in steps; at each step the benchmark
+ * counts the rows that gravity delivered against the number expected at the
+ * games' level and reports threads and heap in use. A step is sustained when
+ * at least 99% of rows arrive.
+ *
+ * Usage: SchedulerBenchmark [maxGames] [secondsPerStep]
+ */
+public class SchedulerBenchmark {
+
+    // Level 10, under one row per frame so every row is one board update
+    private static final int LEVEL_LINES = 90;
+    private static final int LEVEL = 10;
+    private static final long SETTLE_MILLIS = 200;
+    // Tall enough that no game tops out during a run
+    private static final int BOARD_HEIGHT = 200;
+    
+    public static void main(String[] args) throws InterruptedException {
+        int maxGames = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int secondsPerStep = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        TickScheduler scheduler = TickScheduler.shared();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final LongAdder rows = new LongAdder();
+        List<Game> games = new ArrayList<>();
+        
+        System.out.println("games\trows/s\tdelivered\tthreads\theapMB");
+        
+        for (int target = 1_000; target <= maxGames; target *= 2) {
+            while (games.size() < target) {
+                Game game = new Game(10, BOARD_HEIGHT, scheduler);
+                game.setGameListener(new CountingListener(rows));
+                game.updateLevel(LEVEL_LINES);
+                game.start();
+                games.add(game);
+            }
+            
+            // Let the new registrations settle before measuring
+            Thread.sleep(SETTLE_MILLIS);
+            rows.reset();
+            Thread.sleep(secondsPerStep * 1000L);
+            
+            long delivered = rows.sum();
+            long expected = (long) (target * secondsPerStep * Game.rowsPerSecond(LEVEL));
+            double ratio = (double) delivered / expected;
+            
+            System.gc();
+            long heapMb = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+            System.out.printf("%d\t%d\t%.1f%%\t%d\t%d%n", target, delivered / secondsPerStep,
+                    ratio * 100, Thread.activeCount(), heapMb);
+            
+            if (ratio < 0.99) {
+                System.out.println("Row delivery fell below 99% at " + target + " games");
+                break;
+            }
+        }
+        
+        for (Game game : games) {
+            game.shutdown();
+        }
+        scheduler.shutdown();
+    }
+    
+    /**
+     * Counts every board update, one per row fallen
+     */
+    private static class CountingListener implements Game.GameListener {
+        private final LongAdder rows;
+        
+        CountingListener(LongAdder rows) {
+            this.rows = rows;
+        }
+        
+        @Override
+        public void onBoardUpdated() {
+            rows.increment();
+        }
+        
+        @Override
+        public void onGameOver() {
+        }
+        
+        @Override
+        public void onScoreUpdated(int score) {
+        }
+        
+        @Override
+        public void onLevelUpdated(int level) {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.tetris.util;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.tetris.model.Game;
+
+public class TickSchedulerTest {
+
+    private TickScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        scheduler = new TickScheduler(5, 64, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    public void testPeriodicTaskFires() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        
+        TickScheduler.Timeout timeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 0, 20);
+        
+        assertTrue("Task should fire repeatedly", latch.await(2, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getScheduledCount());
+        
+        timeout.cancel();
+        assertEquals(0, scheduler.getScheduledCount());
+    }
+    
+    @Test
+    public void testCancelStopsTask() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        
+        TickScheduler.Timeout timeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 0, 10);
+        
+        Thread.sleep(100);
+        timeout.cancel();
+        Thread.sleep(50);
+        int afterCancel = runs.get();
+        Thread.sleep(100);
+        
+        assertTrue(afterCancel > 0);
+        assertEquals(afterCancel, runs.get());
+    }
+    
+    @Test
+    public void testRescheduleChangesPeriod() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        
+        TickScheduler.Timeout timeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 0, 10_000);
+        
+        // Only the initial run happens with the long period
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+        
+        timeout.reschedule(10);
+        assertEquals(10, timeout.getPeriodMillis());
+        Thread.sleep(200);
+        
+        assertTrue("Task should fire at the new period", runs.get() > 3);
+        timeout.cancel();
+    }
+    
+    @Test
+    public void testGamesDoNotCreateThreads() {
+        int threadsBefore = Thread.activeCount();
+        
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Game game = new Game(10, 20, scheduler);
+            game.start();
+            games.add(game);
+        }
+        
+        assertEquals(500, scheduler.getScheduledCount());
+        assertTrue(Thread.activeCount() - threadsBefore < 10);
+        
+        for (Game game : games) {
+            game.shutdown();
+        }
+        assertEquals(0, scheduler.getScheduledCount());
+    }
+}
\ No newline at end of file
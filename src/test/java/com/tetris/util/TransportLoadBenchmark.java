@@ -0,0 +1,192 @@
+package com.tetris.util;
+
+import com.google.gson.Gson;
+import com.tetris.controller.GameStateEncoder;
+import com.tetris.model.Game;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process load test comparing the polling and push transports.
+ *
+ * The same number of live games runs for each transport, with every player
+ * pressing a key a few times a second. Polling clients fetch the state every
+ * 100 ms plus once after each key press, the way tetris.js does without a
+ * socket. Push clients send their keys as messages and receive a frame only
+ * when the game reports a change. Both sides do the real work of a request
+ * (session lookup, state encoding and JSON serialisation) without the network
+ * stack, and each run reports messages per second and process CPU use.
+ *
+ * Usage: TransportLoadBenchmark [games] [seconds]
+ */
+public class TransportLoadBenchmark {
+    
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long KEY_INTERVAL_MILLIS = 300;
+    private static final Gson GSON = new Gson();
+    
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        
+        System.out.println("transport\tmessages/s\tKB/s\tCPU%");
+        for (int round = 0; round < 2; round++) {
+            run("polling", games, seconds, false, round == 1);
+            run("push", games, seconds, true, round == 1);
+        }
+        TickScheduler.shared().shutdown();
+    }
+    
+    private static void run(String name, int gameCount, int seconds, boolean push, boolean report)
+            throws InterruptedException {
+        TickScheduler scheduler = TickScheduler.shared();
+        final Map<String, Game> sessions = new ConcurrentHashMap<>();
+        final LongAdder messages = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        List<TickScheduler.Timeout> clients = new ArrayList<>();
+        List<Game> games = new ArrayList<>();
+        
+        for (int i = 0; i < gameCount; i++) {
+            final String sessionId = "session-" + i;
+            final Game game = new Game(10, 20, scheduler);
+            sessions.put(sessionId, game);
+            games.add(game);
+            
+            final Client client = new Client(sessionId, sessions, messages, bytes);
+            if (push) {
+                game.addGameListener(new PushClient(client));
+            } else {
+                clients.add(scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        client.poll();
+                    }
+                }, i % POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS));
+            }
+            clients.add(scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    client.pressKey(push);
+                }
+            }, i % KEY_INTERVAL_MILLIS, KEY_INTERVAL_MILLIS));
+            game.start();
+        }
+        
+        Thread.sleep(1000);
+        messages.reset();
+        bytes.reset();
+        long cpuBefore = processCpuNanos();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long cpu = processCpuNanos() - cpuBefore;
+        
+        for (TickScheduler.Timeout timeout : clients) {
+            timeout.cancel();
+        }
+        for (Game game : games) {
+            game.shutdown();
+        }
+        
+        if (report) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("%s\t%.0f\t%.0f\t%.1f%n", name, messages.sum() / elapsed,
+                    bytes.sum() / elapsed / 1024, cpu / 1e9 / elapsed / cores * 100);
+        }
+    }
+    
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+    
+    /**
+     * One simulated browser tab
+     */
+    private static class Client {
+        private final String sessionId;
+        private final Map<String, Game> sessions;
+        private final LongAdder messages;
+        private final LongAdder bytes;
+        private volatile long version = GameStateEncoder.NO_VERSION;
+        private int keys;
+        
+        Client(String sessionId, Map<String, Game> sessions, LongAdder messages, LongAdder bytes) {
+            this.sessionId = sessionId;
+            this.sessions = sessions;
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+        
+        // A getState request or a pushed frame
+        void poll() {
+            Game game = sessions.get(sessionId);
+            Map<String, Object> state = GameStateEncoder.getGameState(game, version);
+            version = Long.parseLong((String) state.get("version"));
+            bytes.add(GSON.toJson(state).length());
+            messages.increment();
+        }
+        
+        void pressKey(boolean push) {
+            Game game = sessions.get(sessionId);
+            if (keys++ % 2 == 0) {
+                game.moveLeft();
+            } else {
+                game.moveRight();
+            }
+            messages.increment();
+            
+            // Without push the client fetches the state right after each key
+            if (!push) {
+                poll();
+            }
+        }
+    }
+    
+    /**
+     * Listener that sends a frame per change, coalescing changes that arrive
+     * while a frame is being built
+     */
+    private static class PushClient implements Game.GameListener {
+        private final Client client;
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        
+        PushClient(Client client) {
+            this.client = client;
+        }
+        
+        @Override
+        public void onBoardUpdated() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    client.poll();
+                } finally {
+                    sending.set(false);
+                }
+            }
+        }
+        
+        @Override
+        public void onGameOver() {
+            onBoardUpdated();
+        }
+        
+        @Override
+        public void onScoreUpdated(int score) {
+            onBoardUpdated();
+        }
+        
+        @Override
+        public void onLevelUpdated(int level) {
+            onBoardUpdated();
+        }
+    }
+}
\ No newline at end of file